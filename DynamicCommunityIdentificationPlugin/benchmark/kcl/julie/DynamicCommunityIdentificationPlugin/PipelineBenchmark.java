@@ -0,0 +1,532 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.openide.util.Lookup;
+
+/*
+ * @author Julie Kauffman
+ * The PipelineBenchmark measures the stages of FindDynamicCommunities on a
+ * SyntheticDynamicNetwork, so that changes to the algorithms can be checked for
+ * regressions and the time of a production run can be estimated from its size.
+ * Each benchmark is run for a number of warmup iterations, so that the JIT has
+ * compiled it, and then for a number of measured iterations. Anything a benchmark
+ * needs that is not part of what it measures is prepared before each iteration
+ * and is not timed. The time of each iteration is divided by the number of
+ * operations in it, for example the number of nodes colored, and the mean,
+ * standard deviation and minimum time per operation are printed. Results can also
+ * be appended to a CSV file to compare runs. Output of the algorithms themselves
+ * is discarded while they are measured. The benchmarks are run with "ant benchmark",
+ * with the options in the benchmark.args property, for example:
+ *
+ *   ant benchmark -Dbenchmark.args="--nodes 10000 --timesteps 50 --groups 40 --churn 0.05"
+ */
+
+public class PipelineBenchmark
+{
+    public static final int MAXIMUM_NODES_COLORED_BY_RECURSION = 100;
+    public static final int TIMESTEPS_COLORED_BY_RECURSION     = 8;
+
+    int     numberOfNodes     = 1000;
+    int     numberOfTimeSteps = 20;
+    int     groupsPerTimeStep = 10;
+    double  churnRate         = 0.1;
+    long    seed              = 42;
+    int     warmupIterations  = 5;
+    int     measuredIterations = 10;
+    boolean useCostModel      = true;
+    boolean usePlantedCommunities = false;
+    boolean useMappedTrajectories = false;
+    String  namesToRun;
+    File    csvFile;
+
+    SyntheticDynamicNetwork network;
+    AttributeModel          attributeModel;
+    FindDynamicCommunities  dynamicCommunities;
+    MatchedGroupGraph       matchedGroupGraph;
+    String[]                arrayOfNodeNames;
+    File                    outputDirectory;
+    PrintStream             out;
+
+    //Keeps the results of the benchmarks, so that the JIT cannot remove the code that computes them
+    static volatile double sink;
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        PipelineBenchmark benchmark = new PipelineBenchmark();
+        try
+        {
+            benchmark.parseArguments(args);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        try
+        {
+            benchmark.run();
+        }
+        catch(Exception ex)
+        {
+            System.err.println("The benchmark failed: " + ex);
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    //A benchmark times run(), which returns the number of operations it did. setUp() is called before
+    //every warmup and measured iteration and is not timed.
+    abstract static class Benchmark
+    {
+        String name;
+        String operation;
+
+        Benchmark(String name, String operation)
+        {
+            this.name      = name;
+            this.operation = operation;
+        }
+
+        void setUp() throws Exception
+        {}
+
+        abstract long run() throws Exception;
+    }
+
+    public void run() throws Exception
+    {
+        out = System.out;
+        out.println("Java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors()
+                  + " processors, maximum heap " + Runtime.getRuntime().maxMemory()/(1024*1024) + " MB");
+        out.println("Network of " + numberOfNodes + " nodes, " + numberOfTimeSteps + " timesteps, " + groupsPerTimeStep
+                  + (usePlantedCommunities ? " planted communities at first" : " groups per timestep")
+                  + ", churn rate " + churnRate + ", seed " + seed + ", "
+                  + (useCostModel ? "cost model" : "sub-community model")
+                  + (useMappedTrajectories ? ", memory-mapped trajectories" : ""));
+        out.println(String.format("%-38s %-11s %12s %16s %14s %16s", "Benchmark", "Operation", "Operations",
+                                  "Mean (ns/op)", "Std. dev.", "Min (ns/op)"));
+
+        outputDirectory = File.createTempFile("benchmark", "");
+        if(!outputDirectory.delete() || !outputDirectory.mkdir())
+            throw new IOException("Could not create directory " + outputDirectory);
+        try
+        {
+            this.prepare();
+            for(Benchmark benchmark:this.createBenchmarks())
+            {
+                if(this.isChosen(benchmark.name))
+                    this.measure(benchmark);
+            }
+        }
+        finally
+        {
+            File[] files = outputDirectory.listFiles();
+            if(files != null)
+                for(File file:files)
+                    file.delete();
+            outputDirectory.delete();
+        }
+    }
+
+    //Creates the network and runs the stages before the ones that are measured, so that every benchmark
+    //finds FindDynamicCommunities in the state it would be in during execute
+    void prepare() throws Exception
+    {
+        if(usePlantedCommunities)
+        {
+            PlantedCommunityGenerator generator = new PlantedCommunityGenerator();
+            generator.setNumberOfNodes(numberOfNodes);
+            generator.setNumberOfTimeSteps(numberOfTimeSteps);
+            generator.setInitialNumberOfCommunities(groupsPerTimeStep);
+            generator.setSwitchRate(churnRate);
+            generator.setSeed(seed);
+            generator.generate();
+            network = new SyntheticDynamicNetwork(generator);
+        }
+        else
+            network = new SyntheticDynamicNetwork(numberOfNodes, numberOfTimeSteps, groupsPerTimeStep, churnRate, seed);
+        attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel();
+
+        dynamicCommunities = new FindDynamicCommunities();
+        dynamicCommunities.setExecuteTBW(useCostModel);
+        dynamicCommunities.setUseMappedTrajectories(useMappedTrajectories);
+        dynamicCommunities.setChosenDirectoryString(outputDirectory.getAbsolutePath());
+        dynamicCommunities.numberOfNodes  = numberOfNodes;
+        dynamicCommunities.timeBegin      = network.getTimeBegin();
+        dynamicCommunities.timeEnd        = network.getTimeEnd();
+        dynamicCommunities.graphNodeIndex = new GraphNodeIndex(network.nodes);
+
+        matchedGroupGraph = this.matchGroups();
+        dynamicCommunities.communityPresenceIndex = new CommunityPresenceIndex(network.groupStructure, network.getTimeBegin(),
+                                                                               network.getTimeEnd(), numberOfNodes);
+        dynamicCommunities.groupColorsForAllNodes = dynamicCommunities.createArrayOfGroupAssociationForAllNodes(
+                network.graphModel, attributeModel, network.groupStructure);
+        this.colorNodes();
+
+        arrayOfNodeNames = new String[numberOfNodes+1];
+        for(int i = 0; i < numberOfNodes; i++)
+            arrayOfNodeNames[dynamicCommunities.graphNodeIndex.rowOf(network.nodes[i])] = network.nodes[i].getNodeData().getLabel();
+    }
+
+    MatchedGroupGraph matchGroups()
+    {
+        network.resetGroups();
+        MatchedGroupGraph matching = new MatchedGroupGraph(FindDynamicCommunities.timeParameter, FindDynamicCommunities.cutoffParameter, false, dynamicCommunities.useArrayMatching);
+        matching.calculateSimilarityBetweenGroups(network.groupStructure, network.getTimeBegin());
+        matching.matchGroupsAtAllTimeSteps(network.groupStructure, network.getTimeBegin());
+        return matching;
+    }
+
+    void colorNodes()
+    {
+        TrajectoryStore groupColors = dynamicCommunities.groupColorsForAllNodes;
+        if(useCostModel)
+            dynamicCommunities.nodeColorsAtEachTimeStep = dynamicCommunities.colorAllIndividuals(groupColors);
+        else
+        {
+            dynamicCommunities.nodeColorsAtEachTimeStep = dynamicCommunities.colorAllIndividualsByGroupColor(groupColors);
+            dynamicCommunities.findSmallerCommunities(network.graph, matchedGroupGraph.currentHighestColorID);
+        }
+    }
+
+    List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        final TrajectoryStore groupColors = dynamicCommunities.groupColorsForAllNodes;
+        //the coloring methods take the group colors of one node as an array indexed by timestep, so the rows are
+        //copied out of the store once here rather than in the measured loops
+        final int[][] rowsOfGroupColors = new int[numberOfNodes+1][];
+        for(int nodeIndex = 1; nodeIndex <= numberOfNodes; nodeIndex++)
+            rowsOfGroupColors[nodeIndex] = groupColors.getRow(nodeIndex);
+        final int     timeBegin          = network.getTimeBegin();
+        final int     timeEnd            = network.getTimeEnd();
+
+        //the recursion takes exponential time in the number of timesteps, so it only colors the first timesteps of a few nodes
+        final int lastTimeStepColoredByRecursion = Math.min(timeEnd-1, timeBegin+TIMESTEPS_COLORED_BY_RECURSION-1);
+        final int numberOfNodesColoredByRecursion = Math.min(numberOfNodes, MAXIMUM_NODES_COLORED_BY_RECURSION);
+        benchmarks.add(new Benchmark("colorOneIndividual", "node")
+        {
+            @Override
+            long run()
+            {
+                double cost = 0;
+                for(int nodeIndex = 1; nodeIndex <= numberOfNodesColoredByRecursion; nodeIndex++)
+                    cost += dynamicCommunities.colorOneIndividual(rowsOfGroupColors[nodeIndex], nodeIndex, lastTimeStepColoredByRecursion).getCost();
+                sink = cost;
+                return numberOfNodesColoredByRecursion;
+            }
+        });
+
+        benchmarks.add(new Benchmark("colorOneIndividualByDynamicProgramming", "node")
+        {
+            @Override
+            long run()
+            {
+                double cost = 0;
+                for(int nodeIndex = 1; nodeIndex <= numberOfNodes; nodeIndex++)
+                    cost += dynamicCommunities.colorOneIndividualByDynamicProgramming(rowsOfGroupColors[nodeIndex], nodeIndex, timeEnd-1).getCost();
+                sink = cost;
+                return numberOfNodes;
+            }
+        });
+
+        //each node is costed at each timestep with the color of its group at the previous timestep
+        benchmarks.add(new Benchmark("getVisitAndAbsenceCost", "call")
+        {
+            @Override
+            long run()
+            {
+                double cost = 0;
+                for(int nodeIndex = 1; nodeIndex <= numberOfNodes; nodeIndex++)
+                {
+                    int[] groupColorsOfNode = rowsOfGroupColors[nodeIndex];
+                    for(int timeStep = timeBegin+1; timeStep < timeEnd; timeStep++)
+                        cost += dynamicCommunities.getVisitAndAbsenceCost(groupColorsOfNode, timeStep, groupColorsOfNode[timeStep-1]);
+                }
+                sink = cost;
+                return (long)numberOfNodes*(timeEnd-timeBegin-1);
+            }
+        });
+
+        benchmarks.add(new JaccardBenchmark("calculateJaccard", true));
+        benchmarks.add(new JaccardBenchmark("calculateJaccard without memberships", false));
+
+        benchmarks.add(new MatchingBenchmark("matchGroupsAtGivenTimeStep", false, false));
+        benchmarks.add(new MatchingBenchmark("matchGroupsAtGivenTimeStep with arrays", true, false));
+        benchmarks.add(new MatchingBenchmark("matchGroupsAtGivenTimeStepOptimally", true, true));
+
+        benchmarks.add(new Benchmark("findSmallerCommunities", "run")
+        {
+            @Override
+            void setUp()
+            {
+                dynamicCommunities.nodeColorsAtEachTimeStep = dynamicCommunities.colorAllIndividualsByGroupColor(groupColors);
+            }
+
+            @Override
+            long run()
+            {
+                dynamicCommunities.findSmallerCommunities(network.graph, matchedGroupGraph.currentHighestColorID);
+                sink = dynamicCommunities.numberOfNodesInEachCommunity.length;
+                return 1;
+            }
+        });
+
+        benchmarks.add(new Benchmark("writeReport", "run")
+        {
+            @Override
+            void setUp()
+            {
+                colorNodes();
+            }
+
+            @Override
+            long run()
+            {
+                dynamicCommunities.writeReport(network.graphModel, attributeModel);
+                sink = dynamicCommunities.getReport().length();
+                return 1;
+            }
+        });
+
+        benchmarks.add(new Benchmark("createCSVFile", "run")
+        {
+            @Override
+            long run() throws IOException
+            {
+                dynamicCommunities.createCSVFile(arrayOfNodeNames);
+                sink = new File(outputDirectory, "Report.csv").length();
+                return 1;
+            }
+        });
+        return benchmarks;
+    }
+
+    //Compares every group with every group of the previous timestep. Without memberships the node ids of the
+    //groups are compared, which is what calculateJaccard does for groups that were not prepared for matching.
+    //The similar groups are found in setUp(), since matching uses them up
+    class MatchingBenchmark extends Benchmark
+    {
+        boolean withArrays;
+        boolean optimally;
+
+        MatchingBenchmark(String name, boolean withArrays, boolean optimally)
+        {
+            super(name, "timestep");
+            this.withArrays = withArrays;
+            this.optimally  = optimally;
+        }
+
+        @Override
+        void setUp()
+        {
+            network.resetGroups();
+            matchedGroupGraph = new MatchedGroupGraph(FindDynamicCommunities.timeParameter, FindDynamicCommunities.cutoffParameter, false, withArrays, optimally);
+            matchedGroupGraph.calculateSimilarityBetweenGroups(network.groupStructure, network.getTimeBegin());
+        }
+
+        @Override
+        long run()
+        {
+            matchedGroupGraph.matchGroupsAtAllTimeSteps(network.groupStructure, network.getTimeBegin());
+            sink = matchedGroupGraph.currentHighestColorID;
+            return network.getTimeEnd()-network.getTimeBegin()-1;
+        }
+    }
+
+    class JaccardBenchmark extends Benchmark
+    {
+        boolean           withMemberships;
+        MatchedGroupGraph matching;
+
+        JaccardBenchmark(String name, boolean withMemberships)
+        {
+            super(name, "pair");
+            this.withMemberships = withMemberships;
+        }
+
+        @Override
+        void setUp()
+        {
+            matching = new MatchedGroupGraph(FindDynamicCommunities.timeParameter, FindDynamicCommunities.cutoffParameter, false);
+            matching.prepareGroupMemberships(network.groupStructure);
+            if(!withMemberships)
+                for(int timeStep = network.getTimeBegin(); timeStep < network.getTimeEnd(); timeStep++)
+                    for(Group group:network.groupStructure[timeStep].groups)
+                        group.membership = null;
+        }
+
+        @Override
+        long run()
+        {
+            double similarity = 0;
+            long numberOfPairs = 0;
+            for(int timeStep = network.getTimeBegin()+1; timeStep < network.getTimeEnd(); timeStep++)
+            {
+                for(Group group:network.groupStructure[timeStep].groups)
+                {
+                    for(Group earlierGroup:network.groupStructure[timeStep-1].groups)
+                    {
+                        similarity += matching.calculateJaccard(group, earlierGroup);
+                        numberOfPairs++;
+                    }
+                }
+            }
+            sink = similarity;
+            return numberOfPairs;
+        }
+    }
+
+    void measure(Benchmark benchmark) throws Exception
+    {
+        PrintStream discarded = new PrintStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {}
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {}
+        });
+
+        long     numberOfOperations = 0;
+        double[] nanosecondsPerOperation = new double[measuredIterations];
+        System.setOut(discarded);
+        try
+        {
+            for(int iteration = 0; iteration < warmupIterations+measuredIterations; iteration++)
+            {
+                benchmark.setUp();
+                long start = System.nanoTime();
+                numberOfOperations = benchmark.run();
+                long elapsed = System.nanoTime()-start;
+                if(iteration >= warmupIterations)
+                    nanosecondsPerOperation[iteration-warmupIterations] = (double)elapsed/Math.max(1, numberOfOperations);
+            }
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+
+        double mean = 0;
+        double minimum = Double.MAX_VALUE;
+        for(double time:nanosecondsPerOperation)
+        {
+            mean   += time/measuredIterations;
+            minimum = Math.min(minimum, time);
+        }
+        double variance = 0;
+        for(double time:nanosecondsPerOperation)
+            variance += (time-mean)*(time-mean)/Math.max(1, measuredIterations-1);
+        double standardDeviation = Math.sqrt(variance);
+
+        out.println(String.format("%-38s %-11s %12d %16.1f %14.1f %16.1f", benchmark.name, benchmark.operation,
+                                  numberOfOperations, mean, standardDeviation, minimum));
+        if(csvFile != null)
+            this.appendToCSVFile(benchmark, numberOfOperations, mean, standardDeviation, minimum);
+    }
+
+    //Appends one line per benchmark, with the parameters of the network, so that runs can be compared over time
+    void appendToCSVFile(Benchmark benchmark, long numberOfOperations, double mean, double standardDeviation, double minimum) throws IOException
+    {
+        boolean isNewFile = !csvFile.exists() || csvFile.length() == 0;
+        Writer writer = new BufferedWriter(new FileWriter(csvFile, true));
+        try
+        {
+            if(isNewFile)
+                writer.write("benchmark,operation,nodes,timesteps,groups,churn,model,operations,mean ns/op,std. dev.,min ns/op\n");
+            writer.write(benchmark.name + "," + benchmark.operation + "," + numberOfNodes + "," + numberOfTimeSteps + ","
+                       + groupsPerTimeStep + "," + churnRate + "," + (useCostModel ? "cost" : "sub-community")
+                       + (usePlantedCommunities ? " planted" : "") + (useMappedTrajectories ? " mapped" : "") + ","
+                       + numberOfOperations + "," + mean + "," + standardDeviation + "," + minimum + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    boolean isChosen(String name)
+    {
+        if(namesToRun == null)
+            return true;
+        Set<String> chosenNames = new HashSet<String>(Arrays.asList(namesToRun.split(",")));
+        return chosenNames.contains(name);
+    }
+
+    public void parseArguments(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(option.equals("--nodes"))
+                numberOfNodes = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1);
+            else if(option.equals("--timesteps"))
+                numberOfTimeSteps = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 2);
+            else if(option.equals("--groups"))
+                groupsPerTimeStep = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1);
+            else if(option.equals("--churn"))
+            {
+                churnRate = FindDynamicCommunitiesCommandLine.parseDouble(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option));
+                if((churnRate < 0)||(churnRate > 1))
+                    throw new IllegalArgumentException("--churn must be between 0 and 1");
+            }
+            else if(option.equals("--seed"))
+                seed = Long.parseLong(FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option));
+            else if(option.equals("--warmup"))
+                warmupIterations = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 0);
+            else if(option.equals("--iterations"))
+                measuredIterations = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1);
+            else if(option.equals("--sub-community"))
+                useCostModel = false;
+            else if(option.equals("--planted"))
+                usePlantedCommunities = true;
+            else if(option.equals("--mapped"))
+                useMappedTrajectories = true;
+            else if(option.equals("--benchmarks"))
+                namesToRun = FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option);
+            else if(option.equals("--csv"))
+                csvFile = new File(FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option));
+            else
+                throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+
+    static void printUsage()
+    {
+        System.err.println("Usage: PipelineBenchmark [options]");
+        System.err.println("  --nodes <number>         nodes in the network (default: 1000)");
+        System.err.println("  --timesteps <number>     timesteps in the network (default: 20)");
+        System.err.println("  --groups <number>        groups at each timestep (default: 10)");
+        System.err.println("  --churn <rate>           probability that a node leaves its group at a timestep (default: 0.1)");
+        System.err.println("  --seed <number>          seed of the network (default: 42)");
+        System.err.println("  --warmup <number>        warmup iterations of each benchmark (default: 5)");
+        System.err.println("  --iterations <number>    measured iterations of each benchmark (default: 10)");
+        System.err.println("  --planted                use the planted communities of a PlantedCommunityGenerator, with --groups");
+        System.err.println("                           communities at first and --churn as the switch rate");
+        System.err.println("  --sub-community          prepare the report with the sub-community model instead of the cost model");
+        System.err.println("  --mapped                 keep the colors in memory-mapped files instead of on the heap");
+        System.err.println("  --benchmarks <names>     comma separated names of the benchmarks to run (default: all)");
+        System.err.println("  --csv <file>             also append the results to a CSV file");
+    }
+}
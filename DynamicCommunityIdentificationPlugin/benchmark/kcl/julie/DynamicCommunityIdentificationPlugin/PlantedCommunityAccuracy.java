@@ -0,0 +1,348 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.File;
+import java.util.Arrays;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.openide.util.Lookup;
+
+/*
+ * @author Julie Kauffman
+ * The PlantedCommunityAccuracy generates a network with a PlantedCommunityGenerator and
+ * measures how well the dynamic communities are found on it. The groups are found by
+ * the built-in Louvain method and by the incremental group detection, or are taken
+ * directly from the planted communities to measure the group matching alone. They are
+ * then matched exactly, with MinHash signatures, and by the optimal assignment. Two normalized mutual informations
+ * (NMI) with the planted communities are given, over the nodes present at each timestep:
+ * the mean of the NMI of the groups at each timestep, which only depends on the group
+ * detection, and the NMI of the communities over all node-steps, which is only high
+ * when the groups are also matched to the right communities across timesteps. With
+ * --gexf the network is also written to a dynamic GEXF file, which can be opened in Gephi.
+ * It is run with "ant planted-accuracy", with the options in the accuracy.args property,
+ * for example:
+ *
+ *   ant planted-accuracy -Daccuracy.args="--nodes 10000 --timesteps 100 --mixing 0.3"
+ */
+
+public class PlantedCommunityAccuracy
+{
+    static final String[] NAMES_OF_MATCHINGS = {"exact", "MinHash", "optimal"};
+
+    PlantedCommunityGenerator generator = new PlantedCommunityGenerator();
+    File   gexfFile;
+    Node[] nodes;
+    int    minNodeId;
+    int    numberOfPresentNodeSteps;
+    int[]  plantedCommunityOfNodeStep;
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        PlantedCommunityAccuracy accuracy = new PlantedCommunityAccuracy();
+        try
+        {
+            accuracy.parseArguments(args);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        try
+        {
+            accuracy.run();
+        }
+        catch(Exception ex)
+        {
+            System.err.println("The accuracy check failed: " + ex);
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public void run() throws Exception
+    {
+        long start = System.nanoTime();
+        generator.generate();
+        System.out.println("Generated " + generator.getNumberOfNodes() + " nodes and " + generator.getNumberOfTimeSteps()
+                         + " timesteps in " + (System.nanoTime()-start)/1000000 + " ms");
+        this.printEvents();
+
+        if(gexfFile != null)
+        {
+            start = System.nanoTime();
+            generator.writeGexf(gexfFile);
+            System.out.println("Written to " + gexfFile.getAbsolutePath() + " in " + (System.nanoTime()-start)/1000000 + " ms");
+        }
+
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if(projectController == null)
+            throw new IllegalStateException("The Gephi modules are not on the classpath");
+        projectController.newProject();
+        GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
+        nodes     = generator.addNodesTo(graphModel);
+        minNodeId = nodes[0].getId();
+        this.collectPlantedCommunities();
+
+        System.out.println(String.format("%-22s %-12s %14s %14s %12s %14s %14s", "Groups", "Matching", "Groups/step",
+                                         "Detection ms", "Matching ms", "NMI of groups", "NMI over time"));
+        int timeBegin = generator.getTimeBegin();
+        int timeEnd   = generator.getTimeEnd();
+        String[] namesOfDetections = {"planted communities", "Louvain", "incremental Louvain"};
+        for(String nameOfDetection:namesOfDetections)
+        {
+            //the groups of each timestep are kept as the nodes present and the group of each of them
+            Node[][] nodesAtTimeStep = new Node[timeEnd][];
+            int[][]  groupsAtTimeStep = new int[timeEnd][];
+            start = System.nanoTime();
+            if(nameOfDetection.equals("planted communities"))
+            {
+                GroupStructure[] planted = generator.createGroupStructures(graphModel.getGraph(), nodes);
+                for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+                    this.keepGroups(planted[timeStep], nodesAtTimeStep, groupsAtTimeStep, timeStep);
+            }
+            else
+            {
+                LouvainCommunityDetection louvain       = new LouvainCommunityDetection();
+                IncrementalCommunityDetection detection = new IncrementalCommunityDetection();
+                for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+                {
+                    SnapshotAdjacency adjacency = generator.createSnapshot(timeStep, nodes);
+                    nodesAtTimeStep[timeStep]  = adjacency.nodes;
+                    groupsAtTimeStep[timeStep] = nameOfDetection.equals("Louvain") ? louvain.detectCommunities(adjacency)
+                                                                                     : detection.detectCommunities(adjacency);
+                }
+            }
+            long elapsedMillisecondsOfDetection = (System.nanoTime()-start)/1000000;
+            double nmiOfGroups = this.getMeanNMIOfGroups(nodesAtTimeStep, groupsAtTimeStep);
+
+            for(int matching = 0; matching < NAMES_OF_MATCHINGS.length; matching++)
+            {
+                GroupStructure[] structureArray = new GroupStructure[timeEnd+1];
+                int numberOfGroups = 0;
+                for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+                {
+                    structureArray[timeStep] = new GroupStructure(graphModel.getGraph(), nodesAtTimeStep[timeStep], groupsAtTimeStep[timeStep], timeStep);
+                    numberOfGroups += structureArray[timeStep].groups.length;
+                }
+                start = System.nanoTime();
+                MatchedGroupGraph matchedGroupGraph = new MatchedGroupGraph(FindDynamicCommunities.timeParameter, FindDynamicCommunities.cutoffParameter, 
+                                                                            matching == 1, true, matching == 2);
+                matchedGroupGraph.calculateSimilarityBetweenGroups(structureArray, timeBegin);
+                matchedGroupGraph.matchGroupsAtAllTimeSteps(structureArray, timeBegin);
+                long elapsedMillisecondsOfMatching = (System.nanoTime()-start)/1000000;
+
+                System.out.println(String.format("%-22s %-12s %14.1f %14d %12d %14.4f %14.4f", nameOfDetection,
+                                                 NAMES_OF_MATCHINGS[matching], (double)numberOfGroups/(timeEnd-timeBegin),
+                                                 elapsedMillisecondsOfDetection, elapsedMillisecondsOfMatching, nmiOfGroups,
+                                                 this.getNMIOverTime(structureArray)));
+                if(matching == 2)
+                    System.out.println("  " + matchedGroupGraph.getReport().replace("<br>", ""));
+            }
+        }
+    }
+
+    void printEvents()
+    {
+        int births = 0, deaths = 0, merges = 0, splits = 0, switches = 0;
+        for(int timeStep = generator.getTimeBegin(); timeStep < generator.getTimeEnd(); timeStep++)
+        {
+            births   += generator.getNumberOfBirths(timeStep);
+            deaths   += generator.getNumberOfDeaths(timeStep);
+            merges   += generator.getNumberOfMerges(timeStep);
+            splits   += generator.getNumberOfSplits(timeStep);
+            switches += generator.getNumberOfSwitches(timeStep);
+        }
+        System.out.println(generator.getNumberOfCommunities() + " planted communities, " + births + " births, " + deaths + " deaths, "
+                         + merges + " merges, " + splits + " splits, " + switches + " switches");
+    }
+
+    void keepGroups(GroupStructure structure, Node[][] nodesAtTimeStep, int[][] groupsAtTimeStep, int timeStep)
+    {
+        Node[] nodesOfStructure  = new Node[structure.numberOfNodes];
+        int[]  groupsOfStructure = new int[structure.numberOfNodes];
+        int count = 0;
+        for(int group = 0; group < structure.groups.length; group++)
+        {
+            for(Node n:structure.groups[group].nodes)
+            {
+                nodesOfStructure[count]    = n;
+                groupsOfStructure[count++] = group;
+            }
+        }
+        nodesAtTimeStep[timeStep]  = nodesOfStructure;
+        groupsAtTimeStep[timeStep] = groupsOfStructure;
+    }
+
+    //Keeps the planted community of every node present at each timestep, in the order of the node-steps used by getNMIOverTime
+    void collectPlantedCommunities()
+    {
+        numberOfPresentNodeSteps = 0;
+        for(int timeStep = generator.getTimeBegin(); timeStep < generator.getTimeEnd(); timeStep++)
+            for(int community:generator.getCommunityOfNodes(timeStep))
+                if(community != 0)
+                    numberOfPresentNodeSteps++;
+        plantedCommunityOfNodeStep = new int[numberOfPresentNodeSteps];
+        int count = 0;
+        for(int timeStep = generator.getTimeBegin(); timeStep < generator.getTimeEnd(); timeStep++)
+            for(int community:generator.getCommunityOfNodes(timeStep))
+                if(community != 0)
+                    plantedCommunityOfNodeStep[count++] = community;
+    }
+
+    double getMeanNMIOfGroups(Node[][] nodesAtTimeStep, int[][] groupsAtTimeStep)
+    {
+        double sum = 0;
+        for(int timeStep = generator.getTimeBegin(); timeStep < generator.getTimeEnd(); timeStep++)
+        {
+            int[] planted = generator.getCommunityOfNodes(timeStep);
+            Node[] nodesOfTimeStep = nodesAtTimeStep[timeStep];
+            int[] plantedOfNode = new int[nodesOfTimeStep.length];
+            for(int i = 0; i < nodesOfTimeStep.length; i++)
+                plantedOfNode[i] = planted[nodesOfTimeStep[i].getId()-minNodeId];
+            sum += normalizedMutualInformation(plantedOfNode, groupsAtTimeStep[timeStep], nodesOfTimeStep.length);
+        }
+        return sum/(generator.getTimeEnd()-generator.getTimeBegin());
+    }
+
+    double getNMIOverTime(GroupStructure[] structureArray)
+    {
+        int[] colorOfNode = new int[generator.getNumberOfNodes()];
+        int[] colorOfNodeStep = new int[numberOfPresentNodeSteps];
+        int count = 0;
+        for(int timeStep = generator.getTimeBegin(); timeStep < generator.getTimeEnd(); timeStep++)
+        {
+            for(Group group:structureArray[timeStep].groups)
+                for(Node n:group.nodes)
+                    colorOfNode[n.getId()-minNodeId] = group.getColorId();
+            int[] planted = generator.getCommunityOfNodes(timeStep);
+            for(int node = 0; node < planted.length; node++)
+                if(planted[node] != 0)
+                    colorOfNodeStep[count++] = colorOfNode[node];
+        }
+        return normalizedMutualInformation(plantedCommunityOfNodeStep, colorOfNodeStep, numberOfPresentNodeSteps);
+    }
+
+    //NMI = 2 I(A;B) / (H(A) + H(B)) of the labels a[0..n-1] and b[0..n-1], which must not be negative. The joint
+    //and marginal counts are found by sorting, so no map is needed for millions of labels.
+    public static double normalizedMutualInformation(int[] a, int[] b, int n)
+    {
+        if(n == 0)
+            return 1;
+        long[] pairs  = new long[n];
+        int[]  sorted = new int[n];
+        for(int i = 0; i < n; i++)
+            pairs[i] = ((long)a[i] << 32) | b[i];
+        Arrays.sort(pairs);
+
+        int maximumOfA = 0, maximumOfB = 0;
+        for(int i = 0; i < n; i++)
+        {
+            maximumOfA = Math.max(maximumOfA, a[i]);
+            maximumOfB = Math.max(maximumOfB, b[i]);
+        }
+        int[] countOfA = new int[maximumOfA+1];
+        int[] countOfB = new int[maximumOfB+1];
+        for(int i = 0; i < n; i++)
+        {
+            countOfA[a[i]]++;
+            countOfB[b[i]]++;
+        }
+        double entropyOfA = entropy(countOfA, n);
+        double entropyOfB = entropy(countOfB, n);
+
+        double mutualInformation = 0;
+        for(int i = 0; i < n; )
+        {
+            int j = i;
+            while((j < n)&&(pairs[j] == pairs[i]))
+                j++;
+            double joint = j-i;
+            mutualInformation += joint/n * Math.log(joint*n/((double)countOfA[(int)(pairs[i] >>> 32)]*countOfB[(int)pairs[i]]));
+            i = j;
+        }
+        if(entropyOfA+entropyOfB == 0)
+            return 1;
+        return 2*mutualInformation/(entropyOfA+entropyOfB);
+    }
+
+    static double entropy(int[] counts, int n)
+    {
+        double entropy = 0;
+        for(int count:counts)
+            if(count > 0)
+                entropy -= (double)count/n * Math.log((double)count/n);
+        return entropy;
+    }
+
+    public void parseArguments(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(option.equals("--nodes"))
+                generator.setNumberOfNodes(FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--timesteps"))
+                generator.setNumberOfTimeSteps(FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 2));
+            else if(option.equals("--communities"))
+                generator.setInitialNumberOfCommunities(FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--degree"))
+                generator.setAverageDegree(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), Double.MAX_VALUE));
+            else if(option.equals("--mixing"))
+                generator.setMixingRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--birth"))
+                generator.setBirthRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--death"))
+                generator.setDeathRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--merge"))
+                generator.setMergeRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--split"))
+                generator.setSplitRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--switch"))
+                generator.setSwitchRate(parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1));
+            else if(option.equals("--seed"))
+                generator.setSeed(Long.parseLong(FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option)));
+            else if(option.equals("--time"))
+                FindDynamicCommunities.timeParameter = FindDynamicCommunitiesCommandLine.parseInt(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1);
+            else if(option.equals("--cutoff"))
+                FindDynamicCommunities.cutoffParameter = parseRate(option, FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option), 1);
+            else if(option.equals("--gexf"))
+                gexfFile = new File(FindDynamicCommunitiesCommandLine.valueOf(args, ++i, option));
+            else
+                throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+
+    static double parseRate(String option, String value, double maximum)
+    {
+        double rate = FindDynamicCommunitiesCommandLine.parseDouble(option, value);
+        if((rate < 0)||(rate > maximum))
+            throw new IllegalArgumentException(option + " must be between 0 and " + maximum);
+        return rate;
+    }
+
+    static void printUsage()
+    {
+        System.err.println("Usage: PlantedCommunityAccuracy [options]");
+        System.err.println("  --nodes <number>         nodes in the network (default: 1000)");
+        System.err.println("  --timesteps <number>     timesteps in the network (default: 50)");
+        System.err.println("  --communities <number>   communities at the first timestep (default: 20)");
+        System.err.println("  --degree <number>        average degree of the nodes (default: 8)");
+        System.err.println("  --mixing <rate>          fraction of the edges of a node outside its community (default: 0.1)");
+        System.err.println("  --birth <rate>           births per community and timestep (default: 0.01)");
+        System.err.println("  --death <rate>           deaths per community and timestep (default: 0.01)");
+        System.err.println("  --merge <rate>           merges per community and timestep (default: 0.01)");
+        System.err.println("  --split <rate>           splits per community and timestep (default: 0.01)");
+        System.err.println("  --switch <rate>          switches per node and timestep (default: 0.02)");
+        System.err.println("  --seed <number>          seed of the network (default: 42)");
+        System.err.println("  --time <timesteps>       search parameter of the group matching (default: 1)");
+        System.err.println("  --cutoff <jaccard>       Jaccard cutoff of the group matching (default: 0.4)");
+        System.err.println("  --gexf <file>            also write the network to a dynamic GEXF file");
+    }
+}
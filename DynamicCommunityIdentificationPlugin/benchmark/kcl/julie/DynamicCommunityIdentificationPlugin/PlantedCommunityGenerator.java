@@ -0,0 +1,732 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+
+/*
+ * @author Julie Kauffman
+ * The PlantedCommunityGenerator creates dynamic networks whose communities are known,
+ * to measure how well the groups are found and matched on networks of any size. At
+ * the first timestep the nodes are spread at random over the initial communities.
+ * Between two timesteps the communities then evolve through these events, each with
+ * its own rate:
+ *
+ *   death   a community disappears and its nodes are absent until a birth takes them
+ *   merge   two communities join, and the larger one keeps its id
+ *   split   about half of a community leaves to form a new community
+ *   birth   a new community forms from absent nodes, or else from nodes of other communities
+ *   switch  a node moves to another community
+ *
+ * The rates of deaths, merges, splits and births are per community and timestep, and
+ * the rate of switches is per node and timestep. Communities are numbered from 1, in
+ * the order they appear, and 0 means that a node is absent.
+ *
+ * Each node has about averageDegree edges, a fraction mixingRate of which go to random
+ * nodes and the rest to nodes of its own community. The edges inside a community are
+ * found by consistent hashing: the members are placed on a ring by a hash of their
+ * node and community, and each node is linked to the members that follow a few hashed
+ * points of the ring. So an edge stays as long as both of its nodes stay in the
+ * community, and a node joining or leaving only changes a few edges. The random edges
+ * are drawn again at each timestep.
+ *
+ * Only the community of each node at each timestep is kept, in one int per node-step,
+ * and the edges of a timestep are computed again when they are needed. The network
+ * can be written to a dynamic GEXF file, with the planted community of each node as a
+ * dynamic attribute, or be given directly as a SnapshotAdjacency for each timestep or
+ * as the group structures that a perfect group detection would find. Up to 2^24 nodes
+ * are supported. The same parameters and seed always give the same network.
+ */
+
+public class PlantedCommunityGenerator
+{
+    public static final int    MINIMUM_COMMUNITY_SIZE = 2;
+    public static final String PLANTED_COMMUNITY      = "Planted Community";
+
+    int    numberOfNodes              = 1000;
+    int    numberOfTimeSteps          = 50;
+    int    initialNumberOfCommunities = 20;
+    double averageDegree              = 8;
+    double mixingRate                 = 0.1;
+    double birthRate                  = 0.01;
+    double deathRate                  = 0.01;
+    double mergeRate                  = 0.01;
+    double splitRate                  = 0.01;
+    double switchRate                 = 0.02;
+    long   seed                       = 42;
+
+    //indexed by timestep from 1 to numberOfTimeSteps, like the group structures
+    int[][] communityOfNodeAtTimeStep;
+    int     numberOfCommunities;
+    int[]   numberOfBirthsAtTimeStep;
+    int[]   numberOfDeathsAtTimeStep;
+    int[]   numberOfMergesAtTimeStep;
+    int[]   numberOfSplitsAtTimeStep;
+    int[]   numberOfSwitchesAtTimeStep;
+
+    //the state of the communities while they are generated, indexed by community
+    int[]   sizeOfCommunity;
+    int[]   communityAfterEvent;
+    boolean[] isChangedByEvent;
+
+    public void setNumberOfNodes(int nodes)
+    {
+        if((nodes < 1)||(nodes > (1 << 24)))
+            throw new IllegalArgumentException("The number of nodes must be between 1 and " + (1 << 24));
+        numberOfNodes = nodes;
+    }
+
+    public void setNumberOfTimeSteps(int timeSteps)
+    {numberOfTimeSteps = timeSteps;}
+
+    public void setInitialNumberOfCommunities(int communities)
+    {initialNumberOfCommunities = communities;}
+
+    public void setAverageDegree(double degree)
+    {averageDegree = degree;}
+
+    public void setMixingRate(double rate)
+    {mixingRate = rate;}
+
+    public void setBirthRate(double rate)
+    {birthRate = rate;}
+
+    public void setDeathRate(double rate)
+    {deathRate = rate;}
+
+    public void setMergeRate(double rate)
+    {mergeRate = rate;}
+
+    public void setSplitRate(double rate)
+    {splitRate = rate;}
+
+    public void setSwitchRate(double rate)
+    {switchRate = rate;}
+
+    public void setSeed(long s)
+    {seed = s;}
+
+    public int getNumberOfNodes()
+    {return numberOfNodes;}
+
+    public int getNumberOfTimeSteps()
+    {return numberOfTimeSteps;}
+
+    public int getTimeBegin()
+    {return 1;}
+
+    public int getTimeEnd()
+    {return numberOfTimeSteps+1;}
+
+    //Returns the highest community id used at any timestep
+    public int getNumberOfCommunities()
+    {return numberOfCommunities;}
+
+    //Returns the planted community of each node at the given timestep, or 0 when the node is absent
+    public int[] getCommunityOfNodes(int timeStep)
+    {return communityOfNodeAtTimeStep[timeStep];}
+
+    public int getNumberOfBirths(int timeStep)
+    {return numberOfBirthsAtTimeStep[timeStep];}
+
+    public int getNumberOfDeaths(int timeStep)
+    {return numberOfDeathsAtTimeStep[timeStep];}
+
+    public int getNumberOfMerges(int timeStep)
+    {return numberOfMergesAtTimeStep[timeStep];}
+
+    public int getNumberOfSplits(int timeStep)
+    {return numberOfSplitsAtTimeStep[timeStep];}
+
+    public int getNumberOfSwitches(int timeStep)
+    {return numberOfSwitchesAtTimeStep[timeStep];}
+
+    //Creates the community of each node at each timestep
+    public void generate()
+    {
+        Random random = new Random(seed);
+        communityOfNodeAtTimeStep  = new int[numberOfTimeSteps+1][];
+        numberOfBirthsAtTimeStep   = new int[numberOfTimeSteps+1];
+        numberOfDeathsAtTimeStep   = new int[numberOfTimeSteps+1];
+        numberOfMergesAtTimeStep   = new int[numberOfTimeSteps+1];
+        numberOfSplitsAtTimeStep   = new int[numberOfTimeSteps+1];
+        numberOfSwitchesAtTimeStep = new int[numberOfTimeSteps+1];
+
+        int initialCommunities = Math.max(1, Math.min(initialNumberOfCommunities, numberOfNodes));
+        int[] community = new int[numberOfNodes];
+        sizeOfCommunity = new int[initialCommunities+1];
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            //every initial community gets at least one node
+            community[node] = node < initialCommunities ? node+1 : 1+random.nextInt(initialCommunities);
+            sizeOfCommunity[community[node]]++;
+        }
+        numberOfCommunities = initialCommunities;
+        communityOfNodeAtTimeStep[1] = community.clone();
+
+        for(int timeStep = 2; timeStep <= numberOfTimeSteps; timeStep++)
+        {
+            this.applyDeaths(community, random, timeStep);
+            this.applyMerges(community, random, timeStep);
+            this.applySplits(community, random, timeStep);
+            this.applyBirths(community, random, timeStep);
+            this.applySwitches(community, random, timeStep);
+            communityOfNodeAtTimeStep[timeStep] = community.clone();
+        }
+        sizeOfCommunity     = null;
+        communityAfterEvent = null;
+        isChangedByEvent    = null;
+    }
+
+    //Returns the ids of the communities that have at least one node
+    int[] getLivingCommunities()
+    {
+        int numberOfLivingCommunities = 0;
+        for(int c = 1; c <= numberOfCommunities; c++)
+            if(sizeOfCommunity[c] > 0)
+                numberOfLivingCommunities++;
+        int[] livingCommunities = new int[numberOfLivingCommunities];
+        int count = 0;
+        for(int c = 1; c <= numberOfCommunities; c++)
+            if(sizeOfCommunity[c] > 0)
+                livingCommunities[count++] = c;
+        return livingCommunities;
+    }
+
+    //Starts an event that maps communities to other communities, with every community mapped to itself
+    void prepareEvent()
+    {
+        if((communityAfterEvent == null)||(communityAfterEvent.length < numberOfCommunities+1))
+        {
+            communityAfterEvent = new int[sizeOfCommunity.length];
+            isChangedByEvent    = new boolean[sizeOfCommunity.length];
+        }
+        for(int c = 0; c <= numberOfCommunities; c++)
+        {
+            communityAfterEvent[c] = c;
+            isChangedByEvent[c]    = false;
+        }
+    }
+
+    //Gives a new community id, with room for its size
+    int createCommunity()
+    {
+        numberOfCommunities++;
+        if(numberOfCommunities >= sizeOfCommunity.length)
+            sizeOfCommunity = Arrays.copyOf(sizeOfCommunity, 2*sizeOfCommunity.length);
+        return numberOfCommunities;
+    }
+
+    //A community that dies leaves its nodes absent. At least one community is always kept.
+    void applyDeaths(int[] community, Random random, int timeStep)
+    {
+        int[] livingCommunities = this.getLivingCommunities();
+        int numberOfLivingCommunities = livingCommunities.length;
+        this.prepareEvent();
+        for(int c:livingCommunities)
+        {
+            if((numberOfLivingCommunities > 1)&&(random.nextDouble() < deathRate))
+            {
+                communityAfterEvent[c] = 0;
+                numberOfLivingCommunities--;
+                numberOfDeathsAtTimeStep[timeStep]++;
+            }
+        }
+        this.moveNodesAfterEvent(community);
+    }
+
+    //A community merges with another one that has not been part of a merge at this timestep yet
+    void applyMerges(int[] community, Random random, int timeStep)
+    {
+        int[] livingCommunities = this.getLivingCommunities();
+        this.prepareEvent();
+        for(int c:livingCommunities)
+        {
+            if(isChangedByEvent[c]||(livingCommunities.length < 2)||(random.nextDouble() >= mergeRate))
+                continue;
+            int other = livingCommunities[random.nextInt(livingCommunities.length)];
+            if((other == c)||isChangedByEvent[other])
+                continue;
+            int larger  = sizeOfCommunity[c] >= sizeOfCommunity[other] ? c : other;
+            int smaller = larger == c ? other : c;
+            communityAfterEvent[smaller] = larger;
+            isChangedByEvent[smaller]    = true;
+            isChangedByEvent[larger]     = true;
+            numberOfMergesAtTimeStep[timeStep]++;
+        }
+        this.moveNodesAfterEvent(community);
+    }
+
+    void moveNodesAfterEvent(int[] community)
+    {
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            int newCommunity = communityAfterEvent[community[node]];
+            if(newCommunity != community[node])
+            {
+                sizeOfCommunity[community[node]]--;
+                sizeOfCommunity[newCommunity]++;
+                community[node] = newCommunity;
+            }
+        }
+        sizeOfCommunity[0] = 0;
+    }
+
+    //Half of the nodes of a community, chosen at random, form a new community
+    void applySplits(int[] community, Random random, int timeStep)
+    {
+        int[] livingCommunities = this.getLivingCommunities();
+        int[] newCommunityOf = new int[numberOfCommunities+1];
+        int[] nodesLeftToMove = new int[numberOfCommunities+1];
+        int[] nodesLeftToVisit = new int[numberOfCommunities+1];
+        boolean anySplit = false;
+        for(int c:livingCommunities)
+        {
+            if((sizeOfCommunity[c] >= 2*MINIMUM_COMMUNITY_SIZE)&&(random.nextDouble() < splitRate))
+            {
+                newCommunityOf[c]   = this.createCommunity();
+                nodesLeftToMove[c]  = sizeOfCommunity[c]/2;
+                nodesLeftToVisit[c] = sizeOfCommunity[c];
+                anySplit = true;
+                numberOfSplitsAtTimeStep[timeStep]++;
+            }
+        }
+        if(!anySplit)
+            return;
+
+        //selection sampling, so that exactly half of the nodes move and every subset is as likely
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            int c = community[node];
+            if((c == 0)||(c >= newCommunityOf.length)||(newCommunityOf[c] == 0))
+                continue;
+            if(random.nextInt(nodesLeftToVisit[c]) < nodesLeftToMove[c])
+            {
+                community[node] = newCommunityOf[c];
+                sizeOfCommunity[c]--;
+                sizeOfCommunity[newCommunityOf[c]]++;
+                nodesLeftToMove[c]--;
+            }
+            nodesLeftToVisit[c]--;
+        }
+    }
+
+    //A new community takes as many nodes as the average community, first from the absent nodes, then from
+    //communities that keep at least MINIMUM_COMMUNITY_SIZE nodes
+    void applyBirths(int[] community, Random random, int timeStep)
+    {
+        int[] livingCommunities = this.getLivingCommunities();
+        int numberOfBirths = 0;
+        for(int i = 0; i < livingCommunities.length; i++)
+            if(random.nextDouble() < birthRate)
+                numberOfBirths++;
+        if(numberOfBirths == 0)
+            return;
+
+        int numberOfPresentNodes = 0;
+        for(int c:livingCommunities)
+            numberOfPresentNodes += sizeOfCommunity[c];
+        int sizeOfNewCommunity = Math.max(MINIMUM_COMMUNITY_SIZE, numberOfPresentNodes/Math.max(1, livingCommunities.length));
+
+        int[] absentNodes = new int[numberOfNodes-numberOfPresentNodes];
+        int numberOfAbsentNodes = 0;
+        for(int node = 0; node < numberOfNodes; node++)
+            if(community[node] == 0)
+                absentNodes[numberOfAbsentNodes++] = node;
+
+        for(int birth = 0; birth < numberOfBirths; birth++)
+        {
+            int newCommunity = this.createCommunity();
+            int size = 0;
+            for(int attempt = 0; (size < sizeOfNewCommunity)&&(attempt < 4*sizeOfNewCommunity); attempt++)
+            {
+                int node;
+                if(numberOfAbsentNodes > 0)
+                {
+                    int i = random.nextInt(numberOfAbsentNodes);
+                    node = absentNodes[i];
+                    absentNodes[i] = absentNodes[--numberOfAbsentNodes];
+                }
+                else
+                {
+                    node = random.nextInt(numberOfNodes);
+                    if((community[node] == newCommunity)||(sizeOfCommunity[community[node]] <= MINIMUM_COMMUNITY_SIZE))
+                        continue;
+                }
+                sizeOfCommunity[community[node]]--;
+                sizeOfCommunity[newCommunity]++;
+                community[node] = newCommunity;
+                size++;
+            }
+            sizeOfCommunity[0] = 0;
+            if(size > 0)
+                numberOfBirthsAtTimeStep[timeStep]++;
+        }
+    }
+
+    //A node moves to another living community, as long as its own community keeps MINIMUM_COMMUNITY_SIZE nodes
+    void applySwitches(int[] community, Random random, int timeStep)
+    {
+        int[] livingCommunities = this.getLivingCommunities();
+        if(livingCommunities.length < 2)
+            return;
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            int c = community[node];
+            if((c == 0)||(random.nextDouble() >= switchRate)||(sizeOfCommunity[c] <= MINIMUM_COMMUNITY_SIZE))
+                continue;
+            int newCommunity = livingCommunities[random.nextInt(livingCommunities.length-1)];
+            if(newCommunity == c)
+                newCommunity = livingCommunities[livingCommunities.length-1];
+            sizeOfCommunity[c]--;
+            sizeOfCommunity[newCommunity]++;
+            community[node] = newCommunity;
+            numberOfSwitchesAtTimeStep[timeStep]++;
+        }
+    }
+
+    //Returns the edges at the given timestep as sorted keys (smaller node << 32 | larger node), without duplicates
+    public long[] getEdges(int timeStep)
+    {
+        int[] community = communityOfNodeAtTimeStep[timeStep];
+
+        //the present nodes, sorted by community and then by their position on the ring of the community
+        int numberOfPresentNodes = 0;
+        for(int node = 0; node < numberOfNodes; node++)
+            if(community[node] != 0)
+                numberOfPresentNodes++;
+        long[] ring = new long[numberOfPresentNodes];
+        int[]  firstOfCommunity = new int[numberOfPresentNodes];
+        int count = 0;
+        for(int node = 0; node < numberOfNodes; node++)
+            if(community[node] != 0)
+                ring[count++] = ((long)community[node] << 32) | node;
+        Arrays.sort(ring);
+        int[] presentNodes = new int[numberOfPresentNodes];
+        for(int i = 0; i < numberOfPresentNodes; i++)
+        {
+            presentNodes[i] = (int)ring[i];
+            firstOfCommunity[i] = (i > 0)&&((ring[i] >>> 32) == (ring[i-1] >>> 32)) ? firstOfCommunity[i-1] : i;
+        }
+
+        //a ring entry keeps the top 40 bits of the position and the node in the low 24 bits
+        for(int i = 0; i < numberOfPresentNodes; i++)
+            ring[i] = (ringPosition(presentNodes[i], community[presentNodes[i]]) & ~0xFFFFFFL) | presentNodes[i];
+        for(int first = 0; first < numberOfPresentNodes; )
+        {
+            int end = first;
+            while((end < numberOfPresentNodes)&&(firstOfCommunity[end] == first))
+                end++;
+            Arrays.sort(ring, first, end);
+            first = end;
+        }
+
+        int edgesPerNodeInCommunity = (int)Math.round(averageDegree*(1-mixingRate)/2);
+        Random random = new Random(MinHashGroupIndex.mix(seed*31 + timeStep));
+        int numberOfRandomEdges = (int)Math.round(numberOfPresentNodes*averageDegree*mixingRate/2);
+        long[] edges = new long[numberOfPresentNodes*edgesPerNodeInCommunity + numberOfRandomEdges];
+        int numberOfEdges = 0;
+
+        for(int first = 0; first < numberOfPresentNodes; )
+        {
+            int end = first;
+            while((end < numberOfPresentNodes)&&(firstOfCommunity[end] == first))
+                end++;
+            if(end-first > 1)
+            {
+                for(int i = first; i < end; i++)
+                {
+                    int  node     = (int)(ring[i] & 0xFFFFFF);
+                    long position = ringPosition(node, community[node]);
+                    for(int j = 1; j <= edgesPerNodeInCommunity; j++)
+                    {
+                        //the first member after a hashed point of the ring, or the one after that if it is the node itself
+                        long point = (MinHashGroupIndex.mix(position + j) >>> 1) & ~0xFFFFFFL;
+                        int  next  = Arrays.binarySearch(ring, first, end, point);
+                        if(next < 0)
+                            next = -next-1;
+                        if(next == end)
+                            next = first;
+                        int other = (int)(ring[next] & 0xFFFFFF);
+                        if(other == node)
+                            other = (int)(ring[next+1 == end ? first : next+1] & 0xFFFFFF);
+                        edges[numberOfEdges++] = edgeKey(node, other);
+                    }
+                }
+            }
+            first = end;
+        }
+
+        if(numberOfPresentNodes > 1)
+        {
+            for(int e = 0; e < numberOfRandomEdges; e++)
+            {
+                int node  = presentNodes[random.nextInt(numberOfPresentNodes)];
+                int other = presentNodes[random.nextInt(numberOfPresentNodes)];
+                if(node != other)
+                    edges[numberOfEdges++] = edgeKey(node, other);
+            }
+        }
+
+        Arrays.sort(edges, 0, numberOfEdges);
+        int numberOfDistinctEdges = 0;
+        for(int e = 0; e < numberOfEdges; e++)
+            if((numberOfDistinctEdges == 0)||(edges[e] != edges[numberOfDistinctEdges-1]))
+                edges[numberOfDistinctEdges++] = edges[e];
+        return Arrays.copyOf(edges, numberOfDistinctEdges);
+    }
+
+    //A non-negative position on the ring of the community, which does not depend on the other members
+    long ringPosition(int node, int community)
+    {return MinHashGroupIndex.mix(seed + 0x9E3779B97F4A7C15L*community + node) >>> 1;}
+
+    static long edgeKey(int node, int other)
+    {return ((long)Math.min(node, other) << 32) | Math.max(node, other);}
+
+    //Adds a node for each node of the network to the graph, with the id and label "n" followed by its index
+    public Node[] addNodesTo(GraphModel graphModel)
+    {
+        Graph  graph = graphModel.getGraph();
+        Node[] nodes = new Node[numberOfNodes];
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            nodes[node] = graphModel.factory().newNode("n" + node);
+            nodes[node].getNodeData().setLabel("n" + node);
+            graph.addNode(nodes[node]);
+        }
+        return nodes;
+    }
+
+    //Returns the snapshot at the given timestep, with the present nodes in node order, for the group detection
+    public SnapshotAdjacency createSnapshot(int timeStep, Node[] gephiNodeOfNode)
+    {
+        int[] community = communityOfNodeAtTimeStep[timeStep];
+        int[] localIndexOfNode = new int[numberOfNodes];
+        int numberOfPresentNodes = 0;
+        for(int node = 0; node < numberOfNodes; node++)
+            if(community[node] != 0)
+                localIndexOfNode[node] = numberOfPresentNodes++;
+        Node[] nodes = new Node[numberOfPresentNodes];
+        for(int node = 0; node < numberOfNodes; node++)
+            if(community[node] != 0)
+                nodes[localIndexOfNode[node]] = gephiNodeOfNode[node];
+
+        long[]   edges   = this.getEdges(timeStep);
+        int[]    sources = new int[edges.length];
+        int[]    targets = new int[edges.length];
+        double[] weights = new double[edges.length];
+        for(int e = 0; e < edges.length; e++)
+        {
+            sources[e] = localIndexOfNode[(int)(edges[e] >>> 32)];
+            targets[e] = localIndexOfNode[(int)edges[e]];
+            weights[e] = 1;
+        }
+        return new SnapshotAdjacency(nodes, sources, targets, weights, edges.length, timeStep);
+    }
+
+    //Returns the group structures that a perfect group detection would find: one group for each planted
+    //community at each timestep. They are indexed by timestep, like in FindDynamicCommunities.
+    public GroupStructure[] createGroupStructures(Graph graph, Node[] gephiNodeOfNode)
+    {
+        GroupStructure[] structureArray = new GroupStructure[numberOfTimeSteps+2];
+        int[] groupOfCommunity = new int[numberOfCommunities+1];
+        for(int timeStep = 1; timeStep <= numberOfTimeSteps; timeStep++)
+        {
+            int[] community = communityOfNodeAtTimeStep[timeStep];
+            Arrays.fill(groupOfCommunity, -1);
+            int numberOfGroups = 0;
+            int numberOfPresentNodes = 0;
+            for(int node = 0; node < numberOfNodes; node++)
+            {
+                if(community[node] != 0)
+                {
+                    numberOfPresentNodes++;
+                    if(groupOfCommunity[community[node]] < 0)
+                        groupOfCommunity[community[node]] = numberOfGroups++;
+                }
+            }
+            Node[] nodes       = new Node[numberOfPresentNodes];
+            int[]  groupOfNode = new int[numberOfPresentNodes];
+            int count = 0;
+            for(int node = 0; node < numberOfNodes; node++)
+            {
+                if(community[node] != 0)
+                {
+                    nodes[count]         = gephiNodeOfNode[node];
+                    groupOfNode[count++] = groupOfCommunity[community[node]];
+                }
+            }
+            structureArray[timeStep] = new GroupStructure(graph, nodes, groupOfNode, timeStep);
+        }
+        return structureArray;
+    }
+
+    //Writes the network as a dynamic GEXF file. The nodes are present while they are in a community, and the
+    //planted community of each node is kept in the dynamic attribute PLANTED_COMMUNITY. Each edge is written once,
+    //with a spell for each run of timesteps where it is present.
+    public void writeGexf(File file) throws IOException
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+        try
+        {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<gexf xmlns=\"http://www.gexf.net/1.2draft\" version=\"1.2\">\n");
+            out.write("   <meta>\n");
+            out.write("      <creator>PlantedCommunityGenerator</creator>\n");
+            out.write("      <description>" + numberOfNodes + " nodes, " + numberOfTimeSteps + " timesteps, "
+                    + initialNumberOfCommunities + " initial communities, average degree " + averageDegree
+                    + ", mixing rate " + mixingRate + ", birth rate " + birthRate + ", death rate " + deathRate
+                    + ", merge rate " + mergeRate + ", split rate " + splitRate + ", switch rate " + switchRate
+                    + ", seed " + seed + "</description>\n");
+            out.write("   </meta>\n");
+            out.write("   <graph mode=\"dynamic\" defaultedgetype=\"undirected\">\n");
+            out.write("      <attributes class=\"node\" mode=\"dynamic\">\n");
+            out.write("         <attribute id=\"0\" title=\"" + PLANTED_COMMUNITY + "\" type=\"integer\"/>\n");
+            out.write("      </attributes>\n");
+            this.writeGexfNodes(out);
+            this.writeGexfEdges(out);
+            out.write("   </graph>\n");
+            out.write("</gexf>\n");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    void writeGexfNodes(Writer out) throws IOException
+    {
+        out.write("      <nodes>\n");
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            out.write("         <node id=\"n" + node + "\" label=\"n" + node + "\">\n");
+            out.write("            <attvalues>\n");
+            for(int start = 1; start <= numberOfTimeSteps; )
+            {
+                int community = communityOfNodeAtTimeStep[start][node];
+                int end = start+1;
+                while((end <= numberOfTimeSteps)&&(communityOfNodeAtTimeStep[end][node] == community))
+                    end++;
+                if(community != 0)
+                    out.write("               <attvalue for=\"0\" value=\"" + community + "\" start=\"" + start + "\" endopen=\"" + end + "\"/>\n");
+                start = end;
+            }
+            out.write("            </attvalues>\n");
+            out.write("            <spells>\n");
+            for(int start = 1; start <= numberOfTimeSteps; )
+            {
+                boolean isPresent = communityOfNodeAtTimeStep[start][node] != 0;
+                int end = start+1;
+                while((end <= numberOfTimeSteps)&&((communityOfNodeAtTimeStep[end][node] != 0) == isPresent))
+                    end++;
+                if(isPresent)
+                    out.write("               <spell start=\"" + start + "\" endopen=\"" + end + "\"/>\n");
+                start = end;
+            }
+            out.write("            </spells>\n");
+            out.write("         </node>\n");
+        }
+        out.write("      </nodes>\n");
+    }
+
+    //The edges of consecutive timesteps are compared to find the runs of each edge. A run is kept under the
+    //smaller node of its edge, in a linked list, so all runs of an edge can be written together at the end.
+    void writeGexfEdges(Writer out) throws IOException
+    {
+        EdgeRuns runs = new EdgeRuns(numberOfNodes);
+        long[] openEdges    = new long[0];
+        int[]  startOfEdges = new int[0];
+        for(int timeStep = 1; timeStep <= numberOfTimeSteps+1; timeStep++)
+        {
+            long[] edges = timeStep <= numberOfTimeSteps ? this.getEdges(timeStep) : new long[0];
+            int[]  startOfEdge = new int[edges.length];
+            int i = 0;
+            for(int e = 0; e < edges.length; e++)
+            {
+                //the open edges before this one are not present anymore, so their runs end here
+                for(; (i < openEdges.length)&&(openEdges[i] < edges[e]); i++)
+                    runs.add(openEdges[i], startOfEdges[i], timeStep);
+                if((i < openEdges.length)&&(openEdges[i] == edges[e]))
+                    startOfEdge[e] = startOfEdges[i++];
+                else
+                    startOfEdge[e] = timeStep;
+            }
+            for(; i < openEdges.length; i++)
+                runs.add(openEdges[i], startOfEdges[i], timeStep);
+            openEdges    = edges;
+            startOfEdges = startOfEdge;
+        }
+
+        //the runs of a node are sorted by other node, and then by start as they were added in time order
+        out.write("      <edges>\n");
+        long[] runsOfNode = new long[16];
+        int edgeId = 0;
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            int numberOfRunsOfNode = 0;
+            for(int run = runs.firstRunOfNode[node]; run >= 0; run = runs.nextRun[run])
+            {
+                if(numberOfRunsOfNode == runsOfNode.length)
+                    runsOfNode = Arrays.copyOf(runsOfNode, 2*numberOfRunsOfNode);
+                runsOfNode[numberOfRunsOfNode++] = ((long)runs.otherNodeOfRun[run] << 32) | run;
+            }
+            Arrays.sort(runsOfNode, 0, numberOfRunsOfNode);
+            for(int r = 0; r < numberOfRunsOfNode; )
+            {
+                int other = (int)(runsOfNode[r] >>> 32);
+                out.write("         <edge id=\"" + edgeId++ + "\" source=\"n" + node + "\" target=\"n" + other + "\">\n");
+                out.write("            <spells>\n");
+                for(; (r < numberOfRunsOfNode)&&((int)(runsOfNode[r] >>> 32) == other); r++)
+                {
+                    int run = (int)runsOfNode[r];
+                    out.write("               <spell start=\"" + runs.startOfRun[run] + "\" endopen=\"" + runs.endOfRun[run] + "\"/>\n");
+                }
+                out.write("            </spells>\n");
+                out.write("         </edge>\n");
+            }
+        }
+        out.write("      </edges>\n");
+    }
+
+    //The runs of timesteps during which an edge is present, as linked lists under the smaller node of the edge
+    static class EdgeRuns
+    {
+        int[] firstRunOfNode;
+        int[] otherNodeOfRun = new int[1024];
+        int[] startOfRun     = new int[1024];
+        int[] endOfRun       = new int[1024];
+        int[] nextRun        = new int[1024];
+        int   numberOfRuns;
+
+        EdgeRuns(int numberOfNodes)
+        {
+            firstRunOfNode = new int[numberOfNodes];
+            Arrays.fill(firstRunOfNode, -1);
+        }
+
+        void add(long edge, int start, int end)
+        {
+            if(numberOfRuns == nextRun.length)
+            {
+                otherNodeOfRun = Arrays.copyOf(otherNodeOfRun, 2*numberOfRuns);
+                startOfRun     = Arrays.copyOf(startOfRun, 2*numberOfRuns);
+                endOfRun       = Arrays.copyOf(endOfRun, 2*numberOfRuns);
+                nextRun        = Arrays.copyOf(nextRun, 2*numberOfRuns);
+            }
+            int node = (int)(edge >>> 32);
+            otherNodeOfRun[numberOfRuns] = (int)edge;
+            startOfRun[numberOfRuns]     = start;
+            endOfRun[numberOfRuns]       = end;
+            nextRun[numberOfRuns]        = firstRunOfNode[node];
+            firstRunOfNode[node]         = numberOfRuns++;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Random;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.project.api.ProjectController;
+import org.openide.util.Lookup;
+
+/*
+ * @author Julie Kauffman
+ * The SyntheticDynamicNetwork creates the input of the benchmarks: a graph of
+ * numberOfNodes nodes in a new Gephi workspace, and the groups of these nodes at
+ * timesteps 1 to numberOfTimeSteps, as found by the group detection. At the first
+ * timestep the nodes are spread at random over groupsPerTimeStep groups. At each
+ * later timestep a node keeps its group, except with probability churnRate, when
+ * it moves to another group or is absent for that timestep. The label and the id
+ * of each node are the same, as the sub-community model looks nodes up by label.
+ * The same seed always gives the same network. A network can also be created from
+ * the planted communities of a PlantedCommunityGenerator, whose communities are born,
+ * die, merge and split as well.
+ */
+
+public class SyntheticDynamicNetwork
+{
+    int              numberOfNodes;
+    int              numberOfTimeSteps;
+    int              groupsPerTimeStep;
+    double           churnRate;
+    GraphModel       graphModel;
+    Graph            graph;
+    Node[]           nodes;
+    GroupStructure[] groupStructure;
+
+    public SyntheticDynamicNetwork(int numberOfNodes, int numberOfTimeSteps, int groupsPerTimeStep, double churnRate, long seed)
+    {
+        this.numberOfNodes     = numberOfNodes;
+        this.numberOfTimeSteps = numberOfTimeSteps;
+        this.groupsPerTimeStep = groupsPerTimeStep;
+        this.churnRate         = churnRate;
+
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if(projectController == null)
+            throw new IllegalStateException("The Gephi modules are not on the classpath");
+        projectController.newProject();
+        graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
+        graph      = graphModel.getGraph();
+        nodes      = new Node[numberOfNodes];
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            nodes[i] = graphModel.factory().newNode("n" + i);
+            nodes[i].getNodeData().setLabel("n" + i);
+            graph.addNode(nodes[i]);
+        }
+        this.createGroupStructure(new Random(seed));
+    }
+
+    //The groups are the planted communities of the generator, as a perfect group detection would find them
+    public SyntheticDynamicNetwork(PlantedCommunityGenerator generator)
+    {
+        this.numberOfNodes     = generator.getNumberOfNodes();
+        this.numberOfTimeSteps = generator.getNumberOfTimeSteps();
+
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if(projectController == null)
+            throw new IllegalStateException("The Gephi modules are not on the classpath");
+        projectController.newProject();
+        graphModel     = Lookup.getDefault().lookup(GraphController.class).getModel();
+        graph          = graphModel.getGraph();
+        nodes          = generator.addNodesTo(graphModel);
+        groupStructure = generator.createGroupStructures(graph, nodes);
+    }
+
+    //The group structures are indexed by timestep like in FindDynamicCommunities, from timeBegin = 1 to timeEnd-1
+    void createGroupStructure(Random random)
+    {
+        groupStructure = new GroupStructure[numberOfTimeSteps+2];
+        int[] groupOfNode = new int[numberOfNodes];
+        for(int i = 0; i < numberOfNodes; i++)
+            groupOfNode[i] = random.nextInt(groupsPerTimeStep);
+
+        for(int timeStep = 1; timeStep <= numberOfTimeSteps; timeStep++)
+        {
+            //-1 is used for a node that is absent at this timestep only
+            int[] groupAtTimeStep = groupOfNode.clone();
+            if(timeStep > 1)
+            {
+                for(int i = 0; i < numberOfNodes; i++)
+                {
+                    if(random.nextDouble() >= churnRate)
+                        continue;
+                    int newGroup = random.nextInt(groupsPerTimeStep+1);
+                    if(newGroup == groupsPerTimeStep)
+                        groupAtTimeStep[i] = -1;
+                    else
+                        groupOfNode[i] = groupAtTimeStep[i] = newGroup;
+                }
+            }
+            groupStructure[timeStep] = this.createGroupsOfTimeStep(groupAtTimeStep, timeStep);
+        }
+    }
+
+    //GroupStructure needs groups numbered from 0 without gaps, so groups without any node are skipped
+    GroupStructure createGroupsOfTimeStep(int[] groupAtTimeStep, int timeStep)
+    {
+        int[] numberOfGroup = new int[groupsPerTimeStep];
+        int numberOfPresentNodes = 0;
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            if(groupAtTimeStep[i] >= 0)
+            {
+                numberOfGroup[groupAtTimeStep[i]] = 1;
+                numberOfPresentNodes++;
+            }
+        }
+        int numberOfGroups = 0;
+        for(int group = 0; group < groupsPerTimeStep; group++)
+            numberOfGroup[group] = numberOfGroup[group] == 0 ? -1 : numberOfGroups++;
+
+        Node[] presentNodes = new Node[numberOfPresentNodes];
+        int[]  groupOfPresentNode = new int[numberOfPresentNodes];
+        int count = 0;
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            if(groupAtTimeStep[i] >= 0)
+            {
+                presentNodes[count]         = nodes[i];
+                groupOfPresentNode[count++] = numberOfGroup[groupAtTimeStep[i]];
+            }
+        }
+        return new GroupStructure(graph, presentNodes, groupOfPresentNode, timeStep);
+    }
+
+    //Removes what the matching left in the groups, so that they can be matched again
+    public void resetGroups()
+    {
+        for(int timeStep = 1; timeStep <= numberOfTimeSteps; timeStep++)
+        {
+            for(Group group:groupStructure[timeStep].groups)
+            {
+                group.priorityQueue.clear();
+                group.setColorId(-1);
+            }
+        }
+    }
+
+    public int getTimeBegin()
+    {return 1;}
+
+    public int getTimeEnd()
+    {return numberOfTimeSteps+1;}
+}
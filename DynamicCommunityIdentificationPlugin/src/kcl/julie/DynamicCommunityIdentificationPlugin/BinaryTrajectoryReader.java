@@ -0,0 +1,180 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The BinaryTrajectoryReader reads a file written by BinaryTrajectoryWriter. The
+ * file is memory mapped rather than read, so opening a large file is immediate and
+ * only the columns that are used are loaded from disk. A mapping can be at most 2 GB,
+ * so each section of colors is mapped when the file is opened, in chunks of as many
+ * whole timestep columns as fit, and a color is read from its chunk without mapping
+ * anything more. Nodes are numbered from 0 to N-1 in the order they were written.
+ * The reader should be closed when it is no longer needed.
+ */
+
+public class BinaryTrajectoryReader
+{
+    //the largest size of one mapping of the file
+    static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+    RandomAccessFile randomAccessFile;
+    FileChannel      channel;
+    int              numberOfNodes;
+    int              timeBegin;
+    int              timeEnd;
+    boolean          hasCosts;
+    long             offsetOfNodeColors;
+    long             offsetOfGroupColors;
+    IntBuffer        nodeIds;
+    DoubleBuffer     costs;
+    long             offsetOfLabels;
+    int              columnsPerChunk;
+    IntBuffer[]      chunksOfNodeColors;
+    IntBuffer[]      chunksOfGroupColors;
+
+    public BinaryTrajectoryReader(File file) throws IOException
+    {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryTrajectoryWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[BinaryTrajectoryWriter.MAGIC.length];
+        header.get(magic);
+        if(!Arrays.equals(magic, BinaryTrajectoryWriter.MAGIC))
+        {
+            this.close();
+            throw new IOException(file + " is not a trajectory file");
+        }
+        int version = header.getInt();
+        if(version != BinaryTrajectoryWriter.VERSION)
+        {
+            this.close();
+            throw new IOException(file + " has unsupported version " + version);
+        }
+        hasCosts      = (header.getInt() & BinaryTrajectoryWriter.FLAG_HAS_COSTS) != 0;
+        numberOfNodes = header.getInt();
+        timeBegin     = header.getInt();
+        timeEnd       = header.getInt();
+        header.getInt();
+        long offsetOfNodeIds = header.getLong();
+        offsetOfNodeColors   = header.getLong();
+        offsetOfGroupColors  = header.getLong();
+        long offsetOfCosts   = header.getLong();
+        offsetOfLabels       = header.getLong();
+
+        nodeIds = this.map(offsetOfNodeIds, 4L*numberOfNodes).asIntBuffer();
+        if(hasCosts)
+            costs = this.map(offsetOfCosts, 8L*numberOfNodes).asDoubleBuffer();
+        columnsPerChunk     = (int)Math.max(1, MAX_MAPPED_BYTES/Math.max(1, 4L*numberOfNodes));
+        chunksOfNodeColors  = this.mapColors(offsetOfNodeColors);
+        chunksOfGroupColors = this.mapColors(offsetOfGroupColors);
+    }
+
+    public int getNumberOfNodes()
+    {return numberOfNodes;}
+
+    public int getTimeBegin()
+    {return timeBegin;}
+
+    public int getTimeEnd()
+    {return timeEnd;}
+
+    public boolean hasCosts()
+    {return hasCosts;}
+
+    public int getNodeId(int node)
+    {return nodeIds.get(node);}
+
+    public double getCost(int node)
+    {return costs.get(node);}
+
+    public int getNodeColor(int node, int timeStep)
+    {return this.getColor(chunksOfNodeColors, node, timeStep);}
+
+    public int getGroupColor(int node, int timeStep)
+    {return this.getColor(chunksOfGroupColors, node, timeStep);}
+
+    //Returns the community of every node at the given timestep, as a view of the mapped file
+    public IntBuffer getNodeColorsAtTimeStep(int timeStep)
+    {return this.getColumn(chunksOfNodeColors, timeStep);}
+
+    //Returns the group color of every node at the given timestep, as a view of the mapped file
+    public IntBuffer getGroupColorsAtTimeStep(int timeStep)
+    {return this.getColumn(chunksOfGroupColors, timeStep);}
+
+    //Reads the labels of all nodes, in node order. The section of labels is read through a window of at most
+    //MAX_MAPPED_BYTES, which is moved on whenever the next label does not fit in what is left of it
+    public String[] readNodeLabels() throws IOException
+    {
+        String[] labels = new String[numberOfNodes];
+        long endOfFile = channel.size();
+        long offsetOfWindow = offsetOfLabels;
+        ByteBuffer window = this.map(offsetOfWindow, Math.min(MAX_MAPPED_BYTES, endOfFile-offsetOfWindow));
+        for(int node = 0; node < numberOfNodes; node++)
+        {
+            if(window.remaining() < 4)
+            {
+                offsetOfWindow += window.position();
+                window = this.map(offsetOfWindow, Math.min(MAX_MAPPED_BYTES, endOfFile-offsetOfWindow));
+            }
+            byte[] label = new byte[window.getInt()];
+            if(window.remaining() < label.length)
+            {
+                offsetOfWindow += window.position();
+                window = this.map(offsetOfWindow, Math.min(MAX_MAPPED_BYTES, endOfFile-offsetOfWindow));
+            }
+            window.get(label);
+            labels[node] = new String(label, "UTF-8");
+        }
+        return labels;
+    }
+
+    public void close() throws IOException
+    {
+        chunksOfNodeColors  = null;
+        chunksOfGroupColors = null;
+        randomAccessFile.close();
+    }
+
+    //Maps a section of colors, which holds one column of numberOfNodes colors for each timestep
+    IntBuffer[] mapColors(long offsetOfSection) throws IOException
+    {
+        int numberOfColumns = Math.max(0, timeEnd-timeBegin);
+        IntBuffer[] chunks = new IntBuffer[(numberOfColumns+columnsPerChunk-1)/columnsPerChunk];
+        for(int chunk = 0; chunk < chunks.length; chunk++)
+        {
+            int firstColumn = chunk*columnsPerChunk;
+            int columns     = Math.min(columnsPerChunk, numberOfColumns-firstColumn);
+            chunks[chunk] = this.map(offsetOfSection + 4L*numberOfNodes*firstColumn, 4L*numberOfNodes*columns).asIntBuffer();
+        }
+        return chunks;
+    }
+
+    int getColor(IntBuffer[] chunks, int node, int timeStep)
+    {
+        int column = timeStep-timeBegin;
+        return chunks[column/columnsPerChunk].get((column%columnsPerChunk)*numberOfNodes + node);
+    }
+
+    IntBuffer getColumn(IntBuffer[] chunks, int timeStep)
+    {
+        int column = timeStep-timeBegin;
+        IntBuffer columnOfChunk = chunks[column/columnsPerChunk].duplicate();
+        columnOfChunk.position((column%columnsPerChunk)*numberOfNodes);
+        columnOfChunk.limit(columnOfChunk.position()+numberOfNodes);
+        return columnOfChunk.slice();
+    }
+
+    ByteBuffer map(long offset, long size) throws IOException
+    {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
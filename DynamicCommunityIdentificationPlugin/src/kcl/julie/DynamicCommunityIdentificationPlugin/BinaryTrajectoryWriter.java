@@ -0,0 +1,145 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/*
+ * @author Julie Kauffman
+ * The BinaryTrajectoryWriter saves the community of each node at each timestep in
+ * a compact binary file, so that the results of large networks can be loaded again
+ * without parsing the CSV file. The file is little-endian and made of sections:
+ *
+ *   header        magic "DYCOTRJ1", version, flags, number of nodes N, timeBegin,
+ *                 timeEnd, and the offset of each of the sections below
+ *   node ids      N ints, the Gephi id of each node
+ *   node colors   one column of N ints for each timestep from timeBegin to timeEnd-1
+ *   group colors  one column of N ints for each timestep, in the same way
+ *   costs         N doubles, only when the cost model was used
+ *   labels        for each node, the length of its UTF-8 label followed by the label
+ *
+ * Each timestep is one contiguous column, so the communities of all nodes at one
+ * timestep can be read with a single mapping. Node i in the file is row i+1 of the
+ * trajectory stores of FindDynamicCommunities. The file is read by BinaryTrajectoryReader.
+ */
+
+public class BinaryTrajectoryWriter
+{
+    public static final byte[] MAGIC          = {'D', 'Y', 'C', 'O', 'T', 'R', 'J', '1'};
+    public static final int    VERSION        = 1;
+    public static final int    FLAG_HAS_COSTS = 1;
+    public static final int    HEADER_SIZE    = 80;
+    public static final int    BUFFER_SIZE    = 1 << 20;
+
+    FileChannel channel;
+    ByteBuffer  buffer;
+    long        position;
+
+    //nodeIds, nodeLabels and costs are indexed from 1 like the rows of the trajectory stores, and costs can be null
+    public static void write(File file, int[] nodeIds, String[] nodeLabels, TrajectoryStore nodeColors, TrajectoryStore groupColors,
+                             double[] costs, int timeBegin, int timeEnd) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            randomAccessFile.setLength(0);
+            BinaryTrajectoryWriter writer = new BinaryTrajectoryWriter(randomAccessFile.getChannel());
+            writer.writeAll(nodeIds, nodeLabels, nodeColors, groupColors, costs, timeBegin, timeEnd);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    BinaryTrajectoryWriter(FileChannel channel)
+    {
+        this.channel = channel;
+        this.buffer  = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    void writeAll(int[] nodeIds, String[] nodeLabels, TrajectoryStore nodeColors, TrajectoryStore groupColors,
+                  double[] costs, int timeBegin, int timeEnd) throws IOException
+    {
+        int numberOfNodes = nodeIds.length-1;
+
+        //the sections are written after the header, which is written last when all offsets are known
+        position = HEADER_SIZE;
+        long offsetOfNodeIds = position;
+        for(int i = 1; i <= numberOfNodes; i++)
+            this.ensureRemaining(4).putInt(nodeIds[i]);
+
+        long offsetOfNodeColors = this.getPosition();
+        this.writeColumns(nodeColors, numberOfNodes, timeBegin, timeEnd);
+        long offsetOfGroupColors = this.getPosition();
+        this.writeColumns(groupColors, numberOfNodes, timeBegin, timeEnd);
+
+        long offsetOfCosts = this.getPosition();
+        if(costs != null)
+            for(int i = 1; i <= numberOfNodes; i++)
+                this.ensureRemaining(8).putDouble(costs[i]);
+
+        long offsetOfLabels = this.getPosition();
+        Charset utf8 = Charset.forName("UTF-8");
+        for(int i = 1; i <= numberOfNodes; i++)
+        {
+            byte[] label = nodeLabels[i]==null ? new byte[0] : nodeLabels[i].getBytes(utf8);
+            this.ensureRemaining(4).putInt(label.length);
+            for(int start = 0; start < label.length; start += BUFFER_SIZE)
+            {
+                int length = Math.min(BUFFER_SIZE, label.length-start);
+                this.ensureRemaining(length).put(label, start, length);
+            }
+        }
+        this.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(costs != null ? FLAG_HAS_COSTS : 0);
+        header.putInt(numberOfNodes);
+        header.putInt(timeBegin);
+        header.putInt(timeEnd);
+        header.putInt(0);
+        header.putLong(offsetOfNodeIds);
+        header.putLong(offsetOfNodeColors);
+        header.putLong(offsetOfGroupColors);
+        header.putLong(offsetOfCosts);
+        header.putLong(offsetOfLabels);
+        header.flip();
+        long headerPosition = 0;
+        while(header.hasRemaining())
+            headerPosition += channel.write(header, headerPosition);
+    }
+
+    //Writes one column of numberOfNodes ints for each timestep
+    void writeColumns(TrajectoryStore colors, int numberOfNodes, int timeBegin, int timeEnd) throws IOException
+    {
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+            for(int i = 1; i <= numberOfNodes; i++)
+                this.ensureRemaining(4).putInt(colors.get(i, timeStep));
+    }
+
+    //Returns the buffer after making sure it has room for the given number of bytes
+    ByteBuffer ensureRemaining(int numberOfBytes) throws IOException
+    {
+        if(buffer.remaining() < numberOfBytes)
+            this.flush();
+        return buffer;
+    }
+
+    long getPosition()
+    {return position + buffer.position();}
+
+    void flush() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+    }
+}
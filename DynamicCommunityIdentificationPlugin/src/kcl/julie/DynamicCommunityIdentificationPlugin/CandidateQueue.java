@@ -0,0 +1,91 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The CandidateQueue is a priority queue of candidates, numbered like the candidates of a
+ * GroupCandidates, in decreasing order of their similarity index. It is a binary heap of ints
+ * that sifts exactly like the java.util.PriorityQueue of PriorityQueueElements, so candidates
+ * with the same similarity index come out in the same order as they did from the queues of
+ * the groups. This keeps the colors of the groups the same, without one object per candidate.
+ */
+
+public class CandidateQueue
+{
+    int[]    heap;
+    int      size;
+    double[] similarityOfCandidate;
+
+    public CandidateQueue(int initialCapacity)
+    {
+        heap = new int[Math.max(1, initialCapacity)];
+    }
+
+    //Empties the queue, to order candidates with the given similarity indices
+    public void clear(double[] similarityOfCandidate)
+    {
+        this.similarityOfCandidate = similarityOfCandidate;
+        size = 0;
+    }
+
+    //Like PriorityQueueElement.compareTo, negative when the first candidate is more similar
+    int compare(int firstCandidate, int secondCandidate)
+    {
+        if(similarityOfCandidate[firstCandidate] < similarityOfCandidate[secondCandidate])
+            return 1;
+        if(similarityOfCandidate[firstCandidate] == similarityOfCandidate[secondCandidate])
+            return 0;
+        else
+            return -1;
+    }
+
+    public void add(int candidate)
+    {
+        if(size == heap.length)
+            heap = Arrays.copyOf(heap, 2*heap.length);
+        int k = size++;
+        while(k > 0)
+        {
+            int parent = (k-1) >>> 1;
+            if(this.compare(candidate, heap[parent]) >= 0)
+                break;
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = candidate;
+    }
+
+    public int peek()
+    {   return heap[0];}
+
+    public int poll()
+    {
+        int first = heap[0];
+        int last  = heap[--size];
+        if(size > 0)
+        {
+            int k    = 0;
+            int half = size >>> 1;
+            while(k < half)
+            {
+                int child = 2*k+1;
+                int right = child+1;
+                if((right < size)&&(this.compare(heap[child], heap[right]) > 0))
+                    child = right;
+                if(this.compare(last, heap[child]) <= 0)
+                    break;
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = last;
+        }
+        return first;
+    }
+
+    public boolean isEmpty()
+    {   return size == 0;}
+
+    public int size()
+    {   return size;}
+}
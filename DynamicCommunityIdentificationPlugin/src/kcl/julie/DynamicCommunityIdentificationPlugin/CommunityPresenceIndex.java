@@ -0,0 +1,57 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.BitSet;
+
+/*
+ * @author Julie Kauffman
+ * The CommunityPresenceIndex records which communities are present at each 
+ * timestep, as one bitset per timestep indexed by color ID. A community is present
+ * at a timestep if at least one node participates in a group with that color ID.
+ * Color 0 is present whenever at least one node does not participate in any group
+ * at that timestep. It is built once, after the groups have been matched, so that
+ * checking whether a community is present does not need to scan every node.
+ */
+
+public class CommunityPresenceIndex 
+{
+    BitSet[] colorsPresentAtTimeStep;
+    
+    public CommunityPresenceIndex(GroupStructure[] structureArray, int timeBegin, int timeEnd, int numberOfNodes)
+    {
+        colorsPresentAtTimeStep = new BitSet[timeEnd+1];
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+        {
+            BitSet colorsPresent = new BitSet();
+            int numberOfNodesInGroups = 0;
+            for(Group group:structureArray[timeStep].groups)
+            {
+                colorsPresent.set(group.getColorId());
+                numberOfNodesInGroups += group.size();
+            }
+            //nodes that are not in any group have the group color 0 at this timestep
+            if(numberOfNodesInGroups < numberOfNodes)
+                colorsPresent.set(0);
+            colorsPresentAtTimeStep[timeStep] = colorsPresent;
+        }
+    }
+    
+    //Builds the index from the group color of each node at each timestep, for when the group structures are not available
+    public CommunityPresenceIndex(TrajectoryStore groupColorsForAllNodes, int timeBegin, int timeEnd)
+    {
+        colorsPresentAtTimeStep = new BitSet[timeEnd+1];
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+        {
+            BitSet colorsPresent = new BitSet();
+            for(int nodeIndex = 1; nodeIndex < groupColorsForAllNodes.getNumberOfRows(); nodeIndex++)
+                colorsPresent.set(groupColorsForAllNodes.get(nodeIndex, timeStep));
+            colorsPresentAtTimeStep[timeStep] = colorsPresent;
+        }
+    }
+    
+    public boolean isPresent(int colorId, int timeStep)
+    {
+        if((timeStep < 0)||(timeStep >= colorsPresentAtTimeStep.length)||(colorsPresentAtTimeStep[timeStep]==null)||(colorId < 0))
+            return false;
+        return colorsPresentAtTimeStep[timeStep].get(colorId);
+    }
+}
@@ -0,0 +1,100 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Map;
+import java.util.TreeMap;
+import org.gephi.graph.api.Node;
+
+/*
+ * @author Julie Kauffman
+ * The DenseNodeIndex gives every node that appears in a group at any timestep
+ * an index from 0 to N-1, in order of node id. Group memberships are stored over
+ * these indices, so their size depends on the number of nodes that are actually
+ * in groups rather than on the range of Gephi node ids.
+ */
+
+public class DenseNodeIndex 
+{
+    Node[]                nodeAtIndex;
+    int[]                 indexOfNodeId;
+    IntIntHashMap         indexOfNode;
+    int                   minNodeId;
+    
+    public DenseNodeIndex(GroupStructure[] structureArray)
+    {
+        minNodeId = Integer.MAX_VALUE;
+        int maxNodeId = Integer.MIN_VALUE;
+        int numberOfMemberships = 0;
+        for(GroupStructure structure:structureArray)
+        {
+            if(structure==null)
+                continue;
+            for(Group group:structure.groups)
+            {
+                for(Node n:group.nodes)
+                {
+                    minNodeId = Math.min(minNodeId, n.getId());
+                    maxNodeId = Math.max(maxNodeId, n.getId());
+                }
+                numberOfMemberships += group.size();
+            }
+        }
+        
+        //Gephi node ids are usually close together, so the index is looked up in an array when possible
+        if((numberOfMemberships == 0)||((long)maxNodeId-minNodeId < 4L*numberOfMemberships+1024))
+        {
+            Node[] nodeOfId = new Node[numberOfMemberships == 0 ? 0 : maxNodeId-minNodeId+1];
+            for(GroupStructure structure:structureArray)
+                if(structure!=null)
+                    for(Group group:structure.groups)
+                        for(Node n:group.nodes)
+                            nodeOfId[n.getId()-minNodeId] = n;
+            
+            int numberOfNodes = 0;
+            indexOfNodeId = new int[nodeOfId.length];
+            for(int i = 0; i < nodeOfId.length; i++)
+                indexOfNodeId[i] = nodeOfId[i]==null ? -1 : numberOfNodes++;
+            nodeAtIndex = new Node[numberOfNodes];
+            for(int i = 0; i < nodeOfId.length; i++)
+                if(nodeOfId[i]!=null)
+                    nodeAtIndex[indexOfNodeId[i]] = nodeOfId[i];
+        }
+        else
+        {
+            Map<Integer, Node> nodeOfId = new TreeMap<Integer, Node>();
+            for(GroupStructure structure:structureArray)
+                if(structure!=null)
+                    for(Group group:structure.groups)
+                        for(Node n:group.nodes)
+                            nodeOfId.put(n.getId(), n);
+            
+            int numberOfNodes = 0;
+            indexOfNode = new IntIntHashMap(nodeOfId.size());
+            nodeAtIndex = new Node[nodeOfId.size()];
+            for(Node n:nodeOfId.values())
+            {
+                indexOfNode.put(n.getId(), numberOfNodes);
+                nodeAtIndex[numberOfNodes++] = n;
+            }
+        }
+    }
+    
+    //Returns the index of the node with the given Gephi id, or -1 if it is not in any group
+    public int indexOf(int nodeId)
+    {
+        if(indexOfNodeId != null)
+        {
+            int offset = nodeId-minNodeId;
+            return (offset < 0 || offset >= indexOfNodeId.length) ? -1 : indexOfNodeId[offset];
+        }
+        return indexOfNode.get(nodeId);
+    }
+    
+    public int indexOf(Node n)
+    {return indexOf(n.getId());}
+    
+    public Node getNode(int index)
+    {return nodeAtIndex[index];}
+    
+    public int size()
+    {return nodeAtIndex.length;}
+}
@@ -1,15 +1,37 @@
 package kcl.julie.DynamicCommunityIdentificationPlugin;
 
 import java.awt.Color;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.gephi.data.attributes.api.AttributeColumn;
@@ -49,36 +71,59 @@ import org.gephi.graph.api.Node;
 
 public class FindDynamicCommunities implements Statistics
 {  
+    public static final int MAXIMUM_CELLS_IN_GEPHI_REPORT = 20000;
+    public static final int NODES_PER_REPORT_PAGE = 1000;
+    public static final int NUMBER_OF_COSTLIEST_NODES_IN_REPORT = 20;
     
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
  
     public Boolean executeTBWForSocialNetwork = Boolean.TRUE;
+    public Boolean useDynamicProgramming = Boolean.TRUE;
+    public Boolean useBuiltInLouvain = Boolean.FALSE;
+    public Boolean detectGroupsInParallel = Boolean.FALSE;
+    public Boolean detectGroupsIncrementally = Boolean.FALSE;
+    public Boolean useApproximateMatching = Boolean.FALSE;
+    public Boolean useArrayMatching = Boolean.TRUE;
+    public Boolean useOptimalMatching = Boolean.FALSE;
+    public Boolean groupTrajectoriesByHash = Boolean.TRUE;
+    public Boolean summarizeReport = Boolean.FALSE;
+    public Boolean exportBinaryTrajectories = Boolean.FALSE;
+    public Boolean useMappedTrajectories = Boolean.FALSE;
     public static double costSwitch = 1;
     public static double costVisit = 1;
     public static double costAbsent = 1;
     public static int timeParameter = 1;
     public static double cutoffParameter = 0.4;
+    public static int numberOfThreads = 1;
     public static String chosenDirectoryString;
+    File gexfFileToStream;
     public static final String DYNAMIC_COMMUNITY = "Dynamic Community";
     public static final String NODE_PROMISCUITY = "Node Promiscuity";
-    int[][]  arrayOfNodeColorsAtEachTimeStep;
-    int[][]  arrayOfGroupColorsForAllNodes;
+    TrajectoryStore nodeColorsAtEachTimeStep;
+    TrajectoryStore groupColorsForAllNodes;
     int[]    numberOfNodesInEachCommunity;
     double[] arrayOfIndividualNodeCosts;
+    int[]    numberOfNodesReevaluatedAtEachTimeStep;
+    int[]    numberOfNodesAtEachTimeStep;
     int      numberOfNodes;
     double   totalCostForNetwork;
     double   timeBegin;
     double   timeEnd;
     String   report;
     String[] arrayOfColorsInHex;
-    int minNodeId;
-    int nodeIdOffset;        
+    CommunityPresenceIndex communityPresenceIndex;
+    String   groupMatchingReport;
+    GraphNodeIndex graphNodeIndex;
+    StageMetrics stageMetrics;
     
     @Override
     //Executes when Find Dynamic Communities button is clicked
     public void execute(GraphModel graphModel, AttributeModel attributeModel) 
     {       
         isCanceled = Boolean.FALSE;
+        stageMetrics = new StageMetrics();
+        //the index of a previous run would describe the communities of that run, so it is always built again
+        communityPresenceIndex = null;
         
         DynamicController dc = Lookup.getDefault().lookup(DynamicController.class);   
         DynamicModel dynamicGraphModel = dc.getModel();
@@ -91,47 +136,136 @@ public class FindDynamicCommunities implements Statistics
         Graph graph   = graphModel.getGraph();
         numberOfNodes = graph.getNodeCount();
         
-        minNodeId = Integer.MAX_VALUE;
-        for(Node n:graph.getNodes())
+        GroupStructure[] groupStructure     = this.findGroupsAtEachTimeStep(graphModel, attributeModel);
+        stageMetrics.recordStage("group detection");
+        //the snapshots after a cancel have no groups, so nothing can be matched
+        if(isCanceled)
         {
-            if(n.getId()<minNodeId)
-                minNodeId = n.getId();
+            return;
         }
-        
-        nodeIdOffset = minNodeId - 1;
-        
-        GroupStructure[] groupStructure     = this.findGroupsAtEachTimeStep(graphModel, attributeModel);
-        MatchedGroupGraph matchedGroupGraph = new MatchedGroupGraph(groupStructure, graphModel, timeParameter, cutoffParameter); 
+        //group detection works on the Gephi nodes, so the rows of the nodes are only needed from group matching on
+        graphNodeIndex = new GraphNodeIndex(graph);
+        MatchedGroupGraph matchedGroupGraph = new MatchedGroupGraph(groupStructure, graphModel, timeParameter, cutoffParameter, useApproximateMatching, useArrayMatching, useOptimalMatching); 
+        groupMatchingReport                 = matchedGroupGraph.getReport();
+        communityPresenceIndex              = new CommunityPresenceIndex(groupStructure, (int)timeBegin, (int)timeEnd, numberOfNodes);
+        stageMetrics.recordStage("group matching");
         
         if(executeTBWForSocialNetwork)
         {
-            arrayOfGroupColorsForAllNodes       = this.createArrayOfGroupAssociationForAllNodes(graphModel, attributeModel, groupStructure);
-            arrayOfNodeColorsAtEachTimeStep     = this.colorAllIndividuals(arrayOfGroupColorsForAllNodes);
+            groupColorsForAllNodes              = this.createArrayOfGroupAssociationForAllNodes(graphModel, attributeModel, groupStructure);
+            nodeColorsAtEachTimeStep            = this.colorAllIndividuals(groupColorsForAllNodes);
         }
         else
         {
-            arrayOfGroupColorsForAllNodes       = this.createArrayOfGroupAssociationForAllNodes(graphModel, attributeModel, groupStructure);
-            arrayOfNodeColorsAtEachTimeStep     = this.colorAllIndividualsByGroupColor(arrayOfGroupColorsForAllNodes);
+            groupColorsForAllNodes              = this.createArrayOfGroupAssociationForAllNodes(graphModel, attributeModel, groupStructure);
+            nodeColorsAtEachTimeStep            = this.colorAllIndividualsByGroupColor(groupColorsForAllNodes);
             int currentHighestColorID = matchedGroupGraph.currentHighestColorID;
             this.findSmallerCommunities(graph, currentHighestColorID);
         }
+        //the colors do not change anymore, so nodes that keep their community can be stored as runs,
+        //unless the stores are mapped and stay out of the heap
+        groupColorsForAllNodes.compress();
+        nodeColorsAtEachTimeStep.compress();
+        stageMetrics.recordStage("node coloring");
         
         if(isCanceled)
         {
             return;
         }
         
-        this.modifyAttributeTable(graphModel, attributeModel, arrayOfNodeColorsAtEachTimeStep);
+        this.modifyAttributeTable(graphModel, attributeModel, nodeColorsAtEachTimeStep);
+        stageMetrics.recordStage("attribute table");
         this.writeReport(graphModel, attributeModel);
+        stageMetrics.recordStage("report");
+        this.writeExportFiles(this.createArrayOfNodeNames(graph));
+        stageMetrics.recordStage("CSV file");
+        this.writeStageMetrics();
        
-        GraphActionListener graphListener = new GraphActionListener(dynamicGraphModel, graph, arrayOfNodeColorsAtEachTimeStep, arrayOfColorsInHex, nodeIdOffset); 
-        graphModel.addGraphListener(graphListener);
+        GraphActionListener graphListener = new GraphActionListener(dynamicGraphModel, graph, nodeColorsAtEachTimeStep, arrayOfColorsInHex, graphNodeIndex); 
+        GraphActionListener.install(graphModel, graphListener);
         
     }   
     
+    //The report only ends once the CSV file is written, so the table of the stages is added to it afterwards,
+    //and the stages are also written to Metrics.csv next to Report.csv
+    void writeStageMetrics()
+    {
+        try
+        {
+            if(report != null)
+            {
+                StringWriter table = new StringWriter();
+                stageMetrics.writeHtmlTable(table);
+                int endOfBody = report.lastIndexOf("</BODY>");
+                if(endOfBody < 0)
+                    report = report + table;
+                else
+                    report = report.substring(0, endOfBody) + table + report.substring(endOfBody);
+            }
+
+            if((chosenDirectoryString!=null)&&(chosenDirectoryString.length()!=0)&&(new File(chosenDirectoryString).exists()))
+                stageMetrics.writeMetricsFile(new File(chosenDirectoryString, StageMetrics.NAME_OF_METRICS_FILE));
+        } catch (IOException ex) {
+            Logger.getLogger(FindDynamicCommunities.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    //Returns the elapsed time of each stage of the last execution, in milliseconds and in the order they ran
+    public Map<String, Long> getElapsedMillisecondsOfStage()
+    {
+        Map<String, Long> elapsedMillisecondsOfStage = new LinkedHashMap<String, Long>();
+        for(StageMetrics.Stage stage:stageMetrics.getStages())
+            elapsedMillisecondsOfStage.put(stage.getName(), stage.getWallNanoseconds()/1000000);
+        return elapsedMillisecondsOfStage;
+    }
+    
+    //Returns the time and memory of each stage of the last execution
+    public StageMetrics getStageMetrics()
+    {   return stageMetrics;}
+    
+    //When a GEXF file is given, the groups are found from snapshots read directly from the file with the built-in
+    //Louvain method instead of from Gephi's snapshot graphs. The file must be the one loaded in the workspace.
+    public void setGexfFileToStream(File file)
+    {   gexfFileToStream = file;}
+    
+    public File getGexfFileToStream()
+    {   return gexfFileToStream;}
+    
     public void setExecuteTBW(Boolean executeTBW)
     {   executeTBWForSocialNetwork = executeTBW;}
     
+    public void setUseDynamicProgramming(Boolean useDP)
+    {   useDynamicProgramming = useDP;}
+    
+    public void setUseBuiltInLouvain(Boolean builtIn)
+    {   useBuiltInLouvain = builtIn;}
+    
+    public void setDetectGroupsInParallel(Boolean inParallel)
+    {   detectGroupsInParallel = inParallel;}
+    
+    public void setDetectGroupsIncrementally(Boolean incrementally)
+    {   detectGroupsIncrementally = incrementally;}
+    
+    public void setUseApproximateMatching(Boolean approximate)
+    {   useApproximateMatching = approximate;}
+    
+    public void setUseArrayMatching(Boolean arrays)
+    {   useArrayMatching = arrays;}
+    
+    public void setUseOptimalMatching(Boolean optimal)
+    {   useOptimalMatching = optimal;}
+    
+    public void setGroupTrajectoriesByHash(Boolean byHash)
+    {   groupTrajectoriesByHash = byHash;}
+    
+    public void setSummarizeReport(Boolean summarize)
+    {   summarizeReport = summarize;}
+    
+    public void setExportBinaryTrajectories(Boolean export)
+    {   exportBinaryTrajectories = export;}
+    public void setUseMappedTrajectories(Boolean mapped)
+    {   useMappedTrajectories = mapped;}
+    
     public void setSwitchCost(double switchCost)
     {   costSwitch=switchCost;}
     
@@ -147,6 +281,9 @@ public class FindDynamicCommunities implements Statistics
     public void setCutoffParameter(double cutoffParam)
     {   cutoffParameter = cutoffParam;}
     
+    public void setNumberOfThreads(int threads)
+    {   numberOfThreads = threads;}
+    
     public void setChosenDirectoryString(String str)
     {   chosenDirectoryString = str;}
     
@@ -162,22 +299,65 @@ public class FindDynamicCommunities implements Statistics
     public Boolean getExecuteTBW()
     {   return executeTBWForSocialNetwork;}
     
+    public Boolean getUseDynamicProgramming()
+    {   return useDynamicProgramming;}
+    
+    public Boolean getUseBuiltInLouvain()
+    {   return useBuiltInLouvain;}
+    
+    public Boolean getDetectGroupsInParallel()
+    {   return detectGroupsInParallel;}
+    
+    public Boolean getDetectGroupsIncrementally()
+    {   return detectGroupsIncrementally;}
+    
+    public Boolean getUseApproximateMatching()
+    {   return useApproximateMatching;}
+    
+    public Boolean getUseArrayMatching()
+    {   return useArrayMatching;}
+    
+    public Boolean getUseOptimalMatching()
+    {   return useOptimalMatching;}
+    
+    public Boolean getGroupTrajectoriesByHash()
+    {   return groupTrajectoriesByHash;}
+    
+    public Boolean getSummarizeReport()
+    {   return summarizeReport;}
+    
+    public Boolean getExportBinaryTrajectories()
+    {   return exportBinaryTrajectories;}
+    public Boolean getUseMappedTrajectories()
+    {   return useMappedTrajectories;}
+    
     public int getTimeParameter()
     {   return timeParameter;}
     
     public double getCutoffParameter()
     {   return cutoffParameter;}
     
+    public int getNumberOfThreads()
+    {   return numberOfThreads;}
+    
     public String getChosenDirectoryString()
     {   return chosenDirectoryString;}
     
     //Uses Louvain modularity algorithm to detect communities at each time step
     public GroupStructure[] findGroupsAtEachTimeStep(GraphModel graphModel, AttributeModel attributeModel)
     {      
+        numberOfNodesReevaluatedAtEachTimeStep = null;
+        if(gexfFileToStream != null)
+            return this.findGroupsAtEachTimeStepFromGexf(graphModel.getGraph());
         DynamicController dc = Lookup.getDefault().lookup(DynamicController.class);   
         DynamicModel dynamicGraphModel = dc.getModel();
         Interval interval = new Interval(dynamicGraphModel.getMin(), dynamicGraphModel.getMax());
         DynamicGraph dynamicGraph = dynamicGraphModel.createDynamicGraph(graphModel.getGraph(), interval);
+        if(detectGroupsIncrementally)
+            return this.findGroupsAtEachTimeStepIncrementally(dynamicGraph);
+        if(useBuiltInLouvain||detectGroupsInParallel)
+            return this.findGroupsAtEachTimeStepWithBuiltInLouvain(dynamicGraph);
+        
         Modularity modularity = new Modularity();
         GroupStructure[] structureArray = new GroupStructure[(int)timeEnd+1];
         
@@ -193,114 +373,202 @@ public class FindDynamicCommunities implements Statistics
         return structureArray;
     }
     
+    //Reads the snapshots one timestep at a time from gexfFileToStream, so no snapshot graph is created in Gephi and
+    //only one snapshot is kept in memory at a time. The file must still be imported into Gephi, since the communities
+    //are written to the nodes of the graph, and the dynamic graph is still used for the time bounds, so this only
+    //saves the memory of the snapshot graphs. The nodes of the file are matched to the nodes of the graph by their
+    //id. The groups are found with the built-in Louvain method, incrementally if chosen.
+    public GroupStructure[] findGroupsAtEachTimeStepFromGexf(Graph graph)
+    {
+        GexfSpellReader reader;
+        try
+        {
+            reader = new GexfSpellReader(gexfFileToStream);
+        }
+        catch(IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        Node[] gephiNodeOfNode = new Node[reader.getNumberOfNodes()];
+        for(int node = 0; node < gephiNodeOfNode.length; node++)
+        {
+            gephiNodeOfNode[node] = graph.getNode(reader.getNodeId(node));
+            if(gephiNodeOfNode[node] == null)
+                throw new IllegalStateException("The node " + reader.getNodeId(node) + " of " + gexfFileToStream + " is not in the graph");
+        }
+        
+        GroupStructure[] structureArray = new GroupStructure[(int)timeEnd+1];
+        LouvainCommunityDetection louvain       = new LouvainCommunityDetection();
+        IncrementalCommunityDetection detection = new IncrementalCommunityDetection();
+        if(detectGroupsIncrementally)
+        {
+            numberOfNodesReevaluatedAtEachTimeStep = new int[(int)timeEnd+1];
+            numberOfNodesAtEachTimeStep            = new int[(int)timeEnd+1];
+        }
+        for(int t = (int)timeBegin; t < (int)timeEnd && !isCanceled; t++)
+        {
+            SnapshotAdjacency adjacency = reader.nextSnapshot(t, gephiNodeOfNode);
+            if(detectGroupsIncrementally)
+            {
+                structureArray[t] = new GroupStructure(graph, adjacency.nodes, detection.detectCommunities(adjacency), t);
+                numberOfNodesReevaluatedAtEachTimeStep[t] = detection.numberOfNodesReevaluated;
+                numberOfNodesAtEachTimeStep[t]            = adjacency.size();
+            }
+            else
+                structureArray[t] = new GroupStructure(graph, adjacency.nodes, louvain.detectCommunities(adjacency), t);
+        }
+        return structureArray;
+    }
+    
+    //Detects the groups at each timestep with the built-in Louvain method, starting from the groups found at the
+    //previous timestep and re-evaluating only the nodes whose edges have changed. The number of nodes that were
+    //re-evaluated at each timestep is kept for the report.
+    public GroupStructure[] findGroupsAtEachTimeStepIncrementally(DynamicGraph dynamicGraph)
+    {
+        GroupStructure[] structureArray = new GroupStructure[(int)timeEnd+1];
+        numberOfNodesReevaluatedAtEachTimeStep = new int[(int)timeEnd+1];
+        numberOfNodesAtEachTimeStep            = new int[(int)timeEnd+1];
+        IncrementalCommunityDetection detection = new IncrementalCommunityDetection();
+        for(int t = (int)timeBegin; t < (int)timeEnd && !isCanceled; t++)
+        {
+            Graph snapshotAtT = dynamicGraph.getSnapshotGraph((double) t);
+            SnapshotAdjacency adjacency = new SnapshotAdjacency(snapshotAtT, t);
+            structureArray[t] = new GroupStructure(snapshotAtT, adjacency.nodes, detection.detectCommunities(adjacency), t);
+            numberOfNodesReevaluatedAtEachTimeStep[t] = detection.numberOfNodesReevaluated;
+            numberOfNodesAtEachTimeStep[t]            = adjacency.size();
+        }
+        return structureArray;
+    }
+    
+    //Copies each snapshot into a SnapshotAdjacency and detects its groups with the built-in Louvain method, which
+    //gives the group of each node directly instead of through the modularity class column. In parallel mode the
+    //snapshots are copied one at a time, since the Gephi graph is not thread-safe, and the groups are found on a 
+    //pool of numberOfThreads worker threads. At most numberOfThreads copies are waiting for their groups at a time,
+    //so the copies of all snapshots are never held at once. The group structures are always built in time order.
+    public GroupStructure[] findGroupsAtEachTimeStepWithBuiltInLouvain(DynamicGraph dynamicGraph)
+    {
+        GroupStructure[] structureArray = new GroupStructure[(int)timeEnd+1];
+        if(!detectGroupsInParallel)
+        {
+            LouvainCommunityDetection louvain = new LouvainCommunityDetection();
+            for(int t = (int)timeBegin; t < (int)timeEnd && !isCanceled; t++)
+            {
+                Graph snapshotAtT = dynamicGraph.getSnapshotGraph((double) t);
+                SnapshotAdjacency adjacency = new SnapshotAdjacency(snapshotAtT, t);
+                structureArray[t] = new GroupStructure(snapshotAtT, adjacency.nodes, louvain.detectCommunities(adjacency), t);
+            }
+            return structureArray;
+        }
+        
+        List<Graph> snapshots = new ArrayList<Graph>();
+        List<SnapshotAdjacency> adjacencies = new ArrayList<SnapshotAdjacency>();
+        List<Future<int[]>> detections = new ArrayList<Future<int[]>>();
+        int window = Math.max(1, numberOfThreads);
+        ExecutorService pool = Executors.newFixedThreadPool(window);
+        try
+        {
+            //a snapshot is submitted while the window has room, otherwise the oldest one is built first
+            int t = (int)timeBegin;
+            int numberBuilt = 0;
+            while((numberBuilt < detections.size())||((t < (int)timeEnd)&&!isCanceled))
+            {
+                if((t < (int)timeEnd)&&!isCanceled&&(detections.size()-numberBuilt < window))
+                {
+                    Graph snapshotAtT = dynamicGraph.getSnapshotGraph((double) t);
+                    final SnapshotAdjacency adjacency = new SnapshotAdjacency(snapshotAtT, t);
+                    snapshots.add(snapshotAtT);
+                    adjacencies.add(adjacency);
+                    detections.add(pool.submit(new Callable<int[]>()
+                    {
+                        @Override
+                        public int[] call()
+                        {   return new LouvainCommunityDetection().detectCommunities(adjacency);}
+                    }));
+                    t++;
+                }
+                else
+                {
+                    SnapshotAdjacency adjacency = adjacencies.get(numberBuilt);
+                    structureArray[adjacency.timeStep] = new GroupStructure(snapshots.get(numberBuilt), adjacency.nodes, detections.get(numberBuilt).get(), adjacency.timeStep);
+                    snapshots.set(numberBuilt, null);
+                    adjacencies.set(numberBuilt, null);
+                    detections.set(numberBuilt, null);
+                    numberBuilt++;
+                }
+            }
+        } catch (InterruptedException ex) {
+            isCanceled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return structureArray;
+    }
+    
     //Sets the group color of each node to the color of the group it participates in at each time step
     //For working with social networks
-    public int[][] createArrayOfGroupAssociationForAllNodes(GraphModel graphModel, AttributeModel attributeModel, GroupStructure[] structureArray)
+    public TrajectoryStore createArrayOfGroupAssociationForAllNodes(GraphModel graphModel, AttributeModel attributeModel, GroupStructure[] structureArray)
     {   
-        int[][] arrayOfNodeAssociationColors = new int[numberOfNodes+1][(int)timeEnd];
-
-        for(int i=0; i<arrayOfNodeAssociationColors.length; i++)
-            for(int j=0; j<arrayOfNodeAssociationColors[i].length; j++)
-                arrayOfNodeAssociationColors[i][j] = 0;
+        //the highest color is found first, so that the store is created with the right width
+        int highestColor = 0;
+        for(int timeStep = (int)timeBegin; timeStep < (int)timeEnd; timeStep++)
+            for(Group group:structureArray[timeStep].groups)
+                highestColor = Math.max(highestColor, group.getColorId());
+        TrajectoryStore nodeAssociationColors = this.createTrajectoryStore(highestColor);
         
         for(int timeStep = (int)timeBegin; timeStep < (int)timeEnd; timeStep++)
             for(Group group:structureArray[timeStep].groups)
                 for(Node n:group.nodes)
-                    arrayOfNodeAssociationColors[n.getId()-nodeIdOffset][timeStep] = group.getColorId();
+                    nodeAssociationColors.set(graphNodeIndex.rowOf(n), timeStep, group.getColorId());
                 
         
-        return arrayOfNodeAssociationColors;
+        return nodeAssociationColors;
     }
     
-    //Instead of coloring by the social cost model, each node is simply given the color of its group. 
-    //For working with biological networks.
-    public int[][] colorAllIndividualsByGroupColor(int[][] arrayOfAllNodeAssociationsToGroups)
+    //Creates a store for a color of each node at each timestep, on the heap or in a memory-mapped file in the
+    //chosen directory when the trajectories are mapped
+    TrajectoryStore createTrajectoryStore(int highestColor)
     {
-        int[][] arrayOfNodeColors = new int[numberOfNodes+1][(int)timeEnd];
-        for(int nodeIndex = 0; nodeIndex < arrayOfNodeColors.length; nodeIndex++)
+        if(!useMappedTrajectories)
+            return new TrajectoryStore(numberOfNodes, (int)timeBegin, (int)timeEnd, highestColor);
+        File directory = null;
+        if((chosenDirectoryString!=null)&&(chosenDirectoryString.length()!=0)&&(new File(chosenDirectoryString).exists()))
+            directory = new File(chosenDirectoryString);
+        try
+        {
+            return new MappedTrajectoryStore(numberOfNodes, (int)timeBegin, (int)timeEnd, highestColor, directory);
+        }
+        catch(IOException ex)
         {
-            for(int t = 1; t < arrayOfNodeColors[1].length; t++)
-                arrayOfNodeColors[nodeIndex][t] = arrayOfAllNodeAssociationsToGroups[nodeIndex][t];
+            throw new IllegalStateException("Could not map the trajectories of " + numberOfNodes + " nodes", ex);
         }
-        return arrayOfNodeColors;
     }
     
+    //Instead of coloring by the social cost model, each node is simply given the color of its group. 
+    //For working with biological networks.
+    public TrajectoryStore colorAllIndividualsByGroupColor(TrajectoryStore allNodeAssociationsToGroups)
+    {   return allNodeAssociationsToGroups.copy();}
+    
     //Used with biological networks to find collections of proteins that stay together at every timestep
     public void findSmallerCommunities(Graph graph, int currentHighestColorID)
     {
-        Set<Community> setOfCommunitiesFoundByMatchingNodes = new HashSet<Community>();
-        Set<Community> setOfCommunitiesDetectedByAlgorithm  = new HashSet<Community>();
+        Set<Community> setOfCommunitiesFoundByMatchingNodes;
+        Set<Community> setOfCommunitiesDetectedByAlgorithm;
         
-        //Look at each node and compare its behavior to every other node
-        for(int i=1; i<arrayOfNodeColorsAtEachTimeStep.length; i++)
+        if(groupTrajectoriesByHash)
         {
-            for(int j=1; j<arrayOfNodeColorsAtEachTimeStep.length; j++)
-            {
-                if(j!=i)    //don't want to compare each node to itself
-                {
-                    //If nodes i and j do the same thing at each time step
-                    if(Arrays.equals(arrayOfGroupColorsForAllNodes[i],arrayOfGroupColorsForAllNodes[j])) 
-                    {
-                        Boolean isInOneGroupAlways = Boolean.TRUE;
-                        Boolean originalCommunityDoesExist = Boolean.FALSE;
-                        for(int index=2; index<arrayOfGroupColorsForAllNodes[i].length; index++)
-                        {
-                            if(arrayOfGroupColorsForAllNodes[i][index]!=arrayOfGroupColorsForAllNodes[i][1])
-                                isInOneGroupAlways = Boolean.FALSE;        
-                        }
-                        //If the two matching nodes are in exactly one community total, add them to the setOfCommunitiesDetectedByAlgorithm
-                        if(isInOneGroupAlways)
-                        {
-                            for(Community d:setOfCommunitiesDetectedByAlgorithm)
-                            {
-                                if(d.contains(graph.getNode(i+nodeIdOffset).getNodeData().getLabel()))
-                                {
-                                    d.addNode(graph.getNode(j+nodeIdOffset).getNodeData().getLabel());
-                                    originalCommunityDoesExist = Boolean.TRUE;
-                                }
-                                else if(d.contains(graph.getNode(j+nodeIdOffset).getNodeData().getLabel()))
-                                {
-                                    d.addNode(graph.getNode(i+nodeIdOffset).getNodeData().getLabel());
-                                    originalCommunityDoesExist = Boolean.TRUE;
-                                }
-                            }
-                            if(!originalCommunityDoesExist)
-                            {
-                                Community newCom = new Community();
-                                newCom.addNode(graph.getNode(i+nodeIdOffset).getNodeData().getLabel());
-                                newCom.addNode(graph.getNode(j+nodeIdOffset).getNodeData().getLabel());
-                                setOfCommunitiesDetectedByAlgorithm.add(newCom);
-                                newCom.color = arrayOfGroupColorsForAllNodes[i][1];
-                            }
-                        }
-                        //else the two matched nodes change communities. Add them to setOfCommunitiesFoundByMatchingNodes
-                        else
-                        {
-                            Boolean communityDoesExist = Boolean.FALSE;
-                            for(Community c:setOfCommunitiesFoundByMatchingNodes)
-                            {
-                                if(c.contains(graph.getNode(i+nodeIdOffset).getNodeData().getLabel()))
-                                {
-                                    c.addNode(graph.getNode(j+nodeIdOffset).getNodeData().getLabel());
-                                    communityDoesExist = Boolean.TRUE;
-                                }
-                                else if(c.contains(graph.getNode(j+nodeIdOffset).getNodeData().getLabel()))
-                                {
-                                    c.addNode(graph.getNode(i+nodeIdOffset).getNodeData().getLabel());
-                                    communityDoesExist = Boolean.TRUE;
-                                }
-                            }
-                            if(!communityDoesExist)
-                            {
-                                Community newCommunity = new Community();
-                                newCommunity.addNode(graph.getNode(i+nodeIdOffset).getNodeData().getLabel());
-                                newCommunity.addNode(graph.getNode(j+nodeIdOffset).getNodeData().getLabel());
-                                setOfCommunitiesFoundByMatchingNodes.add(newCommunity);
-                            }
-                        }
-                    }
-                }
-            }
+            //communities are kept in order of their first node, so they are given new colors in that order
+            setOfCommunitiesFoundByMatchingNodes = new LinkedHashSet<Community>();
+            setOfCommunitiesDetectedByAlgorithm  = new LinkedHashSet<Community>();
+            this.matchNodesByHashingTrajectories(graph, setOfCommunitiesFoundByMatchingNodes, setOfCommunitiesDetectedByAlgorithm);
+        }
+        else
+        {
+            setOfCommunitiesFoundByMatchingNodes = new HashSet<Community>();
+            setOfCommunitiesDetectedByAlgorithm  = new HashSet<Community>();
+            this.matchNodesByComparingAllNodes(graph, setOfCommunitiesFoundByMatchingNodes, setOfCommunitiesDetectedByAlgorithm);
         }
         
         int countOfNodesOriginallyInSameCommunityAlways = 0;
@@ -321,21 +589,17 @@ public class FindDynamicCommunities implements Statistics
             int newColorForThisGroup = currentHighestColorID++;
             com.color = newColorForThisGroup;
             Set<Integer> setOfGroups = new HashSet<Integer>();
-            String testNode = "";
-            int z=0;
+            int testNode = 0;
             
-            for(String n:com.nodes)
+            for(int n:com.nodes)
             {
-                if(z==0)
-                {
+                if(testNode==0)
                     testNode = n;
-                    z=1;
-                }
                 for(int ts = (int)timeBegin; ts<(int)timeEnd; ts++)
-                    arrayOfNodeColorsAtEachTimeStep[graph.getNode(n).getId()-nodeIdOffset][ts]=newColorForThisGroup;
+                    nodeColorsAtEachTimeStep.set(n, ts, newColorForThisGroup);
             }
             for(int t = (int)timeBegin; t<(int)timeEnd; t++)
-                setOfGroups.add(arrayOfGroupColorsForAllNodes[graph.getNode(testNode).getId()-nodeIdOffset][t]);
+                setOfGroups.add(groupColorsForAllNodes.get(testNode, t));
             count += com.nodes.size();
             if(com.nodes.size()>filter)
             {
@@ -366,7 +630,7 @@ public class FindDynamicCommunities implements Statistics
             Boolean nodeIsAlwaysPresent = Boolean.TRUE;
             for(int t=(int)timeBegin+1; t<(int)timeEnd && nodeIsStable; t++)
             {
-                if(arrayOfNodeColorsAtEachTimeStep[n.getId()-nodeIdOffset][(int)timeBegin]!=arrayOfNodeColorsAtEachTimeStep[n.getId()-nodeIdOffset][t])
+                if(nodeColorsAtEachTimeStep.get(graphNodeIndex.rowOf(n), (int)timeBegin)!=nodeColorsAtEachTimeStep.get(graphNodeIndex.rowOf(n), t))
                     nodeIsStable = Boolean.FALSE;
             }
             if(!nodeIsStable)
@@ -374,7 +638,7 @@ public class FindDynamicCommunities implements Statistics
                 numberOfNodesThatAreNotStable++;
                 for(int t=(int)timeBegin; t<(int)timeEnd && nodeIsStable; t++)
                 {
-                    if(arrayOfNodeColorsAtEachTimeStep[n.getId()-nodeIdOffset][t]==0)
+                    if(nodeColorsAtEachTimeStep.get(graphNodeIndex.rowOf(n), t)==0)
                         nodeIsAlwaysPresent = Boolean.FALSE;
                 }
             }
@@ -399,22 +663,210 @@ public class FindDynamicCommunities implements Statistics
         //System.out.println(numberOfNodesThatAreNotStableAndMissingAtOneTimeStep + " of these are missing at one or more timesteps");
     }
     
+    //Finds the nodes with the same group color at every timestep by comparing every pair of nodes
+    public void matchNodesByComparingAllNodes(Graph graph, Set<Community> setOfCommunitiesFoundByMatchingNodes, Set<Community> setOfCommunitiesDetectedByAlgorithm)
+    {
+        //Look at each node and compare its behavior to every other node
+        for(int i=1; i<nodeColorsAtEachTimeStep.getNumberOfRows(); i++)
+        {
+            for(int j=1; j<nodeColorsAtEachTimeStep.getNumberOfRows(); j++)
+            {
+                if(j!=i)    //don't want to compare each node to itself
+                {
+                    //If nodes i and j do the same thing at each time step
+                    if(groupColorsForAllNodes.rowsAreEqual(i, j)) 
+                    {
+                        Boolean isInOneGroupAlways = groupColorsForAllNodes.rowIsConstant(i);
+                        Boolean originalCommunityDoesExist = Boolean.FALSE;
+                        //If the two matching nodes are in exactly one community total, add them to the setOfCommunitiesDetectedByAlgorithm
+                        if(isInOneGroupAlways)
+                        {
+                            for(Community d:setOfCommunitiesDetectedByAlgorithm)
+                            {
+                                if(d.contains(i))
+                                {
+                                    d.addNode(j);
+                                    originalCommunityDoesExist = Boolean.TRUE;
+                                }
+                                else if(d.contains(j))
+                                {
+                                    d.addNode(i);
+                                    originalCommunityDoesExist = Boolean.TRUE;
+                                }
+                            }
+                            if(!originalCommunityDoesExist)
+                            {
+                                Community newCom = new Community();
+                                newCom.addNode(i);
+                                newCom.addNode(j);
+                                setOfCommunitiesDetectedByAlgorithm.add(newCom);
+                                newCom.color = groupColorsForAllNodes.get(i, (int)timeBegin);
+                            }
+                        }
+                        //else the two matched nodes change communities. Add them to setOfCommunitiesFoundByMatchingNodes
+                        else
+                        {
+                            Boolean communityDoesExist = Boolean.FALSE;
+                            for(Community c:setOfCommunitiesFoundByMatchingNodes)
+                            {
+                                if(c.contains(i))
+                                {
+                                    c.addNode(j);
+                                    communityDoesExist = Boolean.TRUE;
+                                }
+                                else if(c.contains(j))
+                                {
+                                    c.addNode(i);
+                                    communityDoesExist = Boolean.TRUE;
+                                }
+                            }
+                            if(!communityDoesExist)
+                            {
+                                Community newCommunity = new Community();
+                                newCommunity.addNode(i);
+                                newCommunity.addNode(j);
+                                setOfCommunitiesFoundByMatchingNodes.add(newCommunity);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    //Finds the nodes with the same group color at every timestep in one pass, by putting each node in a bucket 
+    //with the hash of its group colors and only comparing it with the nodes already in that bucket. Gives the 
+    //same communities as matchNodesByComparingAllNodes.
+    public void matchNodesByHashingTrajectories(Graph graph, Set<Community> setOfCommunitiesFoundByMatchingNodes, Set<Community> setOfCommunitiesDetectedByAlgorithm)
+    {
+        int numberOfRows = nodeColorsAtEachTimeStep.getNumberOfRows();
+        
+        //the first node of each distinct trajectory, kept under the hash of the trajectory
+        Map<Integer, List<Integer>> firstNodesWithHash = new HashMap<Integer, List<Integer>>();
+        int[] firstNodeWithSameTrajectory = new int[numberOfRows];
+        int[] numberOfNodesWithSameTrajectory = new int[numberOfRows];
+        for(int i=1; i<numberOfRows; i++)
+        {
+            int hash = groupColorsForAllNodes.hashOfRow(i);
+            List<Integer> bucket = firstNodesWithHash.get(hash);
+            if(bucket==null)
+            {
+                bucket = new ArrayList<Integer>(1);
+                firstNodesWithHash.put(hash, bucket);
+            }
+            firstNodeWithSameTrajectory[i] = i;
+            for(int firstNode:bucket)
+            {
+                if(groupColorsForAllNodes.rowsAreEqual(i, firstNode))
+                {
+                    firstNodeWithSameTrajectory[i] = firstNode;
+                    break;
+                }
+            }
+            if(firstNodeWithSameTrajectory[i]==i)
+                bucket.add(i);
+            numberOfNodesWithSameTrajectory[firstNodeWithSameTrajectory[i]]++;
+        }
+        
+        //every trajectory shared by at least two nodes becomes a community
+        Community[] communityOfFirstNode = new Community[numberOfRows];
+        for(int i=1; i<numberOfRows; i++)
+        {
+            int firstNode = firstNodeWithSameTrajectory[i];
+            if(numberOfNodesWithSameTrajectory[firstNode] < 2)
+                continue;
+            if(communityOfFirstNode[firstNode]==null)
+            {
+                Community newCommunity = new Community();
+                communityOfFirstNode[firstNode] = newCommunity;
+                
+                if(groupColorsForAllNodes.rowIsConstant(i))
+                {
+                    newCommunity.color = groupColorsForAllNodes.get(i, (int)timeBegin);
+                    setOfCommunitiesDetectedByAlgorithm.add(newCommunity);
+                }
+                else
+                    setOfCommunitiesFoundByMatchingNodes.add(newCommunity);
+            }
+            communityOfFirstNode[firstNode].addNode(i);
+        }
+    }
+    
     //Color all individuals using the social cost model
-    public int[][] colorAllIndividuals(int[][] arrayOfAllNodeAssociationsToGroups)
+    public TrajectoryStore colorAllIndividuals(TrajectoryStore allNodeAssociationsToGroups)
     {
-        int[][] arrayOfNodeColors = new int[numberOfNodes+1][(int)timeEnd+1];
+        //every node is colored with colors of its groups, so the store is as wide as the one of the groups
+        TrajectoryStore nodeColors = this.createTrajectoryStore(allNodeAssociationsToGroups.getHighestColor());
         arrayOfIndividualNodeCosts = new double[numberOfNodes+1];
         double cost=0;
-        for(int nodeIndex = 1; nodeIndex < arrayOfAllNodeAssociationsToGroups.length; nodeIndex++)
+        if(communityPresenceIndex==null)
+            communityPresenceIndex = new CommunityPresenceIndex(allNodeAssociationsToGroups, (int)timeBegin, (int)timeEnd);
+        
+        if(numberOfThreads > 1)
+            this.colorIndividualsInParallel(allNodeAssociationsToGroups, nodeColors);
+        else
         {
-            RecursionElement temp = colorOneIndividual(arrayOfAllNodeAssociationsToGroups[nodeIndex], nodeIndex, timeEnd-1); 
-            arrayOfNodeColors[nodeIndex] = temp.getNodeColorAtEachTimeStep().clone();
-            arrayOfIndividualNodeCosts[nodeIndex] = temp.getCost();
-            cost += temp.getCost();
+            for(int nodeIndex = 1; nodeIndex < allNodeAssociationsToGroups.getNumberOfRows(); nodeIndex++)
+                this.colorIndividualIntoSlot(allNodeAssociationsToGroups, nodeColors, nodeIndex);
         }
+        
+        //costs are added up in node order so the total does not depend on the number of threads
+        for(int nodeIndex = 1; nodeIndex < allNodeAssociationsToGroups.getNumberOfRows(); nodeIndex++)
+            cost += arrayOfIndividualNodeCosts[nodeIndex];
         totalCostForNetwork = cost;
         //System.out.println("Total calculated cost is " + cost);
-        return arrayOfNodeColors;
+        return nodeColors;
+    }
+    
+    //Colors a single node and stores its coloring and cost in the slots for that node
+    public void colorIndividualIntoSlot(TrajectoryStore allNodeAssociationsToGroups, TrajectoryStore nodeColors, int nodeIndex)
+    {
+        RecursionElement temp;
+        int[] oneNodeAssociationToGroups = allNodeAssociationsToGroups.getRow(nodeIndex);
+        if(useDynamicProgramming)
+            temp = colorOneIndividualByDynamicProgramming(oneNodeAssociationToGroups, nodeIndex, timeEnd-1);
+        else
+            temp = colorOneIndividual(oneNodeAssociationToGroups, nodeIndex, timeEnd-1); 
+        nodeColors.setRow(nodeIndex, temp.getNodeColorAtEachTimeStep());
+        arrayOfIndividualNodeCosts[nodeIndex] = temp.getCost();
+    }
+    
+    //Colors the nodes on a pool of numberOfThreads worker threads. Each node is colored independently
+    //and each worker only writes to the slots of the nodes it takes.
+    public void colorIndividualsInParallel(final TrajectoryStore allNodeAssociationsToGroups, final TrajectoryStore nodeColors)
+    {
+        final AtomicInteger nextNodeIndex = new AtomicInteger(1);
+        ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<Void>> workers = new LinkedList<Future<Void>>();
+        try
+        {
+            for(int i = 0; i < numberOfThreads; i++)
+            {
+                workers.add(pool.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        int nodeIndex = nextNodeIndex.getAndIncrement();
+                        while((nodeIndex < allNodeAssociationsToGroups.getNumberOfRows())&&(!isCanceled))
+                        {
+                            colorIndividualIntoSlot(allNodeAssociationsToGroups, nodeColors, nodeIndex);
+                            nodeIndex = nextNodeIndex.getAndIncrement();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> worker:workers)
+                worker.get();
+        } catch (InterruptedException ex) {
+            isCanceled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
     }
     
     //Color one individual using social cost model
@@ -449,6 +901,80 @@ public class FindDynamicCommunities implements Statistics
         return minRecursionElement;
     }
     
+    //Color one individual using social cost model, filling a table of minimum costs (one row per timestep,
+    //one column per group color of the node) bottom-up with back-pointers to the best previous color.
+    //Gives the same coloring and cost as colorOneIndividual in O(T*k^2) time instead of O(k^T).
+    public RecursionElement colorOneIndividualByDynamicProgramming(int[] arrayOfOneNodeAssociationToGroups, int nodeIndex, double timeStep)
+    {
+        Set<Integer> groupColorsOfNode = new HashSet<Integer>();
+        for(int i:arrayOfOneNodeAssociationToGroups)
+            groupColorsOfNode.add(i);
+        
+        //colors are tried in the iteration order of the set, so ties are broken the same way as in the recursion
+        int numberOfColors = groupColorsOfNode.size();
+        int[] candidateColors = new int[numberOfColors];
+        int c = 0;
+        for(int color:groupColorsOfNode)
+            candidateColors[c++] = color;
+        
+        int firstTimeStep     = (int)timeBegin;
+        int lastTimeStep      = (int)timeStep;
+        int numberOfTimeSteps = lastTimeStep-firstTimeStep+1;
+        double[] previousMinCost = new double[numberOfColors];
+        double[] currentMinCost  = new double[numberOfColors];
+        int[][]  bestPreviousColor = new int[numberOfTimeSteps][numberOfColors];
+        
+        for(c=0; c<numberOfColors; c++)
+            previousMinCost[c] = this.getVisitAndAbsenceCost(arrayOfOneNodeAssociationToGroups, firstTimeStep, candidateColors[c]);
+        
+        for(int t=1; t<numberOfTimeSteps; t++)
+        {
+            int currentTimeStep = firstTimeStep+t;
+            for(c=0; c<numberOfColors; c++)
+            {
+                int color = candidateColors[c];
+                double visitAndAbsenceCost = getVisitAndAbsenceCost(arrayOfOneNodeAssociationToGroups, currentTimeStep, color);
+                double minCost = Double.MAX_VALUE;
+                for(int p=0; p<numberOfColors; p++)
+                {
+                    double newCost = previousMinCost[p]
+                                   + getSwitchCost(arrayOfOneNodeAssociationToGroups, currentTimeStep, color, candidateColors[p])
+                                   + visitAndAbsenceCost;
+                    if(newCost<minCost)
+                    {
+                        minCost = newCost;
+                        bestPreviousColor[t][c] = p;
+                    }
+                }
+                currentMinCost[c] = minCost;
+            }
+            double[] temp   = previousMinCost;
+            previousMinCost = currentMinCost;
+            currentMinCost  = temp;
+        }
+        
+        int bestColor = 0;
+        double minCost = Double.MAX_VALUE;
+        for(c=0; c<numberOfColors; c++)
+        {
+            if(previousMinCost[c]<minCost)
+            {
+                minCost   = previousMinCost[c];
+                bestColor = c;
+            }
+        }
+        
+        //follow the back-pointers from the last timestep to recover the coloring
+        int[] array = new int[(int)timeEnd+1];
+        for(int t=numberOfTimeSteps-1; t>=0; t--)
+        {
+            array[firstTimeStep+t] = candidateColors[bestColor];
+            bestColor = bestPreviousColor[t][bestColor];
+        }
+        
+        return new RecursionElement(minCost, array);
+    }
+    
     public RecursionElement costToColorOneIndividualSpecificColor(int[] arrayOfOneNodeAssociationToGroups, int[] colorsOfNodeAtEachTimeStep, Set<Integer> groupColorsOfNode, double timeStep, int color)
     {
         double cost;
@@ -498,15 +1024,8 @@ public class FindDynamicCommunities implements Statistics
         //if the node is absent from a timestep, but its community is present=>absent
         if((colorOfGroupAtTimeStep==0)||(colorOfNode!=colorOfGroupAtTimeStep))
         {
-            Boolean isGroupPresent = Boolean.FALSE;
-            for(int index=1; ((!isGroupPresent)&&(index<arrayOfGroupColorsForAllNodes.length)); index++)
-            {
-                if(arrayOfGroupColorsForAllNodes[index][(int)timeStep]==colorOfNode)    //community is present
-                {
-                    isGroupPresent=Boolean.TRUE;
-                    costOfVisitAndAbsence+=costAbsent;
-                }
-            }            
+            if(communityPresenceIndex.isPresent(colorOfNode, (int)timeStep))    //community is present
+                costOfVisitAndAbsence+=costAbsent;
         }
         return costOfVisitAndAbsence; 
     }
@@ -543,7 +1062,7 @@ public class FindDynamicCommunities implements Statistics
     }
     
     //Modifies the attributes tables in Gephi with the dynamic communities and node persistence of each node
-    public void modifyAttributeTable(GraphModel graphModel, AttributeModel attributeModel, int[][] arrayOfNodeColorsAtEachTimeStep)
+    public void modifyAttributeTable(GraphModel graphModel, AttributeModel attributeModel, TrajectoryStore nodeColorsAtEachTimeStep)
     {
         AttributeTable  nodeTable              = attributeModel.getNodeTable();
         AttributeColumn dynamicCommunityColumn = nodeTable.getColumn(DYNAMIC_COMMUNITY);
@@ -555,14 +1074,21 @@ public class FindDynamicCommunities implements Statistics
         
         for(Node n : graph.getNodes())
         {
-            int nodeIndex    = n.getId()-nodeIdOffset;
+            int nodeIndex    = graphNodeIndex.rowOf(n);
             AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
-            int lastTimeStep = arrayOfNodeColorsAtEachTimeStep[nodeIndex].length-1;
-            List<Interval<Integer>> listOfIntervals = new LinkedList<Interval<Integer>>();
-            for(int timeStep = 1; timeStep<lastTimeStep; timeStep++)
+            int lastTimeStep = (int)timeEnd;
+            
+            //consecutive timesteps with the same color are merged into one interval [start, end)
+            List<Interval<Integer>> listOfIntervals = new ArrayList<Interval<Integer>>();
+            int startOfRun = (int)timeBegin;
+            for(int timeStep = startOfRun+1; timeStep<=lastTimeStep; timeStep++)
             {
-                Interval interval = new Interval(timeStep, timeStep+1, Boolean.FALSE, Boolean.TRUE, arrayOfNodeColorsAtEachTimeStep[nodeIndex][timeStep]);
-                listOfIntervals.add(interval);
+                int colorOfRun = nodeColorsAtEachTimeStep.get(nodeIndex, startOfRun);
+                if((timeStep==lastTimeStep)||(nodeColorsAtEachTimeStep.get(nodeIndex, timeStep)!=colorOfRun))
+                {
+                    listOfIntervals.add(new Interval<Integer>(startOfRun, timeStep, Boolean.FALSE, Boolean.TRUE, colorOfRun));
+                    startOfRun = timeStep;
+                }
             }
             
             DynamicInteger dynamicInt = new DynamicInteger(listOfIntervals);
@@ -575,28 +1101,16 @@ public class FindDynamicCommunities implements Statistics
         }
         for(Node n: graph.getNodes())
         {
-            int nodeIndex = n.getId()-nodeIdOffset;
+            int nodeIndex = graphNodeIndex.rowOf(n);
             AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
             Set<Integer> colorsOfNode = new HashSet<Integer>();
             for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
             {
-                colorsOfNode.add(arrayOfNodeColorsAtEachTimeStep[nodeIndex][timeStep]);
+                colorsOfNode.add(nodeColorsAtEachTimeStep.get(nodeIndex, timeStep));
             }
             int numberOfChanges = colorsOfNode.size(); 
             row.setValue(nodePersistenceColumn, numberOfChanges);
         }
-        
-        for(Node m : graph.getNodes())
-        {
-            int nodeIndex = m.getId()-nodeIdOffset;
-            AttributeRow attRow = (AttributeRow) m.getNodeData().getAttributes();
-            DynamicInteger dynamicInteger = (DynamicInteger)attRow.getValue(dynamicCommunityColumn);
-            int lastTimeStep = arrayOfNodeColorsAtEachTimeStep[nodeIndex].length-1;
-            for(int timeStep = 1; timeStep<lastTimeStep; timeStep++)
-            {
-                Interval interval = new Interval(timeStep, timeStep+1, Boolean.FALSE, Boolean.TRUE, arrayOfNodeColorsAtEachTimeStep[nodeIndex][timeStep]);
-            }
-        }
     }
     
     //creates an array of colors to be used for the first 16 communities identified, using the Windows 8 colors.
@@ -694,22 +1208,15 @@ public class FindDynamicCommunities implements Statistics
     //creates the .HTML file that Gephi displays after the algorithm is executed
     public void writeReport(GraphModel graphModel, AttributeModel attributeModel)
     {
-        String[] arrayOfNodeNames = new String[numberOfNodes+1];
-        Graph graph = graphModel.getGraph();
-        for(Node n: graph.getNodes())
-        {
-            int nodeIndex    = n.getId()-nodeIdOffset;
-            String nodeName  = n.getNodeData().getLabel();
-            arrayOfNodeNames[nodeIndex] = nodeName;
-        }
+        String[] arrayOfNodeNames = this.createArrayOfNodeNames(graphModel.getGraph());
         
         //testing colors
         Set<Integer> setOfCommunities = new HashSet<Integer>();
-        for(int j=1; j<arrayOfNodeColorsAtEachTimeStep.length; j++)
-            for(int k=1; k<timeEnd; k++)
+        for(int j=1; j<nodeColorsAtEachTimeStep.getNumberOfRows(); j++)
+            for(int k=(int)timeBegin; k<timeEnd; k++)
             {
-                setOfCommunities.add(arrayOfGroupColorsForAllNodes[j][k]);
-                setOfCommunities.add(arrayOfNodeColorsAtEachTimeStep[j][k]);
+                setOfCommunities.add(groupColorsForAllNodes.get(j, k));
+                setOfCommunities.add(nodeColorsAtEachTimeStep.get(j, k));
             }
         //String[] arrayOfColorsInHex = new String[setOfCommunities.size()+2];
         arrayOfColorsInHex = new String[setOfCommunities.size()+2];
@@ -724,136 +1231,387 @@ public class FindDynamicCommunities implements Statistics
             else
                 arrayOfColorsInHex[i]=this.generateRandomColorInHex(randomNumberSequence);                
         }        
-        report = "<HTML> <BODY> <h1>Dynamic Communities Report </h1>"
+        //Small reports are shown in Gephi. Larger ones would make the report viewer freeze, so they are 
+        //written to Report.html and Gephi only shows the parameters and a link to the file.
+        try
+        {
+            if(summarizeReport)
+                report = this.writeSummaryReport(arrayOfNodeNames);
+            else if((long)numberOfNodes*((int)timeEnd-(int)timeBegin) <= MAXIMUM_CELLS_IN_GEPHI_REPORT)
+            {
+                StringWriter writer = new StringWriter();
+                this.writeReportHeader(writer);
+                this.writeReportTable(writer, arrayOfNodeNames, 1, numberOfNodes);
+                this.writeReportFooter(writer);
+                report = writer.toString();
+            }
+            else
+            {
+                File reportFile = this.createReportFile("Report", ".html");
+                Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+                try
+                {
+                    this.writeReportHeader(writer);
+                    this.writeReportTable(writer, arrayOfNodeNames, 1, numberOfNodes);
+                    this.writeReportFooter(writer);
+                }
+                finally
+                {
+                    writer.close();
+                }
+                
+                StringWriter summary = new StringWriter();
+                this.writeReportHeader(summary);
+                summary.write("<p>The network has " + numberOfNodes + " nodes and " + ((int)timeEnd-(int)timeBegin) 
+                            + " timesteps, which is too large to show here. The full report was written to <a href='" 
+                            + reportFile.toURI() + "'>" + reportFile.getAbsolutePath() + "</a>.</p>");
+                summary.write("</BODY></HTML>");
+                report = summary.toString();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(FindDynamicCommunities.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    //Returns the label of each node, indexed like the rows of nodeColorsAtEachTimeStep
+    String[] createArrayOfNodeNames(Graph graph)
+    {
+        String[] arrayOfNodeNames = new String[numberOfNodes+1];
+        for(Node n: graph.getNodes())
+        {
+            int nodeIndex    = graphNodeIndex.rowOf(n);
+            String nodeName  = n.getNodeData().getLabel();
+            arrayOfNodeNames[nodeIndex] = nodeName;
+        }
+        return arrayOfNodeNames;
+    }
+    
+    //Writes Report.csv, and Report.dyct when binary trajectories are exported, to the chosen directory
+    public void writeExportFiles(String[] arrayOfNodeNames)
+    {
+        try {
+            this.createCSVFile(arrayOfNodeNames);
+            if(exportBinaryTrajectories)
+                this.createBinaryTrajectoryFile(arrayOfNodeNames);
+        } catch (IOException ex) {
+            Logger.getLogger(FindDynamicCommunities.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    //Writes the title of the report and the parameters that were used
+    public void writeReportHeader(Writer out) throws IOException
+    {
+        out.write("<HTML> <BODY> <h1>Dynamic Communities Report </h1>"
                  + "<hr>"
-                 + "<br>";
+                 + "<br>");
         
         //When using cost model
         if(executeTBWForSocialNetwork)
         {
-            report = report.concat("Visiting cost = " + costVisit
+            out.write("Visiting cost = " + costVisit
                     + "<br>Absence cost = " + costAbsent
                     + "<br>Switching cost = " + costSwitch  + "<br>  <br>  ");
         }
-        report = report.concat("<table border = '1'"
+        
+        //When using incremental group detection
+        if(numberOfNodesReevaluatedAtEachTimeStep != null)
+        {
+            out.write("Nodes re-evaluated by incremental group detection:<br>");
+            for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
+                out.write("Time step " + timeStep + ": " + numberOfNodesReevaluatedAtEachTimeStep[timeStep]
+                        + " of " + numberOfNodesAtEachTimeStep[timeStep] + " nodes<br>");
+            out.write("<br>");
+        }
+        
+        //When using approximate group matching
+        if(groupMatchingReport != null)
+            out.write(groupMatchingReport + "<br>");
+    }
+    
+    //Writes the table with the community of each node from firstNode to lastNode at each timestep
+    public void writeReportTable(Writer out, String[] arrayOfNodeNames, int firstNode, int lastNode) throws IOException
+    {
+        out.write("<table border = '1'"
                 + "cellpadding='5'>"
                 + "<tr>"
                 + "<th>Time step</th>");
-        for(int index = 1; index < numberOfNodes+1; index++)
+        for(int index = firstNode; index <= lastNode; index++)
         {
-           report = report.concat("<th colspan='2'>" + arrayOfNodeNames[index]  + "</th>"); 
+           out.write("<th colspan='2'>" + arrayOfNodeNames[index]  + "</th>"); 
         }
         
-        report = report.concat("</tr>");        
+        out.write("</tr>");        
                 
         for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
         {
-            report = report.concat("<tr><td>" + timeStep + "</td>");
-            for(int i=1; i < numberOfNodes+1; i++)
+            out.write("<tr><td>" + timeStep + "</td>");
+            for(int i=firstNode; i <= lastNode; i++)
             {
-                int colorOfNode = arrayOfNodeColorsAtEachTimeStep[i][timeStep];
-                int colorOfGroup = arrayOfGroupColorsForAllNodes[i][timeStep];
+                int colorOfNode = nodeColorsAtEachTimeStep.get(i, timeStep);
+                int colorOfGroup = groupColorsForAllNodes.get(i, timeStep);
                 String colorOfNodeInHex = arrayOfColorsInHex[colorOfNode];
                 String colorOfGroupInHex = "";
                 if(colorOfGroup!=0)
                     colorOfGroupInHex = arrayOfColorsInHex[colorOfGroup];
                 if(colorOfNode == colorOfGroup)
-                    report = report.concat("<td colspan='2' bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + ("</td>"));
+                    out.write("<td colspan='2' bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + ("</td>"));
                 else if(colorOfGroup==0)
                 {
-                    Boolean isCommunityPresent = Boolean.FALSE;
-                    for(int nodeIndex = 1; nodeIndex < numberOfNodes+1; nodeIndex++)
-                    {
-                        if(arrayOfGroupColorsForAllNodes[nodeIndex][timeStep]==colorOfNode)
-                            isCommunityPresent = Boolean.TRUE;
-                    }
-                    if(isCommunityPresent)
-                        report = report.concat("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td>-</td>");
+                    if(communityPresenceIndex.isPresent(colorOfNode, timeStep))
+                        out.write("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td>-</td>");
                     else
-                        report = report.concat("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td bgcolor='#" + colorOfNodeInHex + "'>-</td>");                        
+                        out.write("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td bgcolor='#" + colorOfNodeInHex + "'>-</td>");                        
                 }else                
-                    report = report.concat("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td bgcolor='#" + colorOfGroupInHex + "'>" + colorOfGroup + "</td>");
+                    out.write("<td bgcolor='#" + colorOfNodeInHex +"'>" + colorOfNode + "</td>" + "<td bgcolor='#" + colorOfGroupInHex + "'>" + colorOfGroup + "</td>");
             }
-            report = report.concat("</tr>");
+            out.write("</tr>");
         }
         
         //When using cost model
         if(executeTBWForSocialNetwork)
         {
-            report = report.concat("<tr><th>Cost</th>");
-            for(int index=1; index < arrayOfIndividualNodeCosts.length; index++)
+            out.write("<tr><th>Cost</th>");
+            for(int index=firstNode; index <= lastNode; index++)
             {
-                report = report.concat("<td colspan='2'>" + arrayOfIndividualNodeCosts[index] + "</td>");
+                out.write("<td colspan='2'>" + arrayOfIndividualNodeCosts[index] + "</td>");
             }
         }
 
         //When not using cost model
         else
         {
-            report = report.concat("<tr><th># of nodes</th>");
-            for(int indx = 1; indx < numberOfNodes+1; indx++)
+            out.write("<tr><th># of nodes</th>");
+            for(int indx = firstNode; indx <= lastNode; indx++)
             {
-                Boolean sameCommunityAlways = Boolean.TRUE;
-                for(int ts = (int) timeBegin + 1; ts < (int)timeEnd; ts++)
+                if(nodeColorsAtEachTimeStep.rowIsConstant(indx))
                 {
-                    if(arrayOfNodeColorsAtEachTimeStep[indx][ts]!=arrayOfNodeColorsAtEachTimeStep[indx][(int)timeBegin])
-                        sameCommunityAlways=Boolean.FALSE;
-     
-                }
-                if(sameCommunityAlways)
-                {
-                    int groupNumber = arrayOfNodeColorsAtEachTimeStep[indx][1];
+                    int groupNumber = nodeColorsAtEachTimeStep.get(indx, (int)timeBegin);
                     int numInCommunity = numberOfNodesInEachCommunity[groupNumber];
-                    report = report.concat("<td colspan='2'>" + numInCommunity + " </td>");
+                    out.write("<td colspan='2'>" + numInCommunity + " </td>");
                 }
                 else
-                    report = report.concat("<td colspan='2'> - </td>");
+                    out.write("<td colspan='2'> - </td>");
             }
         }
         
-        report = report.concat("</tr>");
+        out.write("</tr>");
         if(executeTBWForSocialNetwork)
         {
-            report = report.concat("<tr><th>Total Cost</th>");
-            report = report.concat("<td colspan = '2'>" + totalCostForNetwork + "</td></tr>");
+            out.write("<tr><th>Total Cost</th>");
+            out.write("<td colspan = '2'>" + totalCostForNetwork + "</td></tr>");
         }
-        report = report.concat("</table>");
-        
+        out.write("</table>");
+    }
+    
+    //Writes the explanation of the table and closes the document
+    public void writeReportFooter(Writer out) throws IOException
+    {
         if(executeTBWForSocialNetwork)
         {    
-            report = report.concat("<p align = 'justify'> The community membership of each node is given in a column. Each community"
-                                + " is associated with a unique color and number. If there is only one color and number"
-                                + " listed for a node at a specific timestep, that node is actively participating in the"
-                                + " indicated community at that timestep. If there are two numbers and colors for one node"
-                                + " at one timestep, it is considered a member of the community on the left, although"
-                                + " it is actively participating in, that is, visiting, the community on the right. If there"
-                                + " is a colored square with a number and a white square with a dash, that node is a member"
-                                + " of the inidicated community, although it is absent at that timestep. If there are two squares"
-                                + " with the same color, one with a number and the second one with a dash, the node is a member"
-                                + " of that community at that timestep, but both the community and the node are absent at that"
-                                + " timestep, so no costs are incurred.</p>");
+            out.write("<p align = 'justify'> The community membership of each node is given in a column. Each community"
+                   + " is associated with a unique color and number. If there is only one color and number"
+                   + " listed for a node at a specific timestep, that node is actively participating in the"
+                   + " indicated community at that timestep. If there are two numbers and colors for one node"
+                   + " at one timestep, it is considered a member of the community on the left, although"
+                   + " it is actively participating in, that is, visiting, the community on the right. If there"
+                   + " is a colored square with a number and a white square with a dash, that node is a member"
+                   + " of the inidicated community, although it is absent at that timestep. If there are two squares"
+                   + " with the same color, one with a number and the second one with a dash, the node is a member"
+                   + " of that community at that timestep, but both the community and the node are absent at that"
+                   + " timestep, so no costs are incurred.</p>");
         }
         else
         {
-            report = report.concat("<p align = 'justify'> The community membership of each node is given in a column. When there are"
-                                + " two colors and numbers for one node at a certain timestep, the node is a member of a"
-                                + " sub-community indicated by the left number. That sub-community is part of the"
-                                + " community indicated by the right number. The number in the last row indicates the number"
-                                + " of nodes in that same community or sub-community.</p>");
+            out.write("<p align = 'justify'> The community membership of each node is given in a column. When there are"
+                   + " two colors and numbers for one node at a certain timestep, the node is a member of a"
+                   + " sub-community indicated by the left number. That sub-community is part of the"
+                   + " community indicated by the right number. The number in the last row indicates the number"
+                   + " of nodes in that same community or sub-community.</p>");
         }
         
         //String buttonClickedString = "You clicked the button!";
-        //report = report.concat("<form>");
-        //report = report.concat("<br> <input type='button' value='Open as CSV file' onclick='JavaScript:alert(" + buttonClickedString +")'/>");
-        //report = report.concat("</form>");
+        //out.write("<form>");
+        //out.write("<br> <input type='button' value='Open as CSV file' onclick='JavaScript:alert(" + buttonClickedString +")'/>");
+        //out.write("</form>");
 
-        report = report.concat("</BODY></HTML>");
+        out.write("</BODY></HTML>");
+    }
+    
+    //Creates a file for a large report in the chosen directory, or in the temporary directory if none was chosen
+    public File createReportFile(String name, String extension) throws IOException
+    {
+        if((chosenDirectoryString!=null)&&(chosenDirectoryString.trim().length()!=0))
+        {
+            File directory = new File(chosenDirectoryString);
+            if(directory.isDirectory())
+                return new File(directory, name + extension);
+        }
+        return File.createTempFile(name, extension);
+    }
+    
+    //Returns the chosen directory, or a new directory in the temporary directory if none was chosen
+    public File getReportDirectory() throws IOException
+    {
+        if((chosenDirectoryString!=null)&&(chosenDirectoryString.trim().length()!=0))
+        {
+            File directory = new File(chosenDirectoryString);
+            if(directory.isDirectory())
+                return directory;
+        }
+        File directory = File.createTempFile("Report", "");
+        if(!directory.delete() || !directory.mkdir())
+            throw new IOException("Could not create directory " + directory);
+        return directory;
+    }
+    
+    //Writes the per-node tables to pages of NODES_PER_REPORT_PAGE nodes each, and returns a report for Gephi 
+    //with statistics about the whole network and a link to each page
+    public String writeSummaryReport(String[] arrayOfNodeNames) throws IOException
+    {
+        StringWriter summary = new StringWriter();
+        this.writeReportHeader(summary);
+        this.writeReportStatistics(summary, arrayOfNodeNames);
         
+        File directory = this.getReportDirectory();
+        summary.write("<h2>Communities of each node</h2>");
+        for(int firstNode = 1; firstNode <= numberOfNodes; firstNode += NODES_PER_REPORT_PAGE)
+        {
+            int  lastNode = Math.min(numberOfNodes, firstNode+NODES_PER_REPORT_PAGE-1);
+            File pageFile = new File(directory, "Report-nodes-" + firstNode + "-" + lastNode + ".html");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pageFile), "UTF-8"));
+            try
+            {
+                writer.write("<HTML> <BODY> <h1>Dynamic Communities Report </h1>"
+                           + "<hr>"
+                           + "<br>Nodes " + firstNode + " to " + lastNode + " of " + numberOfNodes + "<br>  <br>  ");
+                this.writeReportTable(writer, arrayOfNodeNames, firstNode, lastNode);
+                this.writeReportFooter(writer);
+            }
+            finally
+            {
+                writer.close();
+            }
+            summary.write("<a href='" + pageFile.toURI() + "'>Nodes " + firstNode + " to " + lastNode + "</a><br>");
+        }
+        summary.write("</BODY></HTML>");
+        return summary.toString();
+    }
+    
+    //Writes the number of communities at each timestep, the distribution of community and group sizes, 
+    //and for the cost model the total of each cost and the nodes with the highest cost
+    public void writeReportStatistics(Writer out, String[] arrayOfNodeNames) throws IOException
+    {
+        int highestColor = Math.max(nodeColorsAtEachTimeStep.getHighestColor(), groupColorsForAllNodes.getHighestColor());
         
-        try {
-            this.createCSVFile(arrayOfNodeNames);
-        } catch (IOException ex) {
-            Logger.getLogger(FindDynamicCommunities.class.getName()).log(Level.SEVERE, null, ex);
+        //communities and groups at each timestep, and the size of each group
+        int[]  numberOfGroupsOfSize = new int[32];
+        int[]  sizeOfGroup          = new int[highestColor+1];
+        BitSet communitiesPresent   = new BitSet();
+        out.write("<h2>Communities at each timestep</h2>");
+        out.write("<table border = '1'cellpadding='5'><tr><th>Time step</th><th>Communities</th><th>Groups</th><th>Nodes in no group</th></tr>");
+        for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
+        {
+            communitiesPresent.clear();
+            Arrays.fill(sizeOfGroup, 0);
+            int numberOfNodesInNoGroup = 0;
+            for(int i=1; i < numberOfNodes+1; i++)
+            {
+                int colorOfNode  = nodeColorsAtEachTimeStep.get(i, timeStep);
+                int colorOfGroup = groupColorsForAllNodes.get(i, timeStep);
+                if(colorOfNode!=0)
+                    communitiesPresent.set(colorOfNode);
+                if(colorOfGroup!=0)
+                    sizeOfGroup[colorOfGroup]++;
+                else
+                    numberOfNodesInNoGroup++;
+            }
+            int numberOfGroups = 0;
+            for(int size:sizeOfGroup)
+            {
+                if(size > 0)
+                {
+                    numberOfGroups++;
+                    numberOfGroupsOfSize[31-Integer.numberOfLeadingZeros(size)]++;
+                }
+            }
+            out.write("<tr><td>" + timeStep + "</td><td>" + communitiesPresent.cardinality() + "</td><td>" + numberOfGroups 
+                    + "</td><td>" + numberOfNodesInNoGroup + "</td></tr>");
+        }
+        out.write("</table>");
+        
+        //the size of a community is the number of nodes that are members of it at one or more timesteps
+        int[] sizeOfCommunity     = new int[highestColor+1];
+        int[] lastNodeInCommunity = new int[highestColor+1];
+        for(int i=1; i < numberOfNodes+1; i++)
+        {
+            for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
+            {
+                int color = nodeColorsAtEachTimeStep.get(i, timeStep);
+                if((color!=0)&&(lastNodeInCommunity[color]!=i))
+                {
+                    lastNodeInCommunity[color] = i;
+                    sizeOfCommunity[color]++;
+                }
+            }
+        }
+        int[] numberOfCommunitiesOfSize = new int[32];
+        for(int size:sizeOfCommunity)
+            if(size > 0)
+                numberOfCommunitiesOfSize[31-Integer.numberOfLeadingZeros(size)]++;
+        
+        out.write("<h2>Sizes</h2>");
+        out.write("<table border = '1'cellpadding='5'><tr><th>Nodes</th><th>Communities</th><th>Groups (over all timesteps)</th></tr>");
+        for(int bin = 0; bin < 32; bin++)
+        {
+            if((numberOfCommunitiesOfSize[bin]==0)&&(numberOfGroupsOfSize[bin]==0))
+                continue;
+            long smallest = 1L << bin;
+            long largest  = (1L << (bin+1)) - 1;
+            out.write("<tr><td>" + (smallest==largest ? Long.toString(smallest) : smallest + " - " + largest) + "</td><td>" 
+                    + numberOfCommunitiesOfSize[bin] + "</td><td>" + numberOfGroupsOfSize[bin] + "</td></tr>");
+        }
+        out.write("</table>");
+        
+        //When using cost model
+        if(executeTBWForSocialNetwork)
+        {
+            long numberOfSwitches = 0;
+            long numberOfVisits   = 0;
+            long numberOfAbsences = 0;
+            for(int i=1; i < numberOfNodes+1; i++)
+            {
+                for(int timeStep = (int)timeBegin; timeStep<(int)timeEnd; timeStep++)
+                {
+                    int colorOfNode  = nodeColorsAtEachTimeStep.get(i, timeStep);
+                    int colorOfGroup = groupColorsForAllNodes.get(i, timeStep);
+                    if((timeStep > (int)timeBegin)&&(colorOfNode!=nodeColorsAtEachTimeStep.get(i, timeStep-1)))
+                        numberOfSwitches++;
+                    if((colorOfGroup!=0)&&(colorOfNode!=colorOfGroup))
+                        numberOfVisits++;
+                    if(((colorOfGroup==0)||(colorOfNode!=colorOfGroup))&&(communityPresenceIndex.isPresent(colorOfNode, timeStep)))
+                        numberOfAbsences++;
+                }
+            }
+            out.write("<h2>Costs</h2>");
+            out.write("Switching: " + numberOfSwitches + " switches, cost = " + numberOfSwitches*costSwitch
+                    + "<br>Visiting: " + numberOfVisits + " visits, cost = " + numberOfVisits*costVisit
+                    + "<br>Absence: " + numberOfAbsences + " absences, cost = " + numberOfAbsences*costAbsent
+                    + "<br>Total cost = " + totalCostForNetwork + "<br>");
+            
+            Integer[] nodesByCost = new Integer[numberOfNodes];
+            for(int i=0; i < numberOfNodes; i++)
+                nodesByCost[i] = i+1;
+            Arrays.sort(nodesByCost, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer first, Integer second)
+                {   return Double.compare(arrayOfIndividualNodeCosts[second], arrayOfIndividualNodeCosts[first]);}
+            });
+            out.write("<h2>Nodes with the highest cost</h2>");
+            out.write("<table border = '1'cellpadding='5'><tr><th>Node</th><th>Cost</th></tr>");
+            for(int i=0; i < Math.min(numberOfNodes, NUMBER_OF_COSTLIEST_NODES_IN_REPORT); i++)
+                out.write("<tr><td>" + arrayOfNodeNames[nodesByCost[i]] + "</td><td>" + arrayOfIndividualNodeCosts[nodesByCost[i]] + "</td></tr>");
+            out.write("</table>");
         }
     }
 
@@ -862,10 +1620,9 @@ public class FindDynamicCommunities implements Statistics
         File directory = new File(chosenDirectoryString);
         if((chosenDirectoryString.length()!=0)&&(directory.exists()))
         {
-            String nameOfNewFile = chosenDirectoryString.concat("\\Report.csv");
-            File file = new File(nameOfNewFile);
+            File file = new File(directory, "Report.csv");
             file.createNewFile();
-            FileWriter writer = new FileWriter(file);
+            Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16);
         
             writer.append("Timestep \t");
         
@@ -881,8 +1638,8 @@ public class FindDynamicCommunities implements Statistics
                 writer.append(timeStep + "\t");
                 for(int i=1; i < numberOfNodes+1; i++)
                 {
-                    int colorOfNode = arrayOfNodeColorsAtEachTimeStep[i][timeStep];
-                    int colorOfGroup = arrayOfGroupColorsForAllNodes[i][timeStep];
+                    int colorOfNode = nodeColorsAtEachTimeStep.get(i, timeStep);
+                    int colorOfGroup = groupColorsForAllNodes.get(i, timeStep);
                     if(colorOfNode == colorOfGroup)
                         writer.append(colorOfNode + "\t");
                     else if(colorOfGroup==0)
@@ -910,15 +1667,9 @@ public class FindDynamicCommunities implements Statistics
                 writer.append("# of nodes\t");
                 for(int indx = 1; indx < numberOfNodes+1; indx++)
                 {
-                    Boolean sameCommunityAlways = Boolean.TRUE;
-                    for(int ts = (int) timeBegin + 1; ts < (int)timeEnd; ts++)
-                    {
-                        if(arrayOfNodeColorsAtEachTimeStep[indx][ts]!=arrayOfNodeColorsAtEachTimeStep[indx][(int)timeBegin])
-                            sameCommunityAlways=Boolean.FALSE;
-                    }
-                    if(sameCommunityAlways)
+                    if(nodeColorsAtEachTimeStep.rowIsConstant(indx))
                     {
-                        int groupNumber = arrayOfNodeColorsAtEachTimeStep[indx][1];
+                        int groupNumber = nodeColorsAtEachTimeStep.get(indx, (int)timeBegin);
                         int numInCommunity = numberOfNodesInEachCommunity[groupNumber];
                         writer.append(numInCommunity + "\t");
                     }
@@ -939,6 +1690,21 @@ public class FindDynamicCommunities implements Statistics
         }
     }
     
+    //Writes the communities, groups and costs of all nodes to Report.dyct, which can be read with BinaryTrajectoryReader
+    public void createBinaryTrajectoryFile(String[] arrayOfNodeNames) throws IOException
+    {
+        if((chosenDirectoryString!=null)&&(chosenDirectoryString.trim().length()!=0)&&(new File(chosenDirectoryString).exists()))
+        {
+            File directory = new File(chosenDirectoryString);
+            int[] nodeIds = new int[numberOfNodes+1];
+            for(int i=1; i < numberOfNodes+1; i++)
+                nodeIds[i] = graphNodeIndex.getNodeId(i);
+            double[] costs = executeTBWForSocialNetwork ? arrayOfIndividualNodeCosts : null;
+            BinaryTrajectoryWriter.write(new File(directory, "Report.dyct"), nodeIds, arrayOfNodeNames, nodeColorsAtEachTimeStep, 
+                                         groupColorsForAllNodes, costs, (int)timeBegin, (int)timeEnd);
+        }
+    }
+    
     @Override
     public String getReport() 
     {   return report;}    
@@ -956,49 +1722,126 @@ public class FindDynamicCommunities implements Statistics
 
 class Community
 {
-    Set<String> nodes;
+    //the rows of the nodes in the trajectory stores, which unlike the labels are unique to each node
+    Set<Integer> nodes;
     int color;
     
     public Community()
-    {   nodes = new HashSet<String>();}
+    {   nodes = new HashSet<Integer>();}
     
-    public void addNode(String newNodeName)
-    {   nodes.add(newNodeName);}
+    public void addNode(int row)
+    {   nodes.add(row);}
     
-    public Boolean contains(String newNodeName)
-    {
-        String[] nodeArray = new String[nodes.size()];
-        nodes.toArray(nodeArray);
-        for(String s: nodeArray)
-        {
-            if(s.equalsIgnoreCase(newNodeName))
-                return Boolean.TRUE;
-        } 
-        return Boolean.FALSE;
-    }
+    public Boolean contains(int row)
+    {   return nodes.contains(row);}
 }
 
 
 
+//Colors the nodes with their community at the timestep in the middle of the visible interval. Moving the
+//timeline slider sends a burst of events, so each event only schedules a recoloring, which runs once after
+//RECOLOR_DELAY_MILLISECONDS with the latest interval. Nothing is done while the middle stays within the same
+//timestep, and only the nodes whose color is different from the one they were last given are updated.
+//The recoloring runs on the thread of the listener, so it holds the write lock of the graph while it sets
+//the colors. Only the listener of the latest execution is kept on the graph.
 class GraphActionListener implements GraphListener
 {
+    public static final long RECOLOR_DELAY_MILLISECONDS = 30;
+    
+    static GraphActionListener installedListener;
+    static GraphModel          graphModelOfInstalledListener;
+    
     Graph graph;
     DynamicModel dynamicModel;
-    int[][] arrayOfNodeColors;
+    TrajectoryStore nodeColors;
     String[] arrayOfColorsInHex;
-    int nodeIdOffset;
+    GraphNodeIndex graphNodeIndex;
+    float[] redOfColor;
+    float[] greenOfColor;
+    float[] blueOfColor;
+    int[] colorShownForNode;
+    int lastColoredTimeStep = Integer.MIN_VALUE;
+    AtomicBoolean recolorIsScheduled = new AtomicBoolean(false);
+    ScheduledExecutorService recolorExecutor;
     
-    public GraphActionListener(DynamicModel dynamicModel, Graph graph, int[][] arrayOfNodeColors, String[] arrayOfColorsInHex, int nodeOffset)
+    public GraphActionListener(DynamicModel dynamicModel, Graph graph, TrajectoryStore nodeColors, String[] arrayOfColorsInHex, GraphNodeIndex graphNodeIndex)
     {
         this.graph = graph;
         this.dynamicModel = dynamicModel;
-        this.arrayOfNodeColors = arrayOfNodeColors;
+        this.nodeColors = nodeColors;
         this.arrayOfColorsInHex = arrayOfColorsInHex;
-        this.nodeIdOffset = nodeOffset;
+        this.graphNodeIndex = graphNodeIndex;
+        
+        redOfColor   = new float[arrayOfColorsInHex.length];
+        greenOfColor = new float[arrayOfColorsInHex.length];
+        blueOfColor  = new float[arrayOfColorsInHex.length];
+        for(int colorId = 0; colorId < arrayOfColorsInHex.length; colorId++)
+        {
+            if(arrayOfColorsInHex[colorId] == null)
+                continue;
+            int rgb = Integer.parseInt(arrayOfColorsInHex[colorId], 16);
+            redOfColor[colorId]   = (float)((rgb >> 16) & 0xFF)/255;
+            greenOfColor[colorId] = (float)((rgb >> 8) & 0xFF)/255;
+            blueOfColor[colorId]  = (float)(rgb & 0xFF)/255;
+        }
+        colorShownForNode = new int[nodeColors.getNumberOfRows()];
+        Arrays.fill(colorShownForNode, -1);
+        
+        recolorExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "Dynamic community coloring");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
+    //Removes the listener of the previous execution, and stops its thread, before adding the new one
+    public static synchronized void install(GraphModel graphModel, GraphActionListener listener)
+    {
+        if(installedListener != null)
+        {
+            graphModelOfInstalledListener.removeGraphListener(installedListener);
+            installedListener.shutdown();
+        }
+        installedListener             = listener;
+        graphModelOfInstalledListener = graphModel;
+        graphModel.addGraphListener(listener);
+    }
+    
+    public void shutdown()
+    {   recolorExecutor.shutdownNow();}
+    
     @Override
     public void graphChanged(GraphEvent ge) 
+    {
+        if(recolorExecutor.isShutdown())
+            return;
+        if(recolorIsScheduled.compareAndSet(false, true))
+        {
+            recolorExecutor.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    recolorIsScheduled.set(false);
+                    try
+                    {
+                        colorAllNodesForMiddleOfInterval(getMiddleOfVisibleInterval());
+                    }
+                    catch(RuntimeException ex)
+                    {
+                        Logger.getLogger(GraphActionListener.class.getName()).log(Level.WARNING, "Could not color the nodes", ex);
+                    }
+                }
+            }, RECOLOR_DELAY_MILLISECONDS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public double getMiddleOfVisibleInterval()
     {
         TimeInterval interval = dynamicModel.getVisibleInterval();
         double intervalStart = dynamicModel.getMin();
@@ -1007,23 +1850,38 @@ class GraphActionListener implements GraphListener
             intervalStart = interval.getLow();
         if(interval.getHigh() < intervalEnd)
             intervalEnd = interval.getHigh();
-        double intervalMiddle = (intervalStart+intervalEnd)/2.0;
-        this.colorAllNodesForMiddleOfInterval(intervalMiddle);         
+        return (intervalStart+intervalEnd)/2.0;
     }
     
     public void colorAllNodesForMiddleOfInterval(double intervalMiddle)
     {
-        for(Node node: graph.getNodes())
+        int timeStep = (int)intervalMiddle;
+        if(timeStep == lastColoredTimeStep)
+            return;
+        
+        //the nodes are copied out of the graph, so that no iterator keeps the read lock if a color cannot be set
+        graph.writeLock();
+        try
         {
-            int nodeId = node.getId() - nodeIdOffset;
-            int nodeColor = arrayOfNodeColors[nodeId][(int)intervalMiddle];
-            String nodeColorInHex = arrayOfColorsInHex[nodeColor];
-            Color color = new Color(Integer.parseInt(nodeColorInHex, 16));
-            float redValue = (float)color.getRed()/255;
-            float greenValue = (float)color.getGreen()/255;
-            float blueValue = (float)color.getBlue()/255;
-            node.getNodeData().setColor(redValue, greenValue, blueValue);
+            for(Node node: graph.getNodes().toArray())
+            {
+                //nodes added to the graph after the communities were found have no colors
+                int nodeIndex = graphNodeIndex.rowOf(node);
+                if(nodeIndex < 0)
+                    continue;
+                int nodeColor = nodeColors.get(nodeIndex, timeStep);
+                if(nodeColor != colorShownForNode[nodeIndex])
+                {
+                    node.getNodeData().setColor(redOfColor[nodeColor], greenOfColor[nodeColor], blueOfColor[nodeColor]);
+                    colorShownForNode[nodeIndex] = nodeColor;
+                }
+            }
+            lastColoredTimeStep = timeStep;
+        }
+        finally
+        {
+            graph.writeUnlock();
         }
     }
 
-}
\ No newline at end of file
+}
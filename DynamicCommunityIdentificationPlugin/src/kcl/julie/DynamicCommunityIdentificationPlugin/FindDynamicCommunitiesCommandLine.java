@@ -0,0 +1,369 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeRow;
+import org.gephi.data.attributes.api.AttributeValue;
+import org.gephi.data.attributes.type.DynamicType;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.dynamic.api.DynamicController;
+import org.gephi.dynamic.api.DynamicModel;
+import org.gephi.dynamic.api.DynamicModelEvent;
+import org.gephi.dynamic.api.DynamicModelListener;
+import org.gephi.graph.api.GraphController;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.io.importer.api.Container;
+import org.gephi.io.importer.api.EdgeDraftGetter;
+import org.gephi.io.importer.api.ImportController;
+import org.gephi.io.importer.api.NodeDraftGetter;
+import org.gephi.io.processor.plugin.DefaultProcessor;
+import org.gephi.project.api.ProjectController;
+import org.gephi.project.api.Workspace;
+import org.openide.util.Lookup;
+
+/*
+ * @author Julie Kauffman
+ * The FindDynamicCommunitiesCommandLine runs the plug-in without the Gephi window, so that dynamic GEXF
+ * files can be processed in batches on a server. The file is imported into a new Gephi workspace and
+ * FindDynamicCommunities is executed with the same parameters as in FindDynamicCommunitiesPanel. The
+ * report, Report.csv, Metrics.csv and, when asked, Report.dyct are written to the output directory,
+ * and the time and memory taken by each stage are printed. With --stream the file is still imported, since the
+ * communities are written to the nodes of the Gephi graph, and only the snapshot graphs of Gephi are not created.
+ * The Gephi platform modules must be on the classpath, for example:
+ *
+ *   java -cp "DynamicCommunityIdentificationPlugin.jar:gephi/modules/*:..."
+ *        kcl.julie.DynamicCommunityIdentificationPlugin.FindDynamicCommunitiesCommandLine
+ *        --sub-community --cutoff 0.3 --output results "Southern Women Network.GEXF"
+ */
+
+public class FindDynamicCommunitiesCommandLine
+{
+    public static final String NAME_OF_REPORT = "DynamicCommunities.html";
+    public static final long   TIME_BOUNDS_TIMEOUT_MILLISECONDS = 600000;
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        FindDynamicCommunities dynamicCommunities = new FindDynamicCommunities();
+        File inputFile;
+        File outputDirectory;
+        try
+        {
+            String[] files  = parseArguments(args, dynamicCommunities);
+            inputFile       = new File(files[0]);
+            outputDirectory = new File(files[1]);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        try
+        {
+            run(dynamicCommunities, inputFile, outputDirectory);
+        }
+        catch(Exception ex)
+        {
+            System.err.println("Could not find the dynamic communities of " + inputFile + ": " + ex);
+            ex.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    //Imports the file, finds the dynamic communities and writes the results to the output directory
+    public static void run(FindDynamicCommunities dynamicCommunities, File inputFile, File outputDirectory) throws IOException
+    {
+        if(!inputFile.isFile())
+            throw new IOException(inputFile + " does not exist");
+        if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new IOException("Could not create directory " + outputDirectory);
+        dynamicCommunities.setChosenDirectoryString(outputDirectory.getAbsolutePath());
+
+        long startOfImport = System.nanoTime();
+        ProjectController projectController = Lookup.getDefault().lookup(ProjectController.class);
+        if(projectController == null)
+            throw new IOException("The Gephi modules are not on the classpath");
+        projectController.newProject();
+        Workspace workspace = projectController.getCurrentWorkspace();
+
+        ImportController importController = Lookup.getDefault().lookup(ImportController.class);
+        Container container = importController.importFile(inputFile);
+        if(container == null)
+            throw new IOException("Gephi could not import " + inputFile);
+        double[] timeBounds = readTimeBounds(container);
+        importController.process(container, new DefaultProcessor(), workspace);
+
+        GraphModel graphModel         = Lookup.getDefault().lookup(GraphController.class).getModel();
+        AttributeModel attributeModel = Lookup.getDefault().lookup(AttributeController.class).getModel();
+        waitForTimeBounds(Lookup.getDefault().lookup(DynamicController.class), timeBounds, inputFile);
+        long elapsedMillisecondsOfImport = (System.nanoTime()-startOfImport)/1000000;
+        System.out.println("Imported " + graphModel.getGraph().getNodeCount() + " nodes and "
+                         + graphModel.getGraph().getEdgeCount() + " edges from " + inputFile);
+
+        dynamicCommunities.execute(graphModel, attributeModel);
+
+        File reportFile = new File(outputDirectory, NAME_OF_REPORT);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+        try
+        {
+            writer.write(dynamicCommunities.getReport());
+        }
+        finally
+        {
+            writer.close();
+        }
+        System.out.println("Results written to " + outputDirectory.getAbsolutePath());
+
+        long totalElapsedMilliseconds = elapsedMillisecondsOfImport;
+        System.out.println(String.format("%-20s %10s %10s %14s", "Stage", "Wall", "CPU", "Allocated"));
+        System.out.println(String.format("%-20s %7d ms", "import", elapsedMillisecondsOfImport));
+        for(StageMetrics.Stage stage : dynamicCommunities.getStageMetrics().getStages())
+        {
+            System.out.println(String.format("%-20s %7d ms %7d ms %11d MB", stage.getName(), stage.getWallNanoseconds()/1000000,
+                                             stage.getCpuNanoseconds()/1000000, stage.getAllocatedBytes()/(1024*1024)));
+            totalElapsedMilliseconds += stage.getWallNanoseconds()/1000000;
+        }
+        System.out.println(String.format("%-20s %7d ms", "total", totalElapsedMilliseconds));
+    }
+
+    //Returns the earliest and latest finite times of the spells and dynamic attributes of the imported nodes and edges,
+    //which are the time bounds the dynamic model will have once it has indexed them
+    static double[] readTimeBounds(Container container)
+    {
+        double[] timeBounds = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for(NodeDraftGetter node : container.getUnloader().getNodes())
+        {
+            addTimeBounds(timeBounds, node.getTimeInterval());
+            addTimeBounds(timeBounds, node.getAttributeRow());
+        }
+        for(EdgeDraftGetter edge : container.getUnloader().getEdges())
+        {
+            addTimeBounds(timeBounds, edge.getTimeInterval());
+            addTimeBounds(timeBounds, edge.getAttributeRow());
+        }
+        return timeBounds;
+    }
+
+    static void addTimeBounds(double[] timeBounds, AttributeRow row)
+    {
+        if(row == null)
+            return;
+        for(AttributeValue value : row.getValues())
+        {
+            if(value.getValue() instanceof DynamicType)
+                addTimeBounds(timeBounds, (DynamicType<?>)value.getValue());
+        }
+    }
+
+    static void addTimeBounds(double[] timeBounds, DynamicType<?> dynamicValue)
+    {
+        if(dynamicValue == null)
+            return;
+        for(Interval<?> interval : dynamicValue.getIntervals())
+        {
+            if(!Double.isInfinite(interval.getLow()))
+                timeBounds[0] = Math.min(timeBounds[0], interval.getLow());
+            if(!Double.isInfinite(interval.getHigh()))
+                timeBounds[1] = Math.max(timeBounds[1], interval.getHigh());
+        }
+    }
+
+    //Gephi indexes the imported spells on its own event thread, so the dynamic model only has its final time bounds
+    //some time after the import. The bounds of the file were read from the container, and the dynamic model is
+    //waited on until its bounds cover them, being woken whenever its minimum or maximum changes
+    static void waitForTimeBounds(DynamicController dynamicController, double[] timeBounds, File inputFile) throws IOException
+    {
+        if(timeBounds[0] > timeBounds[1])
+            throw new IOException(inputFile + " is not a dynamic network");
+        final DynamicModel dynamicModel = dynamicController.getModel();
+        final Object boundsChanged = new Object();
+        DynamicModelListener listener = new DynamicModelListener()
+        {
+            @Override
+            public void dynamicModelChanged(DynamicModelEvent event)
+            {
+                if((event.getEventType() == DynamicModelEvent.EventType.MIN_CHANGED)||(event.getEventType() == DynamicModelEvent.EventType.MAX_CHANGED))
+                {
+                    synchronized(boundsChanged)
+                    {
+                        boundsChanged.notifyAll();
+                    }
+                }
+            }
+        };
+        dynamicController.addModelListener(listener);
+        try
+        {
+            long deadline = System.currentTimeMillis()+TIME_BOUNDS_TIMEOUT_MILLISECONDS;
+            synchronized(boundsChanged)
+            {
+                while(!coversTimeBounds(dynamicModel, timeBounds))
+                {
+                    long remaining = deadline-System.currentTimeMillis();
+                    if(remaining <= 0)
+                        throw new IOException("Gephi did not index the times of " + inputFile + " within "
+                                            + TIME_BOUNDS_TIMEOUT_MILLISECONDS/1000 + " s");
+                    boundsChanged.wait(remaining);
+                }
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing " + inputFile);
+        }
+        finally
+        {
+            dynamicController.removeModelListener(listener);
+        }
+    }
+
+    //Before it has indexed anything, the dynamic model has infinite bounds, which would cover any others
+    static boolean coversTimeBounds(DynamicModel dynamicModel, double[] timeBounds)
+    {
+        double min = dynamicModel.getMin();
+        double max = dynamicModel.getMax();
+        return !Double.isInfinite(min) && !Double.isInfinite(max) && (min <= timeBounds[0]) && (max >= timeBounds[1]);
+    }
+
+    //Sets the parameters of dynamicCommunities from the options, and returns the input file and the output directory
+    public static String[] parseArguments(String[] args, FindDynamicCommunities dynamicCommunities)
+    {
+        String inputFile       = null;
+        String outputDirectory = ".";
+        boolean streamSnapshots = false;
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(option.equals("--cost-model"))
+                dynamicCommunities.setExecuteTBW(Boolean.TRUE);
+            else if(option.equals("--sub-community"))
+                dynamicCommunities.setExecuteTBW(Boolean.FALSE);
+            else if(option.equals("--visit"))
+                dynamicCommunities.setVisitCost(parseDouble(option, valueOf(args, ++i, option)));
+            else if(option.equals("--switch"))
+                dynamicCommunities.setSwitchCost(parseDouble(option, valueOf(args, ++i, option)));
+            else if(option.equals("--absent"))
+                dynamicCommunities.setAbsentCost(parseDouble(option, valueOf(args, ++i, option)));
+            else if(option.equals("--time"))
+                dynamicCommunities.setTimeParameter(parseInt(option, valueOf(args, ++i, option), 1));
+            else if(option.equals("--cutoff"))
+            {
+                double cutoff = parseDouble(option, valueOf(args, ++i, option));
+                if((cutoff < 0)||(cutoff > 1))
+                    throw new IllegalArgumentException("--cutoff must be between 0 and 1");
+                dynamicCommunities.setCutoffParameter(cutoff);
+            }
+            else if(option.equals("--threads"))
+                dynamicCommunities.setNumberOfThreads(parseInt(option, valueOf(args, ++i, option), 1));
+            else if(option.equals("--output"))
+                outputDirectory = valueOf(args, ++i, option);
+            else if(option.equals("--no-dynamic-programming"))
+                dynamicCommunities.setUseDynamicProgramming(Boolean.FALSE);
+            else if(option.equals("--no-trajectory-hashing"))
+                dynamicCommunities.setGroupTrajectoriesByHash(Boolean.FALSE);
+            else if(option.equals("--built-in-louvain"))
+                dynamicCommunities.setUseBuiltInLouvain(Boolean.TRUE);
+            else if(option.equals("--parallel"))
+                dynamicCommunities.setDetectGroupsInParallel(Boolean.TRUE);
+            else if(option.equals("--incremental"))
+                dynamicCommunities.setDetectGroupsIncrementally(Boolean.TRUE);
+            else if(option.equals("--approximate"))
+                dynamicCommunities.setUseApproximateMatching(Boolean.TRUE);
+            else if(option.equals("--no-array-matching"))
+                dynamicCommunities.setUseArrayMatching(Boolean.FALSE);
+            else if(option.equals("--optimal"))
+                dynamicCommunities.setUseOptimalMatching(Boolean.TRUE);
+            else if(option.equals("--summary"))
+                dynamicCommunities.setSummarizeReport(Boolean.TRUE);
+            else if(option.equals("--binary"))
+                dynamicCommunities.setExportBinaryTrajectories(Boolean.TRUE);
+            else if(option.equals("--mapped"))
+                dynamicCommunities.setUseMappedTrajectories(Boolean.TRUE);
+            else if(option.equals("--stream"))
+                streamSnapshots = true;
+            else if(option.startsWith("--"))
+                throw new IllegalArgumentException("Unknown option " + option);
+            else if(inputFile == null)
+                inputFile = option;
+            else
+                throw new IllegalArgumentException("Only one GEXF file can be given");
+        }
+        if(inputFile == null)
+            throw new IllegalArgumentException("No GEXF file was given");
+        if(streamSnapshots)
+            dynamicCommunities.setGexfFileToStream(new File(inputFile));
+        return new String[] {inputFile, outputDirectory};
+    }
+
+    static String valueOf(String[] args, int index, String option)
+    {
+        if(index >= args.length)
+            throw new IllegalArgumentException(option + " needs a value");
+        return args[index];
+    }
+
+    static double parseDouble(String option, String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch(NumberFormatException ex)
+        {
+            throw new IllegalArgumentException(option + " needs a number, not " + value);
+        }
+    }
+
+    static int parseInt(String option, String value, int minimum)
+    {
+        try
+        {
+            int number = Integer.parseInt(value);
+            if(number < minimum)
+                throw new IllegalArgumentException(option + " must be at least " + minimum);
+            return number;
+        }
+        catch(NumberFormatException ex)
+        {
+            throw new IllegalArgumentException(option + " needs a whole number, not " + value);
+        }
+    }
+
+    static void printUsage()
+    {
+        System.err.println("Usage: FindDynamicCommunitiesCommandLine [options] <dynamic GEXF file>");
+        System.err.println("  --cost-model | --sub-community   model to use (default: cost model)");
+        System.err.println("  --visit <cost> --switch <cost> --absent <cost>");
+        System.err.println("                                   costs of the cost model (default: 1)");
+        System.err.println("  --time <timesteps>               search parameter (default: 1)");
+        System.err.println("  --cutoff <jaccard>               Jaccard cutoff between 0 and 1 (default: 0.4)");
+        System.err.println("  --threads <number>               threads for coloring and group detection (default: 1)");
+        System.err.println("  --output <directory>             directory for the results (default: .)");
+        System.err.println("  --no-dynamic-programming         use the recursive search of the cost model");
+        System.err.println("  --no-trajectory-hashing          compare all pairs of nodes in the sub-community model");
+        System.err.println("  --built-in-louvain               find groups with the built-in Louvain method");
+        System.err.println("  --parallel                       find the groups of several timesteps at once");
+        System.err.println("  --incremental                    start each timestep from the groups of the previous one");
+        System.err.println("  --approximate                    match groups with MinHash signatures");
+        System.err.println("  --no-array-matching              keep a priority queue of objects for each group when matching");
+        System.err.println("  --optimal                        match groups for the highest total Jaccard index");
+        System.err.println("  --summary                        write a summary report with paged node tables");
+        System.err.println("  --binary                         also write Report.dyct");
+        System.err.println("  --mapped                         keep the colors in memory-mapped files in the output directory");
+        System.err.println("  --stream                         read the snapshots for group detection directly from");
+        System.err.println("                                   the file, with the built-in Louvain method. The file is");
+        System.err.println("                                   still imported into Gephi, so this only saves the memory");
+        System.err.println("                                   of Gephi's snapshot graphs");
+    }
+}
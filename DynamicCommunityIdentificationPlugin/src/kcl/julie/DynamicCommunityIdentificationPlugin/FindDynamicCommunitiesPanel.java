@@ -8,6 +8,7 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFormattedTextField;
 import javax.swing.JLabel;
@@ -30,10 +31,22 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
     private JFormattedTextField switchCostTextField;
     private JFormattedTextField timeParameterTextField;
     private JFormattedTextField cutoffParameterTextField;
+    private JFormattedTextField threadsTextField;
     private JTextField chosenDirectoryTextField;
     private JXHeader header;
     private JRadioButton subCommunityModelButton;
     private JRadioButton costModelButton;
+    private JCheckBox dynamicProgrammingCheckBox;
+    private JCheckBox builtInLouvainCheckBox;
+    private JCheckBox parallelDetectionCheckBox;
+    private JCheckBox incrementalDetectionCheckBox;
+    private JCheckBox approximateMatchingCheckBox;
+    private JCheckBox arrayMatchingCheckBox;
+    private JCheckBox optimalMatchingCheckBox;
+    private JCheckBox trajectoryHashingCheckBox;
+    private JCheckBox summaryReportCheckBox;
+    private JCheckBox binaryExportCheckBox;
+    private JCheckBox mappedTrajectoriesCheckBox;
     //private String chosenDirectoryString;
     private FileChooserListener fcListener;
     
@@ -81,6 +94,94 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
             return Boolean.FALSE;
     }
     
+    public Boolean getUseDynamicProgramming()
+    {
+        if(dynamicProgrammingCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getUseBuiltInLouvain()
+    {
+        if(builtInLouvainCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getDetectGroupsInParallel()
+    {
+        if(parallelDetectionCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getDetectGroupsIncrementally()
+    {
+        if(incrementalDetectionCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getUseApproximateMatching()
+    {
+        if(approximateMatchingCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getUseArrayMatching()
+    {
+        if(arrayMatchingCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getUseOptimalMatching()
+    {
+        if(optimalMatchingCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getGroupTrajectoriesByHash()
+    {
+        if(trajectoryHashingCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getSummarizeReport()
+    {
+        if(summaryReportCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getExportBinaryTrajectories()
+    {
+        if(binaryExportCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
+    public Boolean getUseMappedTrajectories()
+    {
+        if(mappedTrajectoriesCheckBox.isSelected())
+            return Boolean.TRUE;
+        else
+            return Boolean.FALSE;
+    }
+    
     public int getTimeParameter()
     {
         try
@@ -103,6 +204,17 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         }
     }
     
+    public int getNumberOfThreads()
+    {
+        try
+        {
+            return Math.max(1, Integer.parseInt(threadsTextField.getText()));
+        } catch(Exception e)
+        {
+            return 1;
+        }
+    }
+    
     public String getChosenDirectoryString()
     {
         //return fcListener.getDirectoryName();
@@ -126,12 +238,48 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
             subCommunityModelButton.setSelected(Boolean.TRUE);
     }
     
+    public void setUseDynamicProgramming(Boolean bool)
+    {   dynamicProgrammingCheckBox.setSelected(bool);}
+    
+    public void setUseBuiltInLouvain(Boolean bool)
+    {   builtInLouvainCheckBox.setSelected(bool);}
+    
+    public void setDetectGroupsInParallel(Boolean bool)
+    {   parallelDetectionCheckBox.setSelected(bool);}
+    
+    public void setDetectGroupsIncrementally(Boolean bool)
+    {   incrementalDetectionCheckBox.setSelected(bool);}
+    
+    public void setUseApproximateMatching(Boolean bool)
+    {   approximateMatchingCheckBox.setSelected(bool);}
+    
+    public void setUseArrayMatching(Boolean bool)
+    {   arrayMatchingCheckBox.setSelected(bool);}
+    
+    public void setUseOptimalMatching(Boolean bool)
+    {   optimalMatchingCheckBox.setSelected(bool);}
+    
+    public void setGroupTrajectoriesByHash(Boolean bool)
+    {   trajectoryHashingCheckBox.setSelected(bool);}
+    
+    public void setSummarizeReport(Boolean bool)
+    {   summaryReportCheckBox.setSelected(bool);}
+    
+    public void setExportBinaryTrajectories(Boolean bool)
+    {   binaryExportCheckBox.setSelected(bool);}
+    
+    public void setUseMappedTrajectories(Boolean bool)
+    {   mappedTrajectoriesCheckBox.setSelected(bool);}
+    
     public void setTimeParameter(int timeParam)
     {   timeParameterTextField.setText(Integer.toString(timeParam));}
     
     public void setCutoffParameter(double cutoffParam)
     {   cutoffParameterTextField.setText(Double.toString(cutoffParam));}
     
+    public void setNumberOfThreads(int threads)
+    {   threadsTextField.setText(Integer.toString(threads));}
+    
     public void setChosenDirectoryString(String str)
     {   chosenDirectoryTextField.setText(str);}
     
@@ -142,6 +290,7 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         switchCostTextField      = new JFormattedTextField(new Double(1.0));
         timeParameterTextField   = new JFormattedTextField(new Integer(1));
         cutoffParameterTextField = new JFormattedTextField(new Double(0.4));
+        threadsTextField         = new JFormattedTextField(new Integer(1));
         chosenDirectoryTextField = new JTextField(" ");
         header              = new JXHeader();
         JLabel visitLabel   = new JLabel("Visiting cost:");
@@ -149,6 +298,7 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         JLabel switchLabel  = new JLabel("Switching cost:");
         JLabel timeLabel    = new JLabel("Search parameter");   
         JLabel cutoffLabel = new JLabel("Jaccard cutoff parameter");
+        JLabel threadsLabel = new JLabel("Number of threads");
         
         JButton fileChooserButton = new JButton("Choose file directory");
         JFileChooser fileChooser = new JFileChooser();
@@ -163,6 +313,18 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         subCommunityModelButton    = new JRadioButton(subCommunityNetworkString);
         costModelButton            = new JRadioButton(costNetworkString);
         
+        dynamicProgrammingCheckBox = new JCheckBox("dynamic programming", true);
+        builtInLouvainCheckBox     = new JCheckBox("built-in Louvain", false);
+        parallelDetectionCheckBox  = new JCheckBox("parallel group detection", false);
+        incrementalDetectionCheckBox = new JCheckBox("incremental group detection", false);
+        approximateMatchingCheckBox  = new JCheckBox("approximate group matching", false);
+        arrayMatchingCheckBox        = new JCheckBox("array group matching", true);
+        optimalMatchingCheckBox      = new JCheckBox("optimal group matching", false);
+        trajectoryHashingCheckBox    = new JCheckBox("trajectory hashing", true);
+        summaryReportCheckBox        = new JCheckBox("summary report", false);
+        binaryExportCheckBox         = new JCheckBox("binary trajectory export", false);
+        mappedTrajectoriesCheckBox   = new JCheckBox("memory-mapped trajectories", false);
+        
         subCommunityModelButton.setActionCommand(subCommunityNetworkString);
         costModelButton.setActionCommand(costNetworkString);
         
@@ -173,6 +335,53 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
                                                     + "<br>of each node is decided by the minimization of a cost function"
                                                     + "<br>that uses the cost parameters given for the behaviours of"
                                                     + "<br>switching, visiting, and absence.</html>");
+        dynamicProgrammingCheckBox.setToolTipText("<html>When selected, the cost model finds the optimal coloring of each"
+                                                    + "<br>node with dynamic programming, which is much faster on networks"
+                                                    + "<br>with many timesteps. When cleared, the original recursive search"
+                                                    + "<br>is used. Both give the same results.</html>");
+        builtInLouvainCheckBox.setToolTipText("<html>When selected, the groups at each timestep are found with a"
+                                                + "<br>built-in Louvain method instead of Gephi's Modularity statistic."
+                                                + "<br>It is much faster on large networks and does not change the"
+                                                + "<br>modularity class column.</html>");
+        parallelDetectionCheckBox.setToolTipText("<html>When selected, the groups are found with the built-in Louvain"
+                                                   + "<br>method on several timesteps at once, using the number of"
+                                                   + "<br>threads below.</html>");
+        incrementalDetectionCheckBox.setToolTipText("<html>When selected, the groups are found with the built-in Louvain"
+                                                      + "<br>method starting from the groups of the previous timestep, and only"
+                                                      + "<br>nodes whose edges have changed are re-evaluated. This is fastest"
+                                                      + "<br>when consecutive timesteps are similar. The report shows how many"
+                                                      + "<br>nodes were re-evaluated at each timestep.</html>");
+        approximateMatchingCheckBox.setToolTipText("<html>When selected, groups are matched across timesteps by comparing"
+                                                     + "<br>only the earlier groups that have similar MinHash signatures, instead"
+                                                     + "<br>of every earlier group that shares a node. This is faster with a large"
+                                                     + "<br>search parameter, but a few matches can be missed. The report shows"
+                                                     + "<br>the estimated recall against exact matching.</html>");
+        arrayMatchingCheckBox.setToolTipText("<html>When selected, the earlier groups that each group could be matched to"
+                                               + "<br>are kept in arrays for the whole timestep, instead of in a priority queue"
+                                               + "<br>of objects for each group. This uses much less memory on networks with"
+                                               + "<br>many groups. Both give the same communities.</html>");
+        optimalMatchingCheckBox.setToolTipText("<html>When selected, the groups of each timestep are matched to earlier groups"
+                                                 + "<br>so that the total Jaccard index of the matched groups is as high as possible,"
+                                                 + "<br>instead of matching the most similar groups first. A group can then keep a"
+                                                 + "<br>less similar community so that another group keeps its own. The report"
+                                                 + "<br>compares the total with that of the greedy matching.</html>");
+        trajectoryHashingCheckBox.setToolTipText("<html>When selected, the sub-community model finds nodes with the same"
+                                                   + "<br>group at every timestep by hashing the groups of each node, instead"
+                                                   + "<br>of comparing every pair of nodes. This is much faster on networks"
+                                                   + "<br>with many nodes. Both give the same communities.</html>");
+        summaryReportCheckBox.setToolTipText("<html>When selected, the report shows statistics about the whole network"
+                                               + "<br>instead of one column per node: the number of communities at each"
+                                               + "<br>timestep, the sizes of communities and groups, the total of each cost"
+                                               + "<br>and the nodes with the highest cost. The table for each node is written"
+                                               + "<br>to pages of " + FindDynamicCommunities.NODES_PER_REPORT_PAGE + " nodes in the chosen directory.</html>");
+        binaryExportCheckBox.setToolTipText("<html>When selected, the community and group of each node at each timestep"
+                                              + "<br>and the cost of each node are also written to Report.dyct in the chosen"
+                                              + "<br>directory. This binary file is much smaller than Report.csv and can be"
+                                              + "<br>read back quickly with BinaryTrajectoryReader.</html>");
+        mappedTrajectoriesCheckBox.setToolTipText("<html>When selected, the community and group of each node at each timestep"
+                                                    + "<br>are kept in temporary memory-mapped files in the chosen directory instead"
+                                                    + "<br>of in Gephi's memory. This is slower, but allows networks whose colors do"
+                                                    + "<br>not fit in the memory given to Gephi. The results are the same.</html>");
         visitLabel.setToolTipText("<html>A visiting cost is incurred by an individual node"
                                  + "<br>at each timestep during which that node visits a"
                                  + "<br>community of which it is not a member</html>");
@@ -188,9 +397,14 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
                                  + "<br>Index that will be accepted for two groups to be considered"
                                  + "<br>part of the same community. A higher number requires two"
                                  + "<br>groups to me more similar. This parameter must be between 0 and 1.</html>");
+        threadsLabel.setToolTipText("<html>The number of threads used to color the nodes with the"
+                                 + "<br>cost model and, with parallel group detection, to find the"
+                                 + "<br>groups of several timesteps at once. Each node and each"
+                                 + "<br>timestep is handled independently. The results do not depend"
+                                 + "<br>on this number.</html>");
         
         //ActionListener for RadioButtons
-        RadioListener listener = new RadioListener(visitCostTextField, switchCostTextField, absentCostTextField, visitLabel, switchLabel, absentLabel);
+        RadioListener listener = new RadioListener(visitCostTextField, switchCostTextField, absentCostTextField, visitLabel, switchLabel, absentLabel, dynamicProgrammingCheckBox, trajectoryHashingCheckBox);
         subCommunityModelButton.addActionListener(listener);
         costModelButton.addActionListener(listener);
         
@@ -199,9 +413,20 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         groupOfButtons.add(subCommunityModelButton);
         
         JPanel panelOfButtons = new JPanel();
-        panelOfButtons.setLayout(new GridLayout(3,1));
+        panelOfButtons.setLayout(new GridLayout(13,1));
         panelOfButtons.add(costModelButton);
         panelOfButtons.add(subCommunityModelButton);
+        panelOfButtons.add(dynamicProgrammingCheckBox);
+        panelOfButtons.add(trajectoryHashingCheckBox);
+        panelOfButtons.add(builtInLouvainCheckBox);
+        panelOfButtons.add(parallelDetectionCheckBox);
+        panelOfButtons.add(incrementalDetectionCheckBox);
+        panelOfButtons.add(approximateMatchingCheckBox);
+        panelOfButtons.add(arrayMatchingCheckBox);
+        panelOfButtons.add(optimalMatchingCheckBox);
+        panelOfButtons.add(summaryReportCheckBox);
+        panelOfButtons.add(binaryExportCheckBox);
+        panelOfButtons.add(mappedTrajectoriesCheckBox);
         
         header.setTitle("Dynamic community detection:");
         header.setDescription("Identifies dynamic communities using the cost and sub-community models.");       
@@ -215,8 +440,9 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         absentLabel.setHorizontalAlignment(JLabel.CENTER);
         switchLabel.setHorizontalAlignment(JLabel.CENTER);
         timeLabel.setHorizontalAlignment(JLabel.CENTER);
+        threadsLabel.setHorizontalAlignment(JLabel.CENTER);
         
-        costPanel.setLayout(new GridLayout(7,4));
+        costPanel.setLayout(new GridLayout(8,4));
         costPanel.add(new JLabel());
         costPanel.add(visitLabel);
         costPanel.add(visitCostTextField);
@@ -238,6 +464,10 @@ public class FindDynamicCommunitiesPanel extends javax.swing.JPanel
         costPanel.add(cutoffParameterTextField);
         costPanel.add(new JLabel());
         costPanel.add(new JLabel());
+        costPanel.add(threadsLabel);
+        costPanel.add(threadsTextField);
+        costPanel.add(new JLabel());
+        costPanel.add(new JLabel());
         costPanel.add(new JLabel());
         costPanel.add(new JLabel());
         costPanel.add(new JLabel());
@@ -292,8 +522,10 @@ class RadioListener implements ActionListener
     private JLabel visitLabel;
     private JLabel switchLabel;
     private JLabel absenceLabel;
+    private JCheckBox dynamicProgrammingCheckBox;
+    private JCheckBox trajectoryHashingCheckBox;
     
-    public RadioListener(JTextField visitTextField, JTextField switchTextField, JTextField absenceTextField, JLabel visitLabel, JLabel switchLabel, JLabel absenceLabel)
+    public RadioListener(JTextField visitTextField, JTextField switchTextField, JTextField absenceTextField, JLabel visitLabel, JLabel switchLabel, JLabel absenceLabel, JCheckBox dynamicProgrammingCheckBox, JCheckBox trajectoryHashingCheckBox)
     {
         this.visitTextField = visitTextField;
         this.switchTextField = switchTextField;
@@ -301,6 +533,8 @@ class RadioListener implements ActionListener
         this.visitLabel = visitLabel;
         this.switchLabel = switchLabel;
         this.absenceLabel = absenceLabel;
+        this.dynamicProgrammingCheckBox = dynamicProgrammingCheckBox;
+        this.trajectoryHashingCheckBox = trajectoryHashingCheckBox;
     }
     
     @Override
@@ -316,6 +550,8 @@ class RadioListener implements ActionListener
             visitLabel.setEnabled(true);
             switchLabel.setEnabled(true);
             absenceLabel.setEnabled(true);
+            dynamicProgrammingCheckBox.setEnabled(true);
+            trajectoryHashingCheckBox.setEnabled(false);
         }
         else
         {
@@ -325,6 +561,8 @@ class RadioListener implements ActionListener
             visitLabel.setEnabled(false);
             switchLabel.setEnabled(false);
             absenceLabel.setEnabled(false);
+            dynamicProgrammingCheckBox.setEnabled(false);
+            trajectoryHashingCheckBox.setEnabled(true);
         }
     }
 }
\ No newline at end of file
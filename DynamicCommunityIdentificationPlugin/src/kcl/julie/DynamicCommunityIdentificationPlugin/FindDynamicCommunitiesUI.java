@@ -36,8 +36,20 @@ public class FindDynamicCommunitiesUI implements StatisticsUI
             panel.setAbsentCost(dynamicCommunitiesStatistic.getAbsentCost());
             panel.setSwitchCost(dynamicCommunitiesStatistic.getSwitchCost());
             panel.setExecuteTBW(dynamicCommunitiesStatistic.getExecuteTBW());
+            panel.setUseDynamicProgramming(dynamicCommunitiesStatistic.getUseDynamicProgramming());
+            panel.setUseBuiltInLouvain(dynamicCommunitiesStatistic.getUseBuiltInLouvain());
+            panel.setDetectGroupsInParallel(dynamicCommunitiesStatistic.getDetectGroupsInParallel());
+            panel.setDetectGroupsIncrementally(dynamicCommunitiesStatistic.getDetectGroupsIncrementally());
+            panel.setUseApproximateMatching(dynamicCommunitiesStatistic.getUseApproximateMatching());
+            panel.setUseArrayMatching(dynamicCommunitiesStatistic.getUseArrayMatching());
+            panel.setUseOptimalMatching(dynamicCommunitiesStatistic.getUseOptimalMatching());
+            panel.setGroupTrajectoriesByHash(dynamicCommunitiesStatistic.getGroupTrajectoriesByHash());
+            panel.setSummarizeReport(dynamicCommunitiesStatistic.getSummarizeReport());
+            panel.setExportBinaryTrajectories(dynamicCommunitiesStatistic.getExportBinaryTrajectories());
+            panel.setUseMappedTrajectories(dynamicCommunitiesStatistic.getUseMappedTrajectories());
             panel.setTimeParameter(dynamicCommunitiesStatistic.getTimeParameter());
             panel.setCutoffParameter(dynamicCommunitiesStatistic.getCutoffParameter());
+            panel.setNumberOfThreads(dynamicCommunitiesStatistic.getNumberOfThreads());
             panel.setChosenDirectoryString(dynamicCommunitiesStatistic.getChosenDirectoryString());
         }
     }
@@ -51,8 +63,20 @@ public class FindDynamicCommunitiesUI implements StatisticsUI
             dynamicCommunitiesStatistic.setVisitCost(panel.getVisitCost());
             dynamicCommunitiesStatistic.setAbsentCost(panel.getAbsentCost());
             dynamicCommunitiesStatistic.setExecuteTBW(panel.getExecuteTBW());
+            dynamicCommunitiesStatistic.setUseDynamicProgramming(panel.getUseDynamicProgramming());
+            dynamicCommunitiesStatistic.setUseBuiltInLouvain(panel.getUseBuiltInLouvain());
+            dynamicCommunitiesStatistic.setDetectGroupsInParallel(panel.getDetectGroupsInParallel());
+            dynamicCommunitiesStatistic.setDetectGroupsIncrementally(panel.getDetectGroupsIncrementally());
+            dynamicCommunitiesStatistic.setUseApproximateMatching(panel.getUseApproximateMatching());
+            dynamicCommunitiesStatistic.setUseArrayMatching(panel.getUseArrayMatching());
+            dynamicCommunitiesStatistic.setUseOptimalMatching(panel.getUseOptimalMatching());
+            dynamicCommunitiesStatistic.setGroupTrajectoriesByHash(panel.getGroupTrajectoriesByHash());
+            dynamicCommunitiesStatistic.setSummarizeReport(panel.getSummarizeReport());
+            dynamicCommunitiesStatistic.setExportBinaryTrajectories(panel.getExportBinaryTrajectories());
+            dynamicCommunitiesStatistic.setUseMappedTrajectories(panel.getUseMappedTrajectories());
             dynamicCommunitiesStatistic.setTimeParameter(panel.getTimeParameter());
             dynamicCommunitiesStatistic.setCutoffParameter(panel.getCutoffParameter());
+            dynamicCommunitiesStatistic.setNumberOfThreads(panel.getNumberOfThreads());
             dynamicCommunitiesStatistic.setChosenDirectoryString(panel.getChosenDirectoryString());
             settings.save(dynamicCommunitiesStatistic);
         }
@@ -91,7 +115,19 @@ public class FindDynamicCommunitiesUI implements StatisticsUI
         private double absentCost=1;
         private int timeParameter=1;
         private Boolean executeTBW=Boolean.TRUE;
+        private Boolean useDynamicProgramming=Boolean.TRUE;
+        private Boolean useBuiltInLouvain=Boolean.FALSE;
+        private Boolean detectGroupsInParallel=Boolean.FALSE;
+        private Boolean detectGroupsIncrementally=Boolean.FALSE;
+        private Boolean useApproximateMatching=Boolean.FALSE;
+        private Boolean useArrayMatching=Boolean.TRUE;
+        private Boolean useOptimalMatching=Boolean.FALSE;
+        private Boolean groupTrajectoriesByHash=Boolean.TRUE;
+        private Boolean summarizeReport=Boolean.FALSE;
+        private Boolean exportBinaryTrajectories=Boolean.FALSE;
+        private Boolean useMappedTrajectories=Boolean.FALSE;
         private double cutoffParameter = 0.4;
+        private int numberOfThreads = 1;
         private String chosenDirectoryString;
 
         private void save(FindDynamicCommunities stat) 
@@ -100,8 +136,20 @@ public class FindDynamicCommunitiesUI implements StatisticsUI
             this.switchCost = stat.getSwitchCost();
             this.absentCost = stat.getAbsentCost();
             this.executeTBW = stat.getExecuteTBW();
+            this.useDynamicProgramming = stat.getUseDynamicProgramming();
+            this.useBuiltInLouvain = stat.getUseBuiltInLouvain();
+            this.detectGroupsInParallel = stat.getDetectGroupsInParallel();
+            this.detectGroupsIncrementally = stat.getDetectGroupsIncrementally();
+            this.useApproximateMatching = stat.getUseApproximateMatching();
+            this.useArrayMatching = stat.getUseArrayMatching();
+            this.useOptimalMatching = stat.getUseOptimalMatching();
+            this.groupTrajectoriesByHash = stat.getGroupTrajectoriesByHash();
+            this.summarizeReport = stat.getSummarizeReport();
+            this.exportBinaryTrajectories = stat.getExportBinaryTrajectories();
+            this.useMappedTrajectories = stat.getUseMappedTrajectories();
             this.timeParameter = stat.getTimeParameter();
             this.cutoffParameter = stat.getCutoffParameter();
+            this.numberOfThreads = stat.getNumberOfThreads();
             this.chosenDirectoryString = stat.getChosenDirectoryString();
         }
 
@@ -111,8 +159,20 @@ public class FindDynamicCommunitiesUI implements StatisticsUI
             stat.setSwitchCost(switchCost);
             stat.setAbsentCost(absentCost);
             stat.setExecuteTBW(executeTBW);
+            stat.setUseDynamicProgramming(useDynamicProgramming);
+            stat.setUseBuiltInLouvain(useBuiltInLouvain);
+            stat.setDetectGroupsInParallel(detectGroupsInParallel);
+            stat.setDetectGroupsIncrementally(detectGroupsIncrementally);
+            stat.setUseApproximateMatching(useApproximateMatching);
+            stat.setUseArrayMatching(useArrayMatching);
+            stat.setUseOptimalMatching(useOptimalMatching);
+            stat.setGroupTrajectoriesByHash(groupTrajectoriesByHash);
+            stat.setSummarizeReport(summarizeReport);
+            stat.setExportBinaryTrajectories(exportBinaryTrajectories);
+            stat.setUseMappedTrajectories(useMappedTrajectories);
             stat.setTimeParameter(timeParameter);
             stat.setCutoffParameter(cutoffParameter);
+            stat.setNumberOfThreads(numberOfThreads);
             stat.setChosenDirectoryString(chosenDirectoryString);
         }
     }
@@ -0,0 +1,440 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.gephi.graph.api.Node;
+
+/*
+ * @author Julie Kauffman
+ * The GexfSpellReader reads the nodes, edges and spells of a dynamic GEXF file with a
+ * streaming XML parser, without building Gephi's dynamic graph, and then gives the
+ * SnapshotAdjacency of each timestep in turn. Only the spells are kept, in primitive
+ * arrays, so the memory used grows with the size of the file and not with the number
+ * of timesteps. The snapshots are found by sweeping through time: the spells are sorted
+ * by start, and the spells that contain the current timestep are kept in an active
+ * list, so each snapshot only costs as much as the nodes and edges present in it.
+ *
+ * A node or an edge without spells, or start and end attributes, is present at all
+ * times, and an edge is only present when both of its nodes are, as in Gephi. Edges are
+ * read the way Gephi's importer reads them: self loops are left out, and a second edge
+ * between the same nodes adds its weight to the first one and keeps the spells of the
+ * first. Nodes and edges are kept in the order of the file. Only numeric times are
+ * supported.
+ */
+
+public class GexfSpellReader
+{
+    List<String>         idOfNode      = new ArrayList<String>();
+    Map<String, Integer> indexOfNodeId = new HashMap<String, Integer>();
+    int[]    sourceOfEdge = new int[16];
+    int[]    targetOfEdge = new int[16];
+    double[] weightOfEdge = new double[16];
+    int      numberOfEdges;
+    Spells   nodeSpells = new Spells();
+    Spells   edgeSpells = new Spells();
+    int[]    localIndexOfNode;
+    int      lastTimeStep = Integer.MIN_VALUE;
+
+    public GexfSpellReader(File file) throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        try
+        {
+            Reader text = new InputStreamReader(in, readDeclaredCharset(in));
+            this.parse(XMLInputFactory.newInstance().createXMLStreamReader(text));
+        }
+        catch(XMLStreamException ex)
+        {
+            throw new IOException("Could not read " + file + ": " + ex.getMessage(), ex);
+        }
+        finally
+        {
+            in.close();
+        }
+        nodeSpells.prepareSweep(idOfNode.size());
+        edgeSpells.prepareSweep(numberOfEdges);
+        localIndexOfNode = new int[idOfNode.size()];
+        Arrays.fill(localIndexOfNode, -1);
+    }
+
+    //Files written by hand often declare encodings such as "UTF8", which Java knows but the XML parser rejects,
+    //so the encoding is read from the declaration here and the parser is given the decoded text. A byte order
+    //mark is skipped.
+    static Charset readDeclaredCharset(InputStream in) throws IOException
+    {
+        in.mark(256);
+        byte[] start = new byte[256];
+        int length = 0;
+        int read;
+        while((length < start.length)&&((read = in.read(start, length, start.length-length)) > 0))
+            length += read;
+        in.reset();
+        int byteOrderMark = 0;
+        if((length >= 3)&&(start[0] == (byte)0xEF)&&(start[1] == (byte)0xBB)&&(start[2] == (byte)0xBF))
+            byteOrderMark = 3;
+        in.skip(byteOrderMark);
+        
+        Matcher matcher = Pattern.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']")
+                                 .matcher(new String(start, 0, length, "ISO-8859-1").substring(byteOrderMark));
+        if(matcher.find())
+        {
+            try
+            {
+                return Charset.forName(matcher.group(1));
+            }
+            catch(IllegalArgumentException ex)
+            {
+                throw new IOException("Unknown encoding " + matcher.group(1));
+            }
+        }
+        return Charset.forName("UTF-8");
+    }
+
+    void parse(XMLStreamReader reader) throws XMLStreamException, IOException
+    {
+        //nodes can be nested in GEXF hierarchies, so the node being read is kept on a stack
+        int[]     nodeStack       = new int[8];
+        boolean[] nodeHasSpells   = new boolean[8];
+        int       depthOfNodes    = 0;
+        int       currentEdge     = -1;
+        boolean   edgeHasSpells   = false;
+        boolean   insideEdge      = false;
+        Map<Long, Integer> edgeOfPair = new HashMap<Long, Integer>();
+        boolean   isDirected      = false;
+
+        while(reader.hasNext())
+        {
+            int event = reader.next();
+            if(event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = reader.getLocalName();
+                if(name.equals("graph"))
+                {
+                    String timeFormat = reader.getAttributeValue(null, "timeformat");
+                    if((timeFormat != null)&&!timeFormat.equals("double")&&!timeFormat.equals("integer")&&!timeFormat.equals("float"))
+                        throw new IOException("Only numeric times are supported, not " + timeFormat);
+                    isDirected = "directed".equals(reader.getAttributeValue(null, "defaultedgetype"));
+                }
+                else if(name.equals("node"))
+                {
+                    String id = reader.getAttributeValue(null, "id");
+                    if(indexOfNodeId.containsKey(id))
+                        throw new IOException("The node " + id + " appears twice");
+                    int node = idOfNode.size();
+                    idOfNode.add(id);
+                    indexOfNodeId.put(id, node);
+                    if(depthOfNodes == nodeStack.length)
+                    {
+                        nodeStack     = Arrays.copyOf(nodeStack, 2*depthOfNodes);
+                        nodeHasSpells = Arrays.copyOf(nodeHasSpells, 2*depthOfNodes);
+                    }
+                    nodeStack[depthOfNodes]     = node;
+                    nodeHasSpells[depthOfNodes] = this.addSpellFromAttributes(reader, nodeSpells, node);
+                    depthOfNodes++;
+                }
+                else if(name.equals("edge"))
+                {
+                    insideEdge    = true;
+                    currentEdge   = this.addEdge(reader, edgeOfPair, isDirected);
+                    edgeHasSpells = (currentEdge >= 0) && this.addSpellFromAttributes(reader, edgeSpells, currentEdge);
+                }
+                else if(name.equals("spell"))
+                {
+                    if(insideEdge)
+                    {
+                        if(currentEdge >= 0)
+                            edgeHasSpells |= this.addSpellFromAttributes(reader, edgeSpells, currentEdge);
+                    }
+                    else if(depthOfNodes > 0)
+                        nodeHasSpells[depthOfNodes-1] |= this.addSpellFromAttributes(reader, nodeSpells, nodeStack[depthOfNodes-1]);
+                }
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT)
+            {
+                String name = reader.getLocalName();
+                if(name.equals("node"))
+                {
+                    depthOfNodes--;
+                    if(!nodeHasSpells[depthOfNodes])
+                        nodeSpells.add(nodeStack[depthOfNodes], Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false, false);
+                }
+                else if(name.equals("edge"))
+                {
+                    if((currentEdge >= 0)&&!edgeHasSpells)
+                        edgeSpells.add(currentEdge, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false, false);
+                    insideEdge  = false;
+                    currentEdge = -1;
+                }
+            }
+        }
+        reader.close();
+    }
+
+    //Adds the edge and returns its index. As in Gephi's importer, self loops are left out, and an edge between
+    //two nodes that already have one only adds its weight to the first edge. In both cases -1 is returned.
+    int addEdge(XMLStreamReader reader, Map<Long, Integer> edgeOfPair, boolean isDirected) throws IOException
+    {
+        Integer source = indexOfNodeId.get(reader.getAttributeValue(null, "source"));
+        Integer target = indexOfNodeId.get(reader.getAttributeValue(null, "target"));
+        if((source == null)||(target == null))
+            throw new IOException("The edge " + reader.getAttributeValue(null, "id") + " refers to a node that does not exist");
+        if(source.intValue() == target.intValue())
+            return -1;
+        
+        String weightValue = reader.getAttributeValue(null, "weight");
+        double weight = (weightValue == null) ? 1.0 : parseNumber(weightValue);
+        String type = reader.getAttributeValue(null, "type");
+        boolean edgeIsDirected = (type == null) ? isDirected : type.equals("directed");
+        long pair = edgeIsDirected ? ((long)source << 32) | target 
+                                   : ((long)Math.min(source, target) << 32) | Math.max(source, target);
+        Integer existingEdge = edgeOfPair.get(pair);
+        if(existingEdge != null)
+        {
+            weightOfEdge[existingEdge] += weight;
+            return -1;
+        }
+        edgeOfPair.put(pair, numberOfEdges);
+
+        if(numberOfEdges == sourceOfEdge.length)
+        {
+            sourceOfEdge = Arrays.copyOf(sourceOfEdge, 2*numberOfEdges);
+            targetOfEdge = Arrays.copyOf(targetOfEdge, 2*numberOfEdges);
+            weightOfEdge = Arrays.copyOf(weightOfEdge, 2*numberOfEdges);
+        }
+        sourceOfEdge[numberOfEdges] = source;
+        targetOfEdge[numberOfEdges] = target;
+        weightOfEdge[numberOfEdges] = weight;
+        return numberOfEdges++;
+    }
+
+    //Adds a spell from the start and end attributes of the element, and returns false if it has neither
+    boolean addSpellFromAttributes(XMLStreamReader reader, Spells spells, int owner) throws IOException
+    {
+        String start     = reader.getAttributeValue(null, "start");
+        String startOpen = reader.getAttributeValue(null, "startopen");
+        String end       = reader.getAttributeValue(null, "end");
+        String endOpen   = reader.getAttributeValue(null, "endopen");
+        if((start == null)&&(startOpen == null)&&(end == null)&&(endOpen == null))
+            return false;
+        spells.add(owner,
+                   (start != null) ? parseNumber(start) : (startOpen != null) ? parseNumber(startOpen) : Double.NEGATIVE_INFINITY,
+                   (end != null) ? parseNumber(end) : (endOpen != null) ? parseNumber(endOpen) : Double.POSITIVE_INFINITY,
+                   (start == null)&&(startOpen != null),
+                   (end == null)&&(endOpen != null));
+        return true;
+    }
+
+    static double parseNumber(String value) throws IOException
+    {
+        try
+        {
+            return Double.parseDouble(value.trim());
+        }
+        catch(NumberFormatException ex)
+        {
+            throw new IOException("Only numeric values are supported, not " + value);
+        }
+    }
+
+    public int getNumberOfNodes()
+    {   return idOfNode.size();}
+
+    public int getNumberOfEdges()
+    {   return numberOfEdges;}
+
+    public String getNodeId(int node)
+    {   return idOfNode.get(node);}
+
+    //The earliest time at which a node or an edge starts, as used by Gephi for the start of the timeline
+    public double getTimeBegin()
+    {   return Math.min(nodeSpells.getEarliestStart(), edgeSpells.getEarliestStart());}
+
+    public double getTimeEnd()
+    {   return Math.max(nodeSpells.getLatestEnd(), edgeSpells.getLatestEnd());}
+
+    //Returns the snapshot at the given timestep, whose nodes are taken from gephiNodeOfNode by their index in
+    //the file. Timesteps must be given in increasing order.
+    public SnapshotAdjacency nextSnapshot(int timeStep, Node[] gephiNodeOfNode)
+    {
+        if(timeStep <= lastTimeStep)
+            throw new IllegalArgumentException("Timestep " + timeStep + " comes after timestep " + lastTimeStep);
+        lastTimeStep = timeStep;
+        nodeSpells.advanceTo(timeStep);
+        edgeSpells.advanceTo(timeStep);
+
+        int[] presentNodes = nodeSpells.getPresentOwners();
+        Node[] nodes = new Node[presentNodes.length];
+        for(int i = 0; i < presentNodes.length; i++)
+        {
+            nodes[i] = gephiNodeOfNode[presentNodes[i]];
+            localIndexOfNode[presentNodes[i]] = i;
+        }
+
+        int[] presentEdges = edgeSpells.getPresentOwners();
+        int[]    sources = new int[presentEdges.length];
+        int[]    targets = new int[presentEdges.length];
+        double[] weights = new double[presentEdges.length];
+        int numberOfEdgesInSnapshot = 0;
+        for(int i = 0; i < presentEdges.length; i++)
+        {
+            int edge   = presentEdges[i];
+            int source = localIndexOfNode[sourceOfEdge[edge]];
+            int target = localIndexOfNode[targetOfEdge[edge]];
+            if((source >= 0)&&(target >= 0))
+            {
+                sources[numberOfEdgesInSnapshot] = source;
+                targets[numberOfEdgesInSnapshot] = target;
+                weights[numberOfEdgesInSnapshot] = weightOfEdge[edge];
+                numberOfEdgesInSnapshot++;
+            }
+        }
+
+        for(int i = 0; i < presentNodes.length; i++)
+            localIndexOfNode[presentNodes[i]] = -1;
+        return new SnapshotAdjacency(nodes, sources, targets, weights, numberOfEdgesInSnapshot, timeStep);
+    }
+
+    //The spells of the nodes or of the edges. The owner of a spell is the index of its node or edge.
+    static class Spells
+    {
+        int[]     ownerOfSpell = new int[16];
+        double[]  startOfSpell = new double[16];
+        double[]  endOfSpell   = new double[16];
+        boolean[] startIsOpen  = new boolean[16];
+        boolean[] endIsOpen    = new boolean[16];
+        int       numberOfSpells;
+
+        //the spells in order of start, the next one to start, the spells that have started and not yet ended,
+        //and the number of those that belong to each owner
+        int[]     spellsByStart;
+        int       nextSpellToStart;
+        int[]     activeSpells;
+        int       numberOfActiveSpells;
+        int[]     numberOfActiveSpellsOfOwner;
+
+        void add(int owner, double start, double end, boolean startOpen, boolean endOpen)
+        {
+            if(numberOfSpells == ownerOfSpell.length)
+            {
+                int capacity = 2*numberOfSpells;
+                ownerOfSpell = Arrays.copyOf(ownerOfSpell, capacity);
+                startOfSpell = Arrays.copyOf(startOfSpell, capacity);
+                endOfSpell   = Arrays.copyOf(endOfSpell, capacity);
+                startIsOpen  = Arrays.copyOf(startIsOpen, capacity);
+                endIsOpen    = Arrays.copyOf(endIsOpen, capacity);
+            }
+            ownerOfSpell[numberOfSpells] = owner;
+            startOfSpell[numberOfSpells] = start;
+            endOfSpell[numberOfSpells]   = end;
+            startIsOpen[numberOfSpells]  = startOpen;
+            endIsOpen[numberOfSpells]    = endOpen;
+            numberOfSpells++;
+        }
+
+        void prepareSweep(int numberOfOwners)
+        {
+            //sorting the starts together with the spell index keeps spells with equal starts in file order
+            Integer[] order = new Integer[numberOfSpells];
+            for(int s = 0; s < numberOfSpells; s++)
+                order[s] = s;
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    int byStart = Double.compare(startOfSpell[a], startOfSpell[b]);
+                    return (byStart != 0) ? byStart : a.compareTo(b);
+                }
+            });
+            spellsByStart = new int[numberOfSpells];
+            for(int s = 0; s < numberOfSpells; s++)
+                spellsByStart[s] = order[s];
+            activeSpells                = new int[16];
+            numberOfActiveSpellsOfOwner = new int[numberOfOwners];
+        }
+
+        //Starts the spells that contain the timestep and ends those that are over
+        void advanceTo(double timeStep)
+        {
+            while(nextSpellToStart < numberOfSpells)
+            {
+                int spell = spellsByStart[nextSpellToStart];
+                if((startOfSpell[spell] > timeStep)||((startOfSpell[spell] == timeStep)&&startIsOpen[spell]))
+                    break;
+                if(numberOfActiveSpells == activeSpells.length)
+                    activeSpells = Arrays.copyOf(activeSpells, 2*numberOfActiveSpells);
+                activeSpells[numberOfActiveSpells++] = spell;
+                numberOfActiveSpellsOfOwner[ownerOfSpell[spell]]++;
+                nextSpellToStart++;
+            }
+
+            int numberStillActive = 0;
+            for(int a = 0; a < numberOfActiveSpells; a++)
+            {
+                int spell = activeSpells[a];
+                if((endOfSpell[spell] < timeStep)||((endOfSpell[spell] == timeStep)&&endIsOpen[spell]))
+                    numberOfActiveSpellsOfOwner[ownerOfSpell[spell]]--;
+                else
+                    activeSpells[numberStillActive++] = spell;
+            }
+            numberOfActiveSpells = numberStillActive;
+        }
+
+        //Returns the owners with at least one active spell, in increasing order
+        int[] getPresentOwners()
+        {
+            int[] owners = new int[numberOfActiveSpells];
+            int numberOfOwners = 0;
+            for(int a = 0; a < numberOfActiveSpells; a++)
+            {
+                int owner = ownerOfSpell[activeSpells[a]];
+                //an owner with several active spells is only added for the first one
+                if(numberOfActiveSpellsOfOwner[owner] > 0)
+                {
+                    owners[numberOfOwners++] = owner;
+                    numberOfActiveSpellsOfOwner[owner] = -numberOfActiveSpellsOfOwner[owner];
+                }
+            }
+            for(int o = 0; o < numberOfOwners; o++)
+                numberOfActiveSpellsOfOwner[owners[o]] = -numberOfActiveSpellsOfOwner[owners[o]];
+            Arrays.sort(owners, 0, numberOfOwners);
+            return Arrays.copyOf(owners, numberOfOwners);
+        }
+
+        double getEarliestStart()
+        {
+            double earliest = Double.POSITIVE_INFINITY;
+            for(int s = 0; s < numberOfSpells; s++)
+                if(!Double.isInfinite(startOfSpell[s]))
+                    earliest = Math.min(earliest, startOfSpell[s]);
+            return earliest;
+        }
+
+        double getLatestEnd()
+        {
+            double latest = Double.NEGATIVE_INFINITY;
+            for(int s = 0; s < numberOfSpells; s++)
+                if(!Double.isInfinite(endOfSpell[s]))
+                    latest = Math.max(latest, endOfSpell[s]);
+            return latest;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+
+/*
+ * @author Julie Kauffman
+ * The GraphNodeIndex gives every node of the graph a row from 1 to N, in order of node id,
+ * and is built once at the start of each execution. The colors, costs and names of the nodes
+ * are stored in arrays indexed by these rows, with row 0 unused. Gephi node ids are not always
+ * contiguous, since nodes that are deleted or imported later leave gaps, so the rows are looked
+ * up in an IntIntHashMap rather than computed from the lowest id, and arrays only need one entry
+ * for each node that is in the graph. When the ids are contiguous, the row of a node is its id
+ * minus the lowest id plus 1, as it was before.
+ */
+
+public class GraphNodeIndex
+{
+    Node[]        nodeOfRow;
+    int[]         idOfRow;
+    IntIntHashMap rowOfNodeId;
+
+    public GraphNodeIndex(Graph graph)
+    {
+        this(graph.getNodes().toArray());
+    }
+
+    public GraphNodeIndex(Node[] nodes)
+    {
+        Node[] nodesInOrderOfId = nodes.clone();
+        Arrays.sort(nodesInOrderOfId, new Comparator<Node>()
+        {
+            @Override
+            public int compare(Node first, Node second)
+            {
+                return first.getId() < second.getId() ? -1 : (first.getId() == second.getId() ? 0 : 1);
+            }
+        });
+
+        nodeOfRow   = new Node[nodesInOrderOfId.length+1];
+        idOfRow     = new int[nodesInOrderOfId.length+1];
+        rowOfNodeId = new IntIntHashMap(nodesInOrderOfId.length);
+        for(int i = 0; i < nodesInOrderOfId.length; i++)
+        {
+            nodeOfRow[i+1] = nodesInOrderOfId[i];
+            idOfRow[i+1]   = nodesInOrderOfId[i].getId();
+            rowOfNodeId.put(nodesInOrderOfId[i].getId(), i+1);
+        }
+    }
+
+    //Returns the row of the node with the given Gephi id, or -1 if the node was not in the graph when the index was built
+    public int rowOf(int nodeId)
+    {   return rowOfNodeId.get(nodeId);}
+
+    public int rowOf(Node n)
+    {   return rowOfNodeId.get(n.getId());}
+
+    public Node getNode(int row)
+    {   return nodeOfRow[row];}
+
+    public int getNodeId(int row)
+    {   return idOfRow[row];}
+
+    //Returns the number of nodes, which is also the highest row
+    public int size()
+    {   return nodeOfRow.length-1;}
+}
@@ -1,8 +1,8 @@
 package kcl.julie.DynamicCommunityIdentificationPlugin;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.PriorityQueue;
-import java.util.Set;
 import org.gephi.graph.api.Node;
 
 /*
@@ -11,19 +11,22 @@ import org.gephi.graph.api.Node;
  * contains a set of all the nodes that are in that group at the specified timestep.
  * Each group also has a priority queue, which is used when matching groups across
  * timesteps to form communities. The priority queue maintains the similarity index
- * between this group and groups in earlier timesteps.
+ * between this group and groups in earlier timesteps. Before matching, the 
+ * membership of the group is also stored as a GroupMembership over dense node
+ * indices, which is used to compare groups.
  */
 
 public class Group 
 {
     PriorityQueue<PriorityQueueElement> priorityQueue;
-    Set<Node> nodes;
-    Integer   colorId;
-    int       timestep;
+    List<Node>      nodes;
+    GroupMembership membership;
+    Integer         colorId;
+    int             timestep;
     
     public Group(Integer name, int timestep)
     {
-        this.nodes         = new HashSet<Node>();
+        this.nodes         = new ArrayList<Node>();
         this.priorityQueue = new PriorityQueue();
         this.timestep      = timestep;
         this.colorId       = -1;
@@ -0,0 +1,133 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The GroupCandidates holds the earlier groups that each group of one timestep could be
+ * matched to, in place of the priority queues of the groups. A candidate is the timestep
+ * and index of an earlier group and its similarity index, kept in arrays of ints and
+ * doubles, and the candidates of each group are next to each other. An earlier group
+ * index of NO_EARLIER_GROUP stands for a group that has nothing in common with earlier
+ * groups, like a PriorityQueueElement without a previous group.
+ *
+ * The candidates of a group are added in the same order as they were added to its
+ * priority queue, and are sorted once when the group is finished, into the order
+ * the priority queue would have given them.
+ */
+
+public class GroupCandidates
+{
+    public static final int NO_EARLIER_GROUP = -1;
+
+    int[]    firstCandidateOfGroup;
+    int[]    groupOfCandidate;
+    int[]    earlierTimeStepOfCandidate;
+    int[]    earlierGroupIndexOfCandidate;
+    double[] similarityOfCandidate;
+    int      numberOfCandidates;
+    //used to move the candidates of a group into their sorted order
+    int[]    sortedEarlierTimeSteps    = new int[16];
+    int[]    sortedEarlierGroupIndices = new int[16];
+    double[] sortedSimilarities        = new double[16];
+
+    public GroupCandidates(int numberOfGroups)
+    {
+        firstCandidateOfGroup = new int[numberOfGroups+1];
+        this.allocate(Math.max(16, 2*numberOfGroups));
+    }
+
+    void allocate(int capacity)
+    {
+        groupOfCandidate             = new int[capacity];
+        earlierTimeStepOfCandidate   = new int[capacity];
+        earlierGroupIndexOfCandidate = new int[capacity];
+        similarityOfCandidate        = new double[capacity];
+    }
+
+    //Groups must be started in increasing order, and the candidates added after this belong to the group
+    public void startGroup(int groupIndex)
+    {
+        firstCandidateOfGroup[groupIndex]   = numberOfCandidates;
+        firstCandidateOfGroup[groupIndex+1] = numberOfCandidates;
+    }
+
+    public void add(int groupIndex, int earlierTimeStep, int earlierGroupIndex, double similarityIndex)
+    {
+        if(numberOfCandidates == similarityOfCandidate.length)
+        {
+            int capacity = 2*numberOfCandidates;
+            groupOfCandidate             = Arrays.copyOf(groupOfCandidate, capacity);
+            earlierTimeStepOfCandidate   = Arrays.copyOf(earlierTimeStepOfCandidate, capacity);
+            earlierGroupIndexOfCandidate = Arrays.copyOf(earlierGroupIndexOfCandidate, capacity);
+            similarityOfCandidate        = Arrays.copyOf(similarityOfCandidate, capacity);
+        }
+        groupOfCandidate[numberOfCandidates]             = groupIndex;
+        earlierTimeStepOfCandidate[numberOfCandidates]   = earlierTimeStep;
+        earlierGroupIndexOfCandidate[numberOfCandidates] = earlierGroupIndex;
+        similarityOfCandidate[numberOfCandidates]        = similarityIndex;
+        numberOfCandidates++;
+        firstCandidateOfGroup[groupIndex+1] = numberOfCandidates;
+    }
+
+    public boolean hasCandidates(int groupIndex)
+    {   return firstCandidateOfGroup[groupIndex+1] > firstCandidateOfGroup[groupIndex];}
+
+    //Sorts the candidates of the group into the order they would be polled from its priority queue, using
+    //the queue to sort the indices of the candidates and then moving the candidates to their place
+    public void finishGroup(int groupIndex, CandidateQueue queue)
+    {
+        int first = firstCandidateOfGroup[groupIndex];
+        int end   = firstCandidateOfGroup[groupIndex+1];
+        if(end-first < 2)
+            return;
+        queue.clear(similarityOfCandidate);
+        for(int candidate = first; candidate < end; candidate++)
+            queue.add(candidate);
+        if(sortedSimilarities.length < end-first)
+        {
+            sortedEarlierTimeSteps    = new int[2*(end-first)];
+            sortedEarlierGroupIndices = new int[2*(end-first)];
+            sortedSimilarities        = new double[2*(end-first)];
+        }
+        for(int i = 0; i < end-first; i++)
+        {
+            int candidate = queue.poll();
+            sortedEarlierTimeSteps[i]    = earlierTimeStepOfCandidate[candidate];
+            sortedEarlierGroupIndices[i] = earlierGroupIndexOfCandidate[candidate];
+            sortedSimilarities[i]        = similarityOfCandidate[candidate];
+        }
+        System.arraycopy(sortedEarlierTimeSteps, 0, earlierTimeStepOfCandidate, first, end-first);
+        System.arraycopy(sortedEarlierGroupIndices, 0, earlierGroupIndexOfCandidate, first, end-first);
+        System.arraycopy(sortedSimilarities, 0, similarityOfCandidate, first, end-first);
+    }
+
+    //Returns the first candidate of the group, which is the most similar once the group is finished
+    public int getFirstCandidate(int groupIndex)
+    {   return firstCandidateOfGroup[groupIndex];}
+
+    //Returns the candidate after the given one in the same group, or -1 if it was the last one
+    public int getNextCandidate(int candidate)
+    {
+        int groupIndex = groupOfCandidate[candidate];
+        return candidate+1 < firstCandidateOfGroup[groupIndex+1] ? candidate+1 : -1;
+    }
+
+    public int getGroup(int candidate)
+    {   return groupOfCandidate[candidate];}
+
+    public int getEarlierTimeStep(int candidate)
+    {   return earlierTimeStepOfCandidate[candidate];}
+
+    public int getEarlierGroupIndex(int candidate)
+    {   return earlierGroupIndexOfCandidate[candidate];}
+
+    public double getSimilarity(int candidate)
+    {   return similarityOfCandidate[candidate];}
+
+    public int size()
+    {   return numberOfCandidates;}
+
+    public int getNumberOfGroups()
+    {   return firstCandidateOfGroup.length-1;}
+}
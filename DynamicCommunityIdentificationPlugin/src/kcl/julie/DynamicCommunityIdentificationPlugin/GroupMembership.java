@@ -0,0 +1,117 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The GroupMembership holds the nodes of a group as indices from a DenseNodeIndex.
+ * Large groups are kept as a bitset with one bit per node, and small groups as a 
+ * sorted array of indices, whichever takes less memory. The size of the intersection
+ * of two groups is counted without creating any objects, so the Jaccard index of
+ * two groups is |A and B| / (|A| + |B| - |A and B|).
+ */
+
+public final class GroupMembership 
+{
+    long[] words;
+    int[]  members;
+    int    size;
+    
+    //indices[0..count-1] are the distinct indices of the nodes in the group, in any order
+    public GroupMembership(int[] indices, int count)
+    {
+        this.size = count;
+        int[] sortedIndices = Arrays.copyOf(indices, count);
+        Arrays.sort(sortedIndices);
+        
+        //a sorted array takes 32 bits per member, a bitset one bit per node up to the largest member
+        long bitsetLength = count == 0 ? 0 : (sortedIndices[count-1] >> 6) + 1;
+        if(32L*count <= 64L*bitsetLength)
+            members = sortedIndices;
+        else
+        {
+            words = new long[(int)bitsetLength];
+            for(int index:sortedIndices)
+                words[index >> 6] |= 1L << index;
+        }
+    }
+    
+    public int size()
+    {return size;}
+    
+    public boolean contains(int index)
+    {
+        if(members != null)
+            return Arrays.binarySearch(members, index) >= 0;
+        int word = index >> 6;
+        return (index >= 0)&&(word < words.length)&&((words[word] & (1L << index)) != 0);
+    }
+    
+    //Returns the smallest index in the group that is at least fromIndex, or -1, in the same way as BitSet.nextSetBit
+    public int nextMember(int fromIndex)
+    {
+        if(members != null)
+        {
+            int position = Arrays.binarySearch(members, fromIndex);
+            if(position < 0)
+                position = -position-1;
+            return position < members.length ? members[position] : -1;
+        }
+        int word = fromIndex >> 6;
+        if(word >= words.length)
+            return -1;
+        long remaining = words[word] & (-1L << fromIndex);
+        while(true)
+        {
+            if(remaining != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(remaining);
+            if(++word == words.length)
+                return -1;
+            remaining = words[word];
+        }
+    }
+    
+    public int intersectionSize(GroupMembership other)
+    {
+        int count = 0;
+        if((words != null)&&(other.words != null))
+        {
+            int length = Math.min(words.length, other.words.length);
+            for(int i = 0; i < length; i++)
+                count += Long.bitCount(words[i] & other.words[i]);
+        }
+        else if((members != null)&&(other.members != null))
+        {
+            int i = 0, j = 0;
+            while((i < members.length)&&(j < other.members.length))
+            {
+                if(members[i] < other.members[j])
+                    i++;
+                else if(members[i] > other.members[j])
+                    j++;
+                else
+                {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        else
+        {
+            GroupMembership sparse = members != null ? this : other;
+            GroupMembership dense  = members != null ? other : this;
+            for(int index:sparse.members)
+                if(dense.contains(index))
+                    count++;
+        }
+        return count;
+    }
+    
+    public double jaccard(GroupMembership other)
+    {
+        double sizeOfIntersection = this.intersectionSize(other);
+        double sizeOfUnion        = size + other.size - sizeOfIntersection;
+        return sizeOfIntersection/sizeOfUnion;
+    }
+}
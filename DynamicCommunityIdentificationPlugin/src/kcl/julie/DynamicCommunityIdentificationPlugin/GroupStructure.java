@@ -52,4 +52,27 @@ public class GroupStructure
             currentGroup.add(n);                                      
         }
     }        
+    
+    //Builds the groups directly from the group of each node, as found by LouvainCommunityDetection.
+    //groupOfNode[i] is the group of nodes[i], and the groups are numbered from 0 without gaps.
+    GroupStructure(Graph graph, Node[] nodes, int[] groupOfNode, int timeStep)
+    {
+        this.graph         = graph;
+        this.numberOfNodes = nodes.length;
+        
+        int numberOfGroups = 0;
+        for(int i = 0; i < nodes.length; i++)
+        {
+            if(groupOfNode[i] > numberOfGroups)
+                numberOfGroups = groupOfNode[i];
+        }
+        
+        groups = new Group[nodes.length == 0 ? 0 : numberOfGroups+1];
+        for(int i = 0; i < nodes.length; i++)
+        {
+            if(groups[groupOfNode[i]]==null)
+                groups[groupOfNode[i]] = new Group(groupOfNode[i], timeStep);
+            groups[groupOfNode[i]].add(nodes[i]);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+/*
+ * @author Julie Kauffman
+ * The IncrementalCommunityDetection finds the communities of consecutive snapshots,
+ * starting each search from the communities found in the previous snapshot. The 
+ * first snapshot is searched from scratch with the Louvain method. In each later 
+ * snapshot, a node keeps the community it had in the previous snapshot, and new 
+ * nodes start in a community of their own, as do nodes that have lost all of their
+ * edges, since a node without neighbors is never moved out of its community. Only
+ * nodes that are new or whose edges have changed, and the neighbors of any node that
+ * moves, are re-evaluated before the communities are merged as usual. Snapshots
+ * must be given in time order.
+ */
+
+public class IncrementalCommunityDetection 
+{
+    LouvainCommunityDetection louvain = new LouvainCommunityDetection();
+    SnapshotAdjacency previousSnapshot;
+    int[]             previousCommunityOfNode;
+    int               numberOfNodesReevaluated;
+    
+    public int[] detectCommunities(SnapshotAdjacency snapshot)
+    {
+        int[] communityOfNode;
+        if(previousSnapshot == null)
+            communityOfNode = louvain.detectCommunities(snapshot);
+        else
+        {
+            int numberOfNodes = snapshot.size();
+            int[] previousIndexOfNode = this.findPreviousIndexOfEachNode(snapshot);
+            boolean[] nodeHasChanged  = this.findChangedNodes(snapshot, previousIndexOfNode);
+            
+            //nodes keep their previous community, and new nodes and changed nodes without edges start in a community of their own
+            int[] initialCommunityOfNode = new int[numberOfNodes];
+            int[] newNumberOfCommunity   = new int[previousSnapshot.size()];
+            for(int c = 0; c < newNumberOfCommunity.length; c++)
+                newNumberOfCommunity[c] = -1;
+            int numberOfCommunities = 0;
+            for(int i = 0; i < numberOfNodes; i++)
+            {
+                boolean isIsolated = snapshot.edgeOffsets[i+1] == snapshot.edgeOffsets[i];
+                if((previousIndexOfNode[i] < 0)||(nodeHasChanged[i] && isIsolated))
+                    initialCommunityOfNode[i] = numberOfCommunities++;
+                else
+                {
+                    int previousCommunity = previousCommunityOfNode[previousIndexOfNode[i]];
+                    if(newNumberOfCommunity[previousCommunity] < 0)
+                        newNumberOfCommunity[previousCommunity] = numberOfCommunities++;
+                    initialCommunityOfNode[i] = newNumberOfCommunity[previousCommunity];
+                }
+            }
+            communityOfNode = louvain.detectCommunities(snapshot, initialCommunityOfNode, nodeHasChanged);
+        }
+        numberOfNodesReevaluated = louvain.numberOfNodesReevaluated;
+        previousSnapshot         = snapshot;
+        previousCommunityOfNode  = communityOfNode;
+        return communityOfNode;
+    }
+    
+    //Returns the local index in the previous snapshot of each node in this snapshot, or -1 if it is new
+    int[] findPreviousIndexOfEachNode(SnapshotAdjacency snapshot)
+    {
+        IntIntHashMap previousIndexOfNodeId = new IntIntHashMap(previousSnapshot.size());
+        for(int p = 0; p < previousSnapshot.size(); p++)
+            previousIndexOfNodeId.put(previousSnapshot.nodes[p].getId(), p);
+        
+        int[] previousIndexOfNode = new int[snapshot.size()];
+        for(int i = 0; i < snapshot.size(); i++)
+            previousIndexOfNode[i] = previousIndexOfNodeId.get(snapshot.nodes[i].getId());
+        return previousIndexOfNode;
+    }
+    
+    //A node has changed if it is new, or if any of its edges was added, removed or given a different weight
+    boolean[] findChangedNodes(SnapshotAdjacency snapshot, int[] previousIndexOfNode)
+    {
+        int numberOfNodes = snapshot.size();
+        int[] currentIndexOfPreviousNode = new int[previousSnapshot.size()];
+        for(int p = 0; p < currentIndexOfPreviousNode.length; p++)
+            currentIndexOfPreviousNode[p] = -1;
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            if(previousIndexOfNode[i] >= 0)
+                currentIndexOfPreviousNode[previousIndexOfNode[i]] = i;
+        }
+        
+        boolean[] nodeHasChanged   = new boolean[numberOfNodes];
+        double[]  weightDifference = new double[numberOfNodes];
+        boolean[] isNeighbor       = new boolean[numberOfNodes];
+        int[]     neighbors        = new int[numberOfNodes];
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            int p = previousIndexOfNode[i];
+            if(p < 0)
+            {
+                nodeHasChanged[i] = true;
+                continue;
+            }
+            
+            //add up the weight to each neighbor in the previous snapshot and subtract it in this one
+            int numberOfNeighbors = 0;
+            for(int e = previousSnapshot.edgeOffsets[p]; e < previousSnapshot.edgeOffsets[p+1]; e++)
+            {
+                int neighbor = currentIndexOfPreviousNode[previousSnapshot.edgeTargets[e]];
+                if(neighbor < 0)    //the neighbor has left the network
+                {
+                    nodeHasChanged[i] = true;
+                    continue;
+                }
+                if(!isNeighbor[neighbor])
+                {
+                    isNeighbor[neighbor] = true;
+                    neighbors[numberOfNeighbors++] = neighbor;
+                }
+                weightDifference[neighbor] += previousSnapshot.edgeWeights[e];
+            }
+            for(int e = snapshot.edgeOffsets[i]; e < snapshot.edgeOffsets[i+1]; e++)
+            {
+                int neighbor = snapshot.edgeTargets[e];
+                if(!isNeighbor[neighbor])
+                {
+                    isNeighbor[neighbor] = true;
+                    neighbors[numberOfNeighbors++] = neighbor;
+                }
+                weightDifference[neighbor] -= snapshot.edgeWeights[e];
+            }
+            for(int n = 0; n < numberOfNeighbors; n++)
+            {
+                if(Math.abs(weightDifference[neighbors[n]]) > 1e-9)
+                    nodeHasChanged[i] = true;
+                weightDifference[neighbors[n]] = 0;
+                isNeighbor[neighbors[n]] = false;
+            }
+        }
+        return nodeHasChanged;
+    }
+}
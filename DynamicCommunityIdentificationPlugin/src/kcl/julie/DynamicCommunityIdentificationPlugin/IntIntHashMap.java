@@ -0,0 +1,117 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The IntIntHashMap maps int keys to int values without boxing them, with open addressing
+ * and linear probing in two arrays. It is used to look up nodes by their Gephi id, where a
+ * HashMap<Integer, Integer> would allocate two objects for every node. Values can only be
+ * added or replaced, and get returns -1 for a key that is not in the map.
+ */
+
+public class IntIntHashMap
+{
+    static final int FREE_KEY = Integer.MIN_VALUE;
+
+    int[] keys;
+    int[] values;
+    int   mask;
+    int   size;
+    //the value of FREE_KEY is kept apart, since the key marks the empty slots
+    boolean hasFreeKey;
+    int     valueOfFreeKey;
+
+    public IntIntHashMap(int expectedSize)
+    {
+        int capacity = 16;
+        while(capacity < 2L*expectedSize)
+            capacity <<= 1;
+        this.allocate(capacity);
+    }
+
+    void allocate(int capacity)
+    {
+        keys   = new int[capacity];
+        values = new int[capacity];
+        mask   = capacity-1;
+        Arrays.fill(keys, FREE_KEY);
+    }
+
+    //Spreads the bits of the key, since Gephi ids are often consecutive
+    static int slotOf(int key, int mask)
+    {
+        int hash = key*0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int get(int key)
+    {
+        if(key == FREE_KEY)
+            return hasFreeKey ? valueOfFreeKey : -1;
+        for(int slot = slotOf(key, mask); ; slot = (slot+1) & mask)
+        {
+            if(keys[slot] == key)
+                return values[slot];
+            if(keys[slot] == FREE_KEY)
+                return -1;
+        }
+    }
+
+    public boolean containsKey(int key)
+    {
+        if(key == FREE_KEY)
+            return hasFreeKey;
+        for(int slot = slotOf(key, mask); ; slot = (slot+1) & mask)
+        {
+            if(keys[slot] == key)
+                return true;
+            if(keys[slot] == FREE_KEY)
+                return false;
+        }
+    }
+
+    public void put(int key, int value)
+    {
+        if(key == FREE_KEY)
+        {
+            if(!hasFreeKey)
+                size++;
+            hasFreeKey     = true;
+            valueOfFreeKey = value;
+            return;
+        }
+        int slot = slotOf(key, mask);
+        while((keys[slot] != FREE_KEY)&&(keys[slot] != key))
+            slot = (slot+1) & mask;
+        if(keys[slot] == FREE_KEY)
+        {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        //the table is kept at most half full so that probes stay short
+        if(2*size > keys.length)
+            this.grow();
+    }
+
+    void grow()
+    {
+        int[] oldKeys   = keys;
+        int[] oldValues = values;
+        this.allocate(2*oldKeys.length);
+        for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+        {
+            if(oldKeys[oldSlot] == FREE_KEY)
+                continue;
+            int slot = slotOf(oldKeys[oldSlot], mask);
+            while(keys[slot] != FREE_KEY)
+                slot = (slot+1) & mask;
+            keys[slot]   = oldKeys[oldSlot];
+            values[slot] = oldValues[oldSlot];
+        }
+    }
+
+    public int size()
+    {   return size;}
+}
@@ -0,0 +1,287 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+/*
+ * @author Julie Kauffman
+ * Finds communities in a SnapshotAdjacency with the Louvain method of Blondel et al.
+ * Each node starts in its own community. Nodes are visited in order and moved to 
+ * the neighboring community that gives the largest increase in modularity, until 
+ * no node moves. The communities are then merged into single nodes and the process 
+ * is repeated on the smaller graph, until no node moves at all. Nodes are always 
+ * visited in the same order, so the same snapshot always gives the same communities.
+ * The communities are numbered 0 to k-1 in order of the first node in each one.
+ * 
+ * The search can also be started from a given partition, in which case only the 
+ * given nodes are visited at first, and the neighbors of every node that moves are
+ * visited after them. This is used to update the communities of the previous 
+ * timestep when only a few edges have changed.
+ * 
+ * Every level of the graph is kept in compressed sparse row arrays, and the working
+ * arrays are allocated once per level, so no objects are created per node or edge.
+ * An instance must only be used by one thread at a time.
+ */
+
+public class LouvainCommunityDetection 
+{
+    double resolution = 1.0;
+    int    numberOfNodesReevaluated;
+    
+    //the graph at the current level and the working arrays used to move its nodes
+    int[]    edgeOffsets;
+    int[]    edgeTargets;
+    double[] edgeWeights;
+    double[] degreeOfNode;
+    double[] totalDegreeOfCommunity;
+    double   totalWeight;
+    double[] weightToCommunity;
+    int[]    neighborCommunities;
+    
+    public int[] detectCommunities(SnapshotAdjacency snapshot)
+    {   return this.detectCommunities(snapshot, null, null);}
+    
+    //Finds the communities starting from initialCommunityOfNode, whose values must be between 0 and the
+    //number of nodes, and first visits only the nodes marked in nodesToReevaluate. If initialCommunityOfNode
+    //is null, every node starts in its own community and every node is visited.
+    public int[] detectCommunities(SnapshotAdjacency snapshot, int[] initialCommunityOfNode, boolean[] nodesToReevaluate)
+    {
+        int numberOfNodes = snapshot.size();
+        edgeOffsets = snapshot.edgeOffsets;
+        edgeTargets = snapshot.edgeTargets;
+        edgeWeights = snapshot.edgeWeights;
+        
+        int[] communityOfNode = new int[numberOfNodes];
+        for(int i = 0; i < numberOfNodes; i++)
+            communityOfNode[i] = i;
+        
+        int[] communityAtThisLevel = new int[numberOfNodes];
+        int numberOfCommunities;
+        if(initialCommunityOfNode == null)
+        {
+            numberOfCommunities = this.moveNodes(communityAtThisLevel);
+            numberOfNodesReevaluated = numberOfNodes;
+        }
+        else
+            numberOfCommunities = this.moveChangedNodes(communityAtThisLevel, initialCommunityOfNode, nodesToReevaluate);
+        
+        int numberOfNodesAtThisLevel = numberOfNodes;
+        while(numberOfCommunities < numberOfNodesAtThisLevel)
+        {
+            for(int i = 0; i < numberOfNodes; i++)
+                communityOfNode[i] = communityAtThisLevel[communityOfNode[i]];
+            
+            //merge each community into a single node and repeat on the smaller graph
+            this.mergeCommunities(communityAtThisLevel, numberOfCommunities);
+            numberOfNodesAtThisLevel = numberOfCommunities;
+            communityAtThisLevel = new int[numberOfNodesAtThisLevel];
+            numberOfCommunities  = this.moveNodes(communityAtThisLevel);
+        }
+        return communityOfNode;
+    }
+    
+    //Replaces the graph at the current level by the graph with one node for each community
+    void mergeCommunities(int[] communityAtThisLevel, int numberOfCommunities)
+    {
+        int numberOfNodesAtThisLevel = communityAtThisLevel.length;
+        int[] memberOffsets = new int[numberOfCommunities+1];
+        for(int i = 0; i < numberOfNodesAtThisLevel; i++)
+            memberOffsets[communityAtThisLevel[i]+1]++;
+        for(int c = 0; c < numberOfCommunities; c++)
+            memberOffsets[c+1] += memberOffsets[c];
+        int[] members  = new int[numberOfNodesAtThisLevel];
+        int[] position = new int[numberOfCommunities];
+        System.arraycopy(memberOffsets, 0, position, 0, numberOfCommunities);
+        for(int i = 0; i < numberOfNodesAtThisLevel; i++)
+            members[position[communityAtThisLevel[i]]++] = i;
+        
+        int[]    mergedOffsets = new int[numberOfCommunities+1];
+        int[]    mergedTargets = new int[edgeTargets.length];
+        double[] mergedWeights = new double[edgeTargets.length];
+        double[] weightToNeighbor = new double[numberOfCommunities];
+        int[]    neighbors        = new int[numberOfCommunities];
+        int numberOfMergedEdges = 0;
+        for(int c = 0; c < numberOfCommunities; c++)
+            weightToNeighbor[c] = -1;
+        for(int c = 0; c < numberOfCommunities; c++)
+        {
+            int numberOfNeighbors = 0;
+            for(int m = memberOffsets[c]; m < memberOffsets[c+1]; m++)
+            {
+                int i = members[m];
+                for(int e = edgeOffsets[i]; e < edgeOffsets[i+1]; e++)
+                {
+                    int neighborCommunity = communityAtThisLevel[edgeTargets[e]];
+                    if(weightToNeighbor[neighborCommunity] < 0)
+                    {
+                        weightToNeighbor[neighborCommunity] = 0;
+                        neighbors[numberOfNeighbors++] = neighborCommunity;
+                    }
+                    weightToNeighbor[neighborCommunity] += edgeWeights[e];
+                }
+            }
+            for(int n = 0; n < numberOfNeighbors; n++)
+            {
+                mergedTargets[numberOfMergedEdges]   = neighbors[n];
+                mergedWeights[numberOfMergedEdges++] = weightToNeighbor[neighbors[n]];
+                weightToNeighbor[neighbors[n]] = -1;
+            }
+            mergedOffsets[c+1] = numberOfMergedEdges;
+        }
+        edgeOffsets = mergedOffsets;
+        edgeTargets = mergedTargets;
+        edgeWeights = mergedWeights;
+    }
+    
+    //Sets up the working arrays for the graph at the current level with the given communities
+    void prepareLevel(int[] communityOfNode)
+    {
+        int numberOfNodes = communityOfNode.length;
+        degreeOfNode           = new double[numberOfNodes];
+        totalDegreeOfCommunity = new double[numberOfNodes];
+        weightToCommunity      = new double[numberOfNodes];
+        neighborCommunities    = new int[numberOfNodes];
+        totalWeight = 0;
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            for(int e = edgeOffsets[i]; e < edgeOffsets[i+1]; e++)
+                degreeOfNode[i] += edgeWeights[e];
+            totalDegreeOfCommunity[communityOfNode[i]] += degreeOfNode[i];
+            totalWeight += degreeOfNode[i];
+            weightToCommunity[i] = -1;
+        }
+    }
+    
+    //Moves single nodes between communities until no move increases the modularity. The communities
+    //are written to communityOfNode, numbered in order of their first node, and their number is returned.
+    int moveNodes(int[] communityOfNode)
+    {
+        int numberOfNodes = communityOfNode.length;
+        for(int i = 0; i < numberOfNodes; i++)
+            communityOfNode[i] = i;
+        this.prepareLevel(communityOfNode);
+        
+        if(totalWeight > 0)
+        {
+            boolean nodeWasMoved = true;
+            while(nodeWasMoved)
+            {
+                nodeWasMoved = false;
+                for(int i = 0; i < numberOfNodes; i++)
+                {
+                    if(this.moveNode(i, communityOfNode))
+                        nodeWasMoved = true;
+                }
+            }
+        }
+        return renumberCommunities(communityOfNode);
+    }
+    
+    //Starts from the given communities and moves only the nodes marked in nodesToReevaluate, then the
+    //neighbors of every node that is moved, until no move increases the modularity.
+    int moveChangedNodes(int[] communityOfNode, int[] initialCommunityOfNode, boolean[] nodesToReevaluate)
+    {
+        int numberOfNodes = communityOfNode.length;
+        System.arraycopy(initialCommunityOfNode, 0, communityOfNode, 0, numberOfNodes);
+        this.prepareLevel(communityOfNode);
+        
+        int[]     queue       = new int[numberOfNodes];
+        boolean[] isInQueue   = new boolean[numberOfNodes];
+        boolean[] wasVisited  = new boolean[numberOfNodes];
+        int head = 0;
+        int numberInQueue = 0;
+        for(int i = 0; i < numberOfNodes; i++)
+        {
+            if(nodesToReevaluate[i])
+            {
+                queue[numberInQueue++] = i;
+                isInQueue[i] = true;
+            }
+        }
+        
+        numberOfNodesReevaluated = 0;
+        while((numberInQueue > 0)&&(totalWeight > 0))
+        {
+            int i = queue[head];
+            head = (head+1)%numberOfNodes;
+            numberInQueue--;
+            isInQueue[i] = false;
+            if(!wasVisited[i])
+            {
+                wasVisited[i] = true;
+                numberOfNodesReevaluated++;
+            }
+            
+            if(this.moveNode(i, communityOfNode))
+            {
+                for(int e = edgeOffsets[i]; e < edgeOffsets[i+1]; e++)
+                {
+                    int neighbor = edgeTargets[e];
+                    if(!isInQueue[neighbor])
+                    {
+                        queue[(head+numberInQueue)%numberOfNodes] = neighbor;
+                        numberInQueue++;
+                        isInQueue[neighbor] = true;
+                    }
+                }
+            }
+        }
+        return renumberCommunities(communityOfNode);
+    }
+    
+    //Takes node i out of its community and puts it in the neighboring community with the largest gain
+    //in modularity. Returns true if the node ends up in a different community.
+    boolean moveNode(int i, int[] communityOfNode)
+    {
+        int currentCommunity = communityOfNode[i];
+        int numberOfNeighborCommunities = 0;
+        weightToCommunity[currentCommunity] = 0;
+        neighborCommunities[numberOfNeighborCommunities++] = currentCommunity;
+        for(int e = edgeOffsets[i]; e < edgeOffsets[i+1]; e++)
+        {
+            int neighbor = edgeTargets[e];
+            if(neighbor == i)
+                continue;
+            int neighborCommunity = communityOfNode[neighbor];
+            if(weightToCommunity[neighborCommunity] < 0)
+            {
+                weightToCommunity[neighborCommunity] = 0;
+                neighborCommunities[numberOfNeighborCommunities++] = neighborCommunity;
+            }
+            weightToCommunity[neighborCommunity] += edgeWeights[e];
+        }
+        
+        totalDegreeOfCommunity[currentCommunity] -= degreeOfNode[i];
+        int    bestCommunity = currentCommunity;
+        double bestGain      = weightToCommunity[currentCommunity] - resolution*totalDegreeOfCommunity[currentCommunity]*degreeOfNode[i]/totalWeight;
+        for(int n = 1; n < numberOfNeighborCommunities; n++)
+        {
+            int c = neighborCommunities[n];
+            double gain = weightToCommunity[c] - resolution*totalDegreeOfCommunity[c]*degreeOfNode[i]/totalWeight;
+            if(gain > bestGain)
+            {
+                bestGain      = gain;
+                bestCommunity = c;
+            }
+        }
+        totalDegreeOfCommunity[bestCommunity] += degreeOfNode[i];
+        communityOfNode[i] = bestCommunity;
+        
+        for(int n = 0; n < numberOfNeighborCommunities; n++)
+            weightToCommunity[neighborCommunities[n]] = -1;
+        return bestCommunity != currentCommunity;
+    }
+    
+    //Renumbers the communities 0 to k-1 in order of their first node and returns k
+    static int renumberCommunities(int[] communityOfNode)
+    {
+        int[] newNumber = new int[communityOfNode.length];
+        for(int c = 0; c < newNumber.length; c++)
+            newNumber[c] = -1;
+        int numberOfCommunities = 0;
+        for(int i = 0; i < communityOfNode.length; i++)
+        {
+            if(newNumber[communityOfNode[i]] < 0)
+                newNumber[communityOfNode[i]] = numberOfCommunities++;
+            communityOfNode[i] = newNumber[communityOfNode[i]];
+        }
+        return numberOfCommunities;
+    }
+}
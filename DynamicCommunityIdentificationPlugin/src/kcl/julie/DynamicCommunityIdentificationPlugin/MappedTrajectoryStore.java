@@ -0,0 +1,153 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * @author Julie Kauffman
+ * The MappedTrajectoryStore is a TrajectoryStore whose cells are kept in a memory-mapped temporary
+ * file instead of arrays on the heap, for networks whose colors do not fit in the heap given to
+ * Gephi. The operating system loads the pages of the file that are read and writes back the pages
+ * that are changed, so only the rows being worked on need to be in memory. The file is mapped in
+ * buffers of at most 2^28 cells, so the store can hold more than 2^31 colors.
+ *
+ * The file is deleted as soon as it is mapped where the operating system allows it, and otherwise
+ * when the JVM exits. A mapped store is never compressed, since the runs would have to be on the heap.
+ */
+
+public class MappedTrajectoryStore extends TrajectoryStore
+{
+    static final int  CELLS_PER_BUFFER_SHIFT = 28;
+    static final long CELLS_PER_BUFFER       = 1L << CELLS_PER_BUFFER_SHIFT;
+    static final long CELL_IN_BUFFER_MASK    = CELLS_PER_BUFFER-1;
+
+    File               directory;
+    long               numberOfCells;
+    MappedByteBuffer[] buffers;
+
+    //The temporary file is created in the given directory, or in the default temporary directory if it is null
+    public MappedTrajectoryStore(int numberOfNodes, int timeBegin, int timeEnd, int highestColor, File directory) throws IOException
+    {
+        this.directory         = directory;
+        this.numberOfRows      = numberOfNodes+1;
+        this.timeBegin         = timeBegin;
+        this.timeEnd           = Math.max(timeBegin, timeEnd);
+        this.numberOfTimeSteps = this.timeEnd-timeBegin;
+        this.width             = getWidthOfColor(highestColor);
+        this.numberOfCells     = (long)numberOfRows*numberOfTimeSteps;
+        this.buffers           = mapCells(numberOfCells, width, directory);
+    }
+
+    MappedTrajectoryStore()
+    {}
+
+    //Maps a new zeroed file with room for the given number of cells
+    static MappedByteBuffer[] mapCells(long numberOfCells, int width, File directory) throws IOException
+    {
+        File file = File.createTempFile("Trajectories", ".tmp", directory);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            randomAccessFile.setLength(Math.max(1, numberOfCells*width));
+            FileChannel channel = randomAccessFile.getChannel();
+            int numberOfBuffers = (int)((numberOfCells+CELLS_PER_BUFFER-1) >>> CELLS_PER_BUFFER_SHIFT);
+            MappedByteBuffer[] buffers = new MappedByteBuffer[numberOfBuffers];
+            for(int buffer = 0; buffer < numberOfBuffers; buffer++)
+            {
+                long firstCell = (long)buffer << CELLS_PER_BUFFER_SHIFT;
+                long size      = Math.min(CELLS_PER_BUFFER, numberOfCells-firstCell)*width;
+                buffers[buffer] = channel.map(FileChannel.MapMode.READ_WRITE, firstCell*width, size);
+                buffers[buffer].order(ByteOrder.nativeOrder());
+            }
+            return buffers;
+        }
+        finally
+        {
+            //the mappings stay valid once the file is closed
+            randomAccessFile.close();
+            if(!file.delete())
+                file.deleteOnExit();
+        }
+    }
+
+    @Override
+    int getCell(long cell)
+    {
+        MappedByteBuffer buffer = buffers[(int)(cell >>> CELLS_PER_BUFFER_SHIFT)];
+        int index = (int)(cell & CELL_IN_BUFFER_MASK)*width;
+        if(width == BYTE_WIDTH)
+            return buffer.get(index);
+        if(width == SHORT_WIDTH)
+            return buffer.getShort(index);
+        return buffer.getInt(index);
+    }
+
+    @Override
+    void setCell(long cell, int color)
+    {
+        MappedByteBuffer buffer = buffers[(int)(cell >>> CELLS_PER_BUFFER_SHIFT)];
+        int index = (int)(cell & CELL_IN_BUFFER_MASK)*width;
+        if(width == BYTE_WIDTH)
+            buffer.put(index, (byte)color);
+        else if(width == SHORT_WIDTH)
+            buffer.putShort(index, (short)color);
+        else
+            buffer.putInt(index, color);
+    }
+
+    @Override
+    long getNumberOfCells()
+    {   return numberOfCells;}
+
+    //Copies the cells to a new file with wider cells
+    @Override
+    void widen(int newWidth)
+    {
+        MappedTrajectoryStore wider = new MappedTrajectoryStore();
+        wider.numberOfCells = numberOfCells;
+        wider.width         = newWidth;
+        wider.buffers       = this.mapCellsOrFail(newWidth);
+        for(long cell = 0; cell < numberOfCells; cell++)
+            wider.setCell(cell, this.getCell(cell));
+        width   = newWidth;
+        buffers = wider.buffers;
+    }
+
+    MappedByteBuffer[] mapCellsOrFail(int newWidth)
+    {
+        try
+        {
+            return mapCells(numberOfCells, newWidth, directory);
+        }
+        catch(IOException ex)
+        {
+            throw new IllegalStateException("Could not map " + numberOfCells + " colors in " + directory, ex);
+        }
+    }
+
+    //Returns a store with the same colors in a file of its own
+    @Override
+    public TrajectoryStore copy()
+    {
+        MappedTrajectoryStore copy = new MappedTrajectoryStore();
+        copy.directory         = directory;
+        copy.numberOfRows      = numberOfRows;
+        copy.timeBegin         = timeBegin;
+        copy.timeEnd           = timeEnd;
+        copy.numberOfTimeSteps = numberOfTimeSteps;
+        copy.width             = width;
+        copy.numberOfCells     = numberOfCells;
+        copy.buffers           = this.mapCellsOrFail(width);
+        for(int buffer = 0; buffer < buffers.length; buffer++)
+            copy.buffers[buffer].duplicate().put(buffers[buffer].duplicate());
+        return copy;
+    }
+
+    @Override
+    public boolean compress()
+    {   return false;}
+}
@@ -2,6 +2,7 @@
 package kcl.julie.DynamicCommunityIdentificationPlugin;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.PriorityQueue;
 import java.util.Set;
@@ -39,19 +40,70 @@ import org.openide.util.Lookup;
  * color IDs have been used at the current timestep already, the remaining uncolored 
  * groups are given new, unique color IDs.
  * 
+ * With array matching, the earlier groups each group could be matched to are kept as 
+ * candidates in a GroupCandidates for each timestep instead of priority queues of 
+ * PriorityQueueElements, and the queue of the timestep is a CandidateQueue of ints. 
+ * Both give the same color IDs.
+ * 
+ * With optimal matching, the groups of each timestep are given the colors of earlier groups
+ * by an OptimalGroupAssignment over the same candidates, so that the total Jaccard index of
+ * the matched groups is as high as possible instead of taking the most similar pair first.
+ * The greedy matching is still run on each timestep, and the report compares the two.
+ * Both are run on the colors given to the earlier timesteps by the optimal matching, so
+ * the report compares the matchings one timestep at a time, and the greedy total is not
+ * that of a greedy matching of the whole network.
+ * 
  */
 
 public final class MatchedGroupGraph 
 {    
+    public static final int RECALL_SAMPLE_SIZE = 200;
+    
     int currentHighestColorID;
     int timeParameter;
     String report;
     double cutoffParameter;
+    int[][] groupIndexOfNodeAtTimeStep;
+    DenseNodeIndex denseNodeIndex;
+    int[]    numberOfSharedNodes;
+    int[]    similarGroups;
+    double[] similarityOfSimilarGroups;
+    
+    //used for approximate group matching
+    boolean useApproximateMatching;
+    MinHashGroupIndex[] minHashIndexAtTimeStep;
+    int rowsPerBand;
+    int recallSampleInterval;
+    int numberOfGroupsMatched;
+    int numberOfSampledGroups;
+    int numberOfSimilarGroupsInSample;
+    int numberOfSimilarGroupsFoundInSample;
+    
+    //used for array matching
+    boolean useArrayMatching;
+    GroupCandidates[] candidatesAtTimeStep;
+    GroupCandidates   candidatesInCurrentTimeStep;
+    CandidateQueue    candidateQueue;
+    double            similarityMatchedGreedily;
+    int               numberOfGroupsMatchedGreedily;
+    
+    //used for optimal matching
+    boolean useOptimalMatching;
+    double  similarityMatchedOptimally;
+    int     numberOfGroupsMatchedOptimally;
     
     public MatchedGroupGraph(GroupStructure[] groupStructure, GraphModel graphModel, int timeParam, double cutoffParam)
+    {   this(groupStructure, graphModel, timeParam, cutoffParam, false);}
+    
+    public MatchedGroupGraph(GroupStructure[] groupStructure, GraphModel graphModel, int timeParam, double cutoffParam, boolean approximate)
+    {   this(groupStructure, graphModel, timeParam, cutoffParam, approximate, false);}
+    
+    public MatchedGroupGraph(GroupStructure[] groupStructure, GraphModel graphModel, int timeParam, double cutoffParam, boolean approximate, boolean arrays)
+    {   this(groupStructure, graphModel, timeParam, cutoffParam, approximate, arrays, false);}
+    
+    public MatchedGroupGraph(GroupStructure[] groupStructure, GraphModel graphModel, int timeParam, double cutoffParam, boolean approximate, boolean arrays, boolean optimal)
     {   
-        cutoffParameter = cutoffParam;
-        timeParameter = timeParam;
+        this(timeParam, cutoffParam, approximate, arrays, optimal);
         DynamicController dc = Lookup.getDefault().lookup(DynamicController.class);   
         DynamicModel dynamicGraphModel = dc.getModel();
         Interval interval = new Interval(dynamicGraphModel.getMin(), dynamicGraphModel.getMax());
@@ -61,25 +113,291 @@ public final class MatchedGroupGraph
         this.matchGroupsAtAllTimeSteps(groupStructure, timeBegin);   
     }
     
+    //Only sets the parameters, so that the similarity and the matching can be run separately, 
+    //for groups that do not come from the dynamic model of the current workspace
+    MatchedGroupGraph(int timeParam, double cutoffParam, boolean approximate)
+    {   this(timeParam, cutoffParam, approximate, false);}
+    
+    MatchedGroupGraph(int timeParam, double cutoffParam, boolean approximate, boolean arrays)
+    {   this(timeParam, cutoffParam, approximate, arrays, false);}
+    
+    //Optimal matching works on the candidates of array matching, so it turns array matching on
+    MatchedGroupGraph(int timeParam, double cutoffParam, boolean approximate, boolean arrays, boolean optimal)
+    {
+        cutoffParameter = cutoffParam;
+        timeParameter = timeParam;
+        useApproximateMatching = approximate && (cutoffParam > 0);
+        useArrayMatching = arrays || optimal;
+        useOptimalMatching = optimal;
+    }
+    
     public void calculateSimilarityBetweenGroups(GroupStructure[] groupStructure, double timeBegin)
     {
         int totalNumberOfTimeSteps = groupStructure.length;
+        this.prepareGroupMemberships(groupStructure);
+        if(useApproximateMatching)
+            this.prepareApproximateMatching(groupStructure, timeBegin);
+        if(useArrayMatching)
+        {
+            candidatesAtTimeStep = new GroupCandidates[totalNumberOfTimeSteps];
+            candidateQueue       = new CandidateQueue(16);
+        }
         for(int currentTimeStep=(int)timeBegin+1; currentTimeStep < totalNumberOfTimeSteps-1; currentTimeStep++)
         {            
             Group[] groupArrayInCurrentTimeStep = groupStructure[currentTimeStep].groups;
             this.calculateSimilarityForAllGroupsInGivenTimeStep(groupStructure, groupArrayInCurrentTimeStep, currentTimeStep, totalNumberOfTimeSteps, timeBegin);
+            
+            //the indices of a timestep are not needed once it is out of reach of the search parameter
+            if(currentTimeStep-timeParameter >= 0)
+            {
+                groupIndexOfNodeAtTimeStep[currentTimeStep-timeParameter] = null;
+                if(useApproximateMatching)
+                    minHashIndexAtTimeStep[currentTimeStep-timeParameter] = null;
+            }
         }
+        groupIndexOfNodeAtTimeStep = null;
+        minHashIndexAtTimeStep = null;
+        candidatesInCurrentTimeStep = null;
+        if(useApproximateMatching)
+            this.writeApproximateMatchingReport();
     }
     
     public void calculateSimilarityForAllGroupsInGivenTimeStep(GroupStructure[] groupStructure, Group[] groupArrayInCurrentTimeStep, int currentTimeStep, int totalNumberOfTimeSteps, double timeBegin)
     {
         int numberOfGroupsInCurrentTimeStep = groupArrayInCurrentTimeStep.length;
+        if(useArrayMatching)
+        {
+            candidatesInCurrentTimeStep           = new GroupCandidates(numberOfGroupsInCurrentTimeStep);
+            candidatesAtTimeStep[currentTimeStep] = candidatesInCurrentTimeStep;
+        }
         for(int currentGroupIndex=0; currentGroupIndex < numberOfGroupsInCurrentTimeStep; currentGroupIndex++)                
         {
             Group currentGroup = groupArrayInCurrentTimeStep[currentGroupIndex];
-            this.calculateSimilarityForSingleGroupInGivenTimeStep(groupStructure, currentGroup, currentGroupIndex, currentTimeStep, timeBegin);               
+            if(useArrayMatching)
+                candidatesInCurrentTimeStep.startGroup(currentGroupIndex);
+            //with a cutoff of 0 every pair of groups is kept, so they are all compared
+            if(useApproximateMatching)
+                this.calculateSimilarityForSingleGroupUsingMinHash(groupStructure, currentGroup, currentGroupIndex, currentTimeStep, timeBegin);
+            else if(cutoffParameter > 0)
+                this.calculateSimilarityForSingleGroupUsingIndex(groupStructure, currentGroup, currentGroupIndex, currentTimeStep, timeBegin);
+            else
+                this.calculateSimilarityForSingleGroupInGivenTimeStep(groupStructure, currentGroup, currentGroupIndex, currentTimeStep, timeBegin);               
+            if(useArrayMatching)
+                candidatesInCurrentTimeStep.finishGroup(currentGroupIndex, candidateQueue);
+        }
+    }
+    
+    //Gives every node in a group a dense index and stores the membership of each group over these indices.
+    //The memberships are used to count the nodes two groups have in common.
+    public void prepareGroupMemberships(GroupStructure[] groupStructure)
+    {
+        denseNodeIndex = new DenseNodeIndex(groupStructure);
+        int[] indicesOfNodesInGroup = new int[16];
+        for(GroupStructure structure:groupStructure)
+        {
+            if(structure==null)
+                continue;
+            for(Group group:structure.groups)
+            {
+                if(indicesOfNodesInGroup.length < group.size())
+                    indicesOfNodesInGroup = new int[group.size()];
+                int count = 0;
+                for(Node n:group.nodes)
+                    indicesOfNodesInGroup[count++] = denseNodeIndex.indexOf(n);
+                group.membership = new GroupMembership(indicesOfNodesInGroup, count);
+            }
+        }
+        groupIndexOfNodeAtTimeStep = new int[groupStructure.length][];
+        this.ensureCapacity(16);
+    }
+    
+    //Returns an array giving, for each dense node index, the index of the group the node is in at the given timestep, or -1
+    public int[] getGroupIndexOfNodes(GroupStructure[] groupStructure, int timeStep)
+    {
+        if(groupIndexOfNodeAtTimeStep[timeStep]==null)
+        {
+            int[] groupIndexOfNode = new int[denseNodeIndex.size()];
+            Arrays.fill(groupIndexOfNode, -1);
+            Group[] groups = groupStructure[timeStep].groups;
+            for(int groupIndex = 0; groupIndex < groups.length; groupIndex++)
+            {
+                GroupMembership membership = groups[groupIndex].membership;
+                for(int i = membership.nextMember(0); i >= 0; i = membership.nextMember(i+1))
+                    groupIndexOfNode[i] = groupIndex;
+            }
+            groupIndexOfNodeAtTimeStep[timeStep] = groupIndexOfNode;
+        }
+        return groupIndexOfNodeAtTimeStep[timeStep];
+    }
+    
+    //Gives the same priority queue as calculateSimilarityForSingleGroupInGivenTimeStep, but only looks at earlier groups
+    //that share at least one node with the current group.
+    public void calculateSimilarityForSingleGroupUsingIndex(GroupStructure[] groupStructure, Group currentGroup, int currentGroupIndex, int currentTimeStep, double timeBegin)
+    {
+        int earlierTimeStep = currentTimeStep;
+        do
+        {   
+            earlierTimeStep--;
+            int numberOfSimilarGroups = this.findSimilarGroupsUsingIndex(groupStructure, currentGroup, earlierTimeStep);
+            this.addSimilarGroupsToQueue(groupStructure[earlierTimeStep].groups, earlierTimeStep, currentGroup, currentGroupIndex, numberOfSimilarGroups);
+        }while((currentTimeStep-timeParameter<earlierTimeStep)&&(earlierTimeStep>timeBegin));
+    }
+    
+    //Like calculateSimilarityForSingleGroupUsingIndex, but the earlier groups are found through their MinHash signatures.
+    //For a sample of the groups, the exact similar groups are also found to estimate how many are missed.
+    public void calculateSimilarityForSingleGroupUsingMinHash(GroupStructure[] groupStructure, Group currentGroup, int currentGroupIndex, int currentTimeStep, double timeBegin)
+    {
+        long[]  bandKeys      = this.getMinHashIndex(groupStructure, currentTimeStep).getBandKeys(currentGroupIndex);
+        boolean isSampled     = (numberOfGroupsMatched++ % recallSampleInterval) == 0;
+        int earlierTimeStep = currentTimeStep;
+        do
+        {   
+            earlierTimeStep--;
+            int numberOfSimilarGroups = this.findSimilarGroupsUsingMinHash(groupStructure, currentGroup, bandKeys, earlierTimeStep);
+            this.addSimilarGroupsToQueue(groupStructure[earlierTimeStep].groups, earlierTimeStep, currentGroup, currentGroupIndex, numberOfSimilarGroups);
+            if(isSampled)
+            {
+                numberOfSimilarGroupsFoundInSample += numberOfSimilarGroups;
+                numberOfSimilarGroupsInSample      += this.findSimilarGroupsUsingIndex(groupStructure, currentGroup, earlierTimeStep);
+            }
+        }while((currentTimeStep-timeParameter<earlierTimeStep)&&(earlierTimeStep>timeBegin));
+        if(isSampled)
+            numberOfSampledGroups++;
+    }
+    
+    //Adds the earlier groups found by one of the find methods to the priority queue of the current group
+    public void addSimilarGroupsToQueue(Group[] groupArrayInEarlierTimeStep, int earlierTimeStep, Group currentGroup, int currentGroupIndex, int numberOfSimilarGroups)
+    {
+        for(int i = 0; i < numberOfSimilarGroups; i++)
+            this.addCandidate(currentGroup, currentGroupIndex, groupArrayInEarlierTimeStep[similarGroups[i]], earlierTimeStep, similarGroups[i], similarityOfSimilarGroups[i]);
+
+        //current group has nothing in common with earlier groups
+        if(!this.hasCandidates(currentGroup, currentGroupIndex)) 
+            this.addCandidate(currentGroup, currentGroupIndex, null, earlierTimeStep, GroupCandidates.NO_EARLIER_GROUP, 0);
+    }
+    
+    //Adds an earlier group the current group could be matched to, to the candidates of the current timestep with
+    //array matching and to the priority queue of the current group otherwise. earlierGroup is null for no group.
+    public void addCandidate(Group currentGroup, int currentGroupIndex, Group earlierGroup, int earlierTimeStep, int earlierGroupIndex, double similarityIndex)
+    {
+        if(useArrayMatching)
+            candidatesInCurrentTimeStep.add(currentGroupIndex, earlierTimeStep, earlierGroupIndex, similarityIndex);
+        else
+            currentGroup.priorityQueue.add(new PriorityQueueElement(earlierGroup, currentGroupIndex, similarityIndex));
+    }
+    
+    public boolean hasCandidates(Group currentGroup, int currentGroupIndex)
+    {
+        if(useArrayMatching)
+            return candidatesInCurrentTimeStep.hasCandidates(currentGroupIndex);
+        return currentGroup.priorityQueue.peek()!=null;
+    }
+    
+    //Puts the indices of the groups at the earlier timestep with a Jaccard index of at least the cutoff into similarGroups,
+    //in increasing order, and returns how many there are. The number of shared nodes is counted by looking up the 
+    //earlier group of each node of the current group, so the cost depends on the overlap instead of the number of groups.
+    public int findSimilarGroupsUsingIndex(GroupStructure[] groupStructure, Group currentGroup, int earlierTimeStep)
+    {
+        Group[] groupArrayInEarlierTimeStep = groupStructure[earlierTimeStep].groups;
+        int[]   groupIndexOfNode            = this.getGroupIndexOfNodes(groupStructure, earlierTimeStep);
+        this.ensureCapacity(groupArrayInEarlierTimeStep.length);
+        int[]   overlappingGroups           = similarGroups;
+        int     numberOfOverlappingGroups   = 0;
+        
+        GroupMembership membership = currentGroup.membership;
+        for(int n = membership.nextMember(0); n >= 0; n = membership.nextMember(n+1))
+        {
+            int earlierGroupIndex = groupIndexOfNode[n];
+            if(earlierGroupIndex >= 0)
+            {
+                if(numberOfSharedNodes[earlierGroupIndex]==0)
+                    overlappingGroups[numberOfOverlappingGroups++] = earlierGroupIndex;
+                numberOfSharedNodes[earlierGroupIndex]++;
+            }
+        }
+        
+        //earlier groups are kept in the same order as when every group is compared
+        Arrays.sort(overlappingGroups, 0, numberOfOverlappingGroups);
+        int numberOfSimilarGroups = 0;
+        for(int i = 0; i < numberOfOverlappingGroups; i++)
+        {
+            int    earlierGroupIndex  = overlappingGroups[i];
+            Group  earlierGroup       = groupArrayInEarlierTimeStep[earlierGroupIndex];
+            double sizeOfIntersection = numberOfSharedNodes[earlierGroupIndex];
+            double sizeOfUnion        = currentGroup.size() + earlierGroup.size() - numberOfSharedNodes[earlierGroupIndex];
+            double similarityIndex    = sizeOfIntersection/sizeOfUnion;
+            numberOfSharedNodes[earlierGroupIndex] = 0;
+            if(similarityIndex >= cutoffParameter)   
+            {
+                similarGroups[numberOfSimilarGroups]               = earlierGroupIndex;
+                similarityOfSimilarGroups[numberOfSimilarGroups++] = similarityIndex;
+            }
+        }
+        return numberOfSimilarGroups;
+    }
+    
+    //Same as findSimilarGroupsUsingIndex, but only the earlier groups that share a band of their MinHash signature
+    //with the current group are compared. bandKeys are the keys of the bands of the current group.
+    public int findSimilarGroupsUsingMinHash(GroupStructure[] groupStructure, Group currentGroup, long[] bandKeys, int earlierTimeStep)
+    {
+        Group[] groupArrayInEarlierTimeStep = groupStructure[earlierTimeStep].groups;
+        this.ensureCapacity(groupArrayInEarlierTimeStep.length);
+        int numberOfCandidates    = this.getMinHashIndex(groupStructure, earlierTimeStep).findCandidates(bandKeys, similarGroups);
+        int numberOfSimilarGroups = 0;
+        for(int i = 0; i < numberOfCandidates; i++)
+        {
+            int    earlierGroupIndex = similarGroups[i];
+            double similarityIndex   = currentGroup.membership.jaccard(groupArrayInEarlierTimeStep[earlierGroupIndex].membership);
+            if(similarityIndex >= cutoffParameter)   
+            {
+                similarGroups[numberOfSimilarGroups]               = earlierGroupIndex;
+                similarityOfSimilarGroups[numberOfSimilarGroups++] = similarityIndex;
+            }
+        }
+        return numberOfSimilarGroups;
+    }
+    
+    public void ensureCapacity(int numberOfGroups)
+    {
+        if((numberOfSharedNodes == null)||(numberOfSharedNodes.length < numberOfGroups))
+        {
+            numberOfSharedNodes       = new int[numberOfGroups];
+            similarGroups             = new int[numberOfGroups];
+            similarityOfSimilarGroups = new double[numberOfGroups];
         }
     }
+    
+    //Chooses the bands of the MinHash signatures from the cutoff, and how often a group is sampled to estimate the recall
+    public void prepareApproximateMatching(GroupStructure[] groupStructure, double timeBegin)
+    {
+        minHashIndexAtTimeStep = new MinHashGroupIndex[groupStructure.length];
+        rowsPerBand = MinHashGroupIndex.chooseRowsPerBand(cutoffParameter);
+        int numberOfGroupsToMatch = 0;
+        for(int timeStep=(int)timeBegin+1; timeStep < groupStructure.length-1; timeStep++)
+            numberOfGroupsToMatch += groupStructure[timeStep].groups.length;
+        recallSampleInterval = Math.max(1, numberOfGroupsToMatch/RECALL_SAMPLE_SIZE);
+    }
+    
+    public MinHashGroupIndex getMinHashIndex(GroupStructure[] groupStructure, int timeStep)
+    {
+        if(minHashIndexAtTimeStep[timeStep]==null)
+            minHashIndexAtTimeStep[timeStep] = new MinHashGroupIndex(groupStructure[timeStep].groups, rowsPerBand);
+        return minHashIndexAtTimeStep[timeStep];
+    }
+    
+    public void writeApproximateMatchingReport()
+    {
+        report = "Approximate group matching: MinHash signatures of " + MinHashGroupIndex.NUMBER_OF_BINS + " values in "
+               + MinHashGroupIndex.NUMBER_OF_BINS/rowsPerBand + " bands of " + rowsPerBand + "<br>";
+        if(numberOfSimilarGroupsInSample > 0)
+            report = report.concat("Estimated recall against exact matching: " 
+                   + ((double)numberOfSimilarGroupsFoundInSample/numberOfSimilarGroupsInSample)
+                   + " (" + numberOfSimilarGroupsFoundInSample + " of " + numberOfSimilarGroupsInSample 
+                   + " similar earlier groups found for " + numberOfSampledGroups + " sampled groups)<br>");
+        else
+            report = report.concat("Estimated recall against exact matching: no similar earlier groups in the " 
+                   + numberOfSampledGroups + " sampled groups<br>");
+    }
    
     public void calculateSimilarityForSingleGroupInGivenTimeStep(GroupStructure[] groupStructure, Group currentGroup, int currentGroupIndex, int currentTimeStep, double timeBegin)
     {
@@ -94,24 +412,20 @@ public final class MatchedGroupGraph
                 Group  earlierGroup    = groupArrayInEarlierTimeStep[earlierGroupIndex];
                 double similarityIndex = this.calculateJaccard(currentGroup, earlierGroup);
                 if(similarityIndex >= cutoffParameter)   
-                {
-                    PriorityQueueElement newElement = new PriorityQueueElement(earlierGroup, currentGroupIndex, similarityIndex);
-                    currentGroup.priorityQueue.add(newElement);            
-                }
+                    this.addCandidate(currentGroup, currentGroupIndex, earlierGroup, earlierTimeStep, earlierGroupIndex, similarityIndex);
             }
   
             //current group has nothing in common with earlier groups
-            if(currentGroup.priorityQueue.peek()==null) 
-            {
-                Group tempGroup = null;
-                PriorityQueueElement tempHeadOfQueue = new PriorityQueueElement(tempGroup, currentGroupIndex, 0);
-                currentGroup.priorityQueue.add(tempHeadOfQueue);
-            } 
+            if(!this.hasCandidates(currentGroup, currentGroupIndex)) 
+                this.addCandidate(currentGroup, currentGroupIndex, null, earlierTimeStep, GroupCandidates.NO_EARLIER_GROUP, 0);
         }while((currentTimeStep-timeParameter<earlierTimeStep)&&(earlierTimeStep>timeBegin));
     }
     
     public double calculateJaccard(Group g, Group gPrime)
     {  
+        if((g.membership != null)&&(gPrime.membership != null))
+            return g.membership.jaccard(gPrime.membership);
+        
         Set<String> idsOfNodesInG      = new HashSet<String>();
         Set<String> idsOfNodesInGPrime = new HashSet<String>(); 
 
@@ -138,6 +452,10 @@ public final class MatchedGroupGraph
         int totalNumberOfTimeSteps        = groupStructure.length;
         int numberOfGroupsInFirstTimeStep = groupStructure[(int)timeBegin].groups.length;
         currentHighestColorID = 1;
+        similarityMatchedGreedily      = 0;
+        numberOfGroupsMatchedGreedily  = 0;
+        similarityMatchedOptimally     = 0;
+        numberOfGroupsMatchedOptimally = 0;
         
         //color each group present in initial timestep its own color
         for(int currentGroupIndex = 0; currentGroupIndex < numberOfGroupsInFirstTimeStep; currentGroupIndex++)
@@ -149,10 +467,22 @@ public final class MatchedGroupGraph
         //go through remaining timesteps sequentially and color them through matching
         for(int currentTimeStep=(int)timeBegin+1; currentTimeStep < totalNumberOfTimeSteps-1; currentTimeStep++)
             this.matchGroupsAtGivenTimeStep(groupStructure, currentTimeStep);
+        if(useOptimalMatching)
+            this.writeOptimalMatchingReport();
     }
     
     public void matchGroupsAtGivenTimeStep(GroupStructure[] groupStructure, int currentTimeStep)
     {
+        if(useOptimalMatching)
+        {
+            this.matchGroupsAtGivenTimeStepOptimally(groupStructure, currentTimeStep);
+            return;
+        }
+        if(useArrayMatching)
+        {
+            this.matchGroupsAtGivenTimeStepUsingCandidates(groupStructure, currentTimeStep);
+            return;
+        }
         Set<Integer> listOfColorIdsUsedInThisTimeStep        = new HashSet<Integer>();
         Set<Group>   listOfGroupsInThisTimeStepWithoutAColor = new HashSet<Group>();
         int numberOfGroupsInCurrentTimeStep                  = groupStructure[currentTimeStep].groups.length;
@@ -212,6 +542,114 @@ public final class MatchedGroupGraph
         } 
     }
     
+    //Same as matchGroupsAtGivenTimeStep, over the candidates of the timestep. The queue of the timestep holds the 
+    //next candidate of each group that has no color yet, like it holds the heads of the priority queues of the groups.
+    public void matchGroupsAtGivenTimeStepUsingCandidates(GroupStructure[] groupStructure, int currentTimeStep)
+    {
+        GroupCandidates candidates = candidatesAtTimeStep[currentTimeStep];
+        Group[] groupArrayInCurrentTimeStep = groupStructure[currentTimeStep].groups;
+        BitSet  colorIdsUsedInThisTimeStep  = new BitSet(currentHighestColorID);
+        
+        candidateQueue.clear(candidates.similarityOfCandidate);
+        for(int currentGroupIndex = 0; currentGroupIndex < groupArrayInCurrentTimeStep.length; currentGroupIndex++)
+            if(candidates.hasCandidates(currentGroupIndex))
+                candidateQueue.add(candidates.getFirstCandidate(currentGroupIndex));
+        
+        while(!candidateQueue.isEmpty())
+        {
+            int   candidate         = candidateQueue.poll();
+            Group thisGroup         = groupArrayInCurrentTimeStep[candidates.getGroup(candidate)];
+            int   earlierGroupIndex = candidates.getEarlierGroupIndex(candidate);
+            
+            if(earlierGroupIndex != GroupCandidates.NO_EARLIER_GROUP)
+            {
+                int colorIdOfPreviousGroup = groupStructure[candidates.getEarlierTimeStep(candidate)].groups[earlierGroupIndex].getColorId();
+                if(colorIdsUsedInThisTimeStep.get(colorIdOfPreviousGroup))
+                {
+                    int nextCandidate = candidates.getNextCandidate(candidate);
+                    if(nextCandidate >= 0)
+                        candidateQueue.add(nextCandidate);
+                    else    //all remaining edges have similarity equal to 0. Group is given a unique color
+                        thisGroup.setColorId(currentHighestColorID++);
+                }
+                else    //the color of most similar group has not been used already in current time step
+                {
+                    thisGroup.setColorId(colorIdOfPreviousGroup);
+                    colorIdsUsedInThisTimeStep.set(colorIdOfPreviousGroup);
+                    similarityMatchedGreedily += candidates.getSimilarity(candidate);
+                    numberOfGroupsMatchedGreedily++;
+                }
+            }
+            else    //previous group DNE. current group is given its own color
+                thisGroup.setColorId(currentHighestColorID++);
+        }
+        
+        for(int currentGroupIndex = 0; currentGroupIndex < groupArrayInCurrentTimeStep.length; currentGroupIndex++)
+            if(!candidates.hasCandidates(currentGroupIndex))
+                groupArrayInCurrentTimeStep[currentGroupIndex].setColorId(currentHighestColorID++);
+        candidatesAtTimeStep[currentTimeStep] = null;
+    }
+    
+    //Runs the greedy matching first, for the report, on the same earlier colors as the optimal matching, and then
+    //replaces its colors with those of the assignment with the highest total similarity over the same candidates.
+    //A group is matched to the color of an earlier group, since earlier groups of the same community at different
+    //timesteps can only give their color to one group.
+    public void matchGroupsAtGivenTimeStepOptimally(GroupStructure[] groupStructure, int currentTimeStep)
+    {
+        GroupCandidates candidates = candidatesAtTimeStep[currentTimeStep];
+        Group[] groupArrayInCurrentTimeStep = groupStructure[currentTimeStep].groups;
+        int firstNewColorID = currentHighestColorID;
+        this.matchGroupsAtGivenTimeStepUsingCandidates(groupStructure, currentTimeStep);
+        currentHighestColorID = firstNewColorID;
+        
+        //the colors of the earlier groups are numbered in the order they are first seen
+        IntIntHashMap indexOfColorId = new IntIntHashMap(groupArrayInCurrentTimeStep.length);
+        int[]         colorIdOfIndex = new int[16];
+        int           numberOfColors = 0;
+        OptimalGroupAssignment assignment = new OptimalGroupAssignment(groupArrayInCurrentTimeStep.length);
+        for(int candidate = 0; candidate < candidates.size(); candidate++)
+        {
+            int earlierGroupIndex = candidates.getEarlierGroupIndex(candidate);
+            if(earlierGroupIndex == GroupCandidates.NO_EARLIER_GROUP)
+                continue;
+            int colorId    = groupStructure[candidates.getEarlierTimeStep(candidate)].groups[earlierGroupIndex].getColorId();
+            int colorIndex = indexOfColorId.get(colorId);
+            if(colorIndex < 0)
+            {
+                if(numberOfColors == colorIdOfIndex.length)
+                    colorIdOfIndex = Arrays.copyOf(colorIdOfIndex, 2*numberOfColors);
+                colorIndex = numberOfColors++;
+                colorIdOfIndex[colorIndex] = colorId;
+                indexOfColorId.put(colorId, colorIndex);
+            }
+            assignment.addEdge(candidates.getGroup(candidate), colorIndex, candidates.getSimilarity(candidate));
+        }
+        similarityMatchedOptimally     += assignment.solve();
+        numberOfGroupsMatchedOptimally += assignment.getNumberOfMatchedGroups();
+        
+        //unmatched groups are given new colors in the order of the groups
+        for(int currentGroupIndex = 0; currentGroupIndex < groupArrayInCurrentTimeStep.length; currentGroupIndex++)
+        {
+            int colorIndex = assignment.getColorOfGroup(currentGroupIndex);
+            if(colorIndex >= 0)
+                groupArrayInCurrentTimeStep[currentGroupIndex].setColorId(colorIdOfIndex[colorIndex]);
+            else
+                groupArrayInCurrentTimeStep[currentGroupIndex].setColorId(currentHighestColorID++);
+        }
+    }
+    
+    public void writeOptimalMatchingReport()
+    {
+        String optimalMatchingReport = "Optimal group matching: total Jaccard index of matched groups " + similarityMatchedOptimally 
+                                     + " (" + numberOfGroupsMatchedOptimally + " groups), against " + similarityMatchedGreedily
+                                     + " (" + numberOfGroupsMatchedGreedily + " groups) with greedy matching of each timestep"
+                                     + " on the same colors of earlier timesteps<br>";
+        if(report == null)
+            report = optimalMatchingReport;
+        else
+            report = report.concat(optimalMatchingReport);
+    }
+    
     public String getReport()
     {   return report;}
 }
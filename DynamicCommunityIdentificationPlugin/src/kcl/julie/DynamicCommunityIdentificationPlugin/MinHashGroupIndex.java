@@ -0,0 +1,156 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The MinHashGroupIndex is used by the approximate group matching to find the groups
+ * at one timestep that are likely to be similar to a given group, without counting
+ * the nodes it shares with every group. Each group gets a MinHash signature: the
+ * nodes are hashed once into a fixed number of bins, and the smallest hash in each
+ * bin is kept. Two groups have the same value in a bin with a probability close to
+ * their Jaccard index. The signature is cut into bands of a few bins, and two groups
+ * are candidates when all the bins of at least one band are the same. The number
+ * of bins per band is chosen from the Jaccard cutoff, so that a pair of groups at
+ * the cutoff is found with high probability. Candidates are then checked with the
+ * exact Jaccard index, so a match is never wrong but can occasionally be missed.
+ */
+
+public class MinHashGroupIndex
+{
+    public static final int    NUMBER_OF_BINS        = 128;
+    public static final double PROBABILITY_AT_CUTOFF = 0.99;
+    public static final int    MAX_NUMBER_OF_GROUPS  = 1 << 24;
+
+    long[][] bandKeysOfGroup;
+    long[][] sortedEntriesOfBand;
+    int      rowsPerBand;
+    int      numberOfBands;
+    int[]    candidateStamp;
+    int      stamp;
+
+    //Up to 2^24 groups can be kept at one timestep, since the index of a group is kept in the low 24 bits of each entry
+    public MinHashGroupIndex(Group[] groups, int rowsPerBand)
+    {
+        if(groups.length > MAX_NUMBER_OF_GROUPS)
+            throw new IllegalArgumentException("A timestep has " + groups.length + " groups, more than the "
+                                             + MAX_NUMBER_OF_GROUPS + " that MinHash matching can index");
+        this.rowsPerBand   = rowsPerBand;
+        this.numberOfBands = NUMBER_OF_BINS/rowsPerBand;
+        bandKeysOfGroup    = new long[groups.length][];
+        for(int groupIndex = 0; groupIndex < groups.length; groupIndex++)
+            bandKeysOfGroup[groupIndex] = this.getBandKeys(calculateSignature(groups[groupIndex].membership));
+
+        //each entry holds the top bits of the key of a band and the index of the group, so sorting
+        //the entries puts the groups with the same key next to each other
+        sortedEntriesOfBand = new long[numberOfBands][groups.length];
+        for(int band = 0; band < numberOfBands; band++)
+        {
+            for(int groupIndex = 0; groupIndex < groups.length; groupIndex++)
+                sortedEntriesOfBand[band][groupIndex] = (bandKeysOfGroup[groupIndex][band] << 24) | groupIndex;
+            Arrays.sort(sortedEntriesOfBand[band]);
+        }
+        candidateStamp = new int[groups.length];
+    }
+
+    //Chooses the largest number of bins per band for which a pair of groups with a Jaccard index equal
+    //to the cutoff still shares at least one band with probability PROBABILITY_AT_CUTOFF
+    public static int chooseRowsPerBand(double cutoffParameter)
+    {
+        for(int rows = 16; rows > 1; rows--)
+        {
+            double probabilityOfOneBand = Math.pow(cutoffParameter, rows);
+            double probabilityOfAnyBand = 1 - Math.pow(1 - probabilityOfOneBand, NUMBER_OF_BINS/rows);
+            if(probabilityOfAnyBand >= PROBABILITY_AT_CUTOFF)
+                return rows;
+        }
+        return 1;
+    }
+
+    //One permutation MinHash: every node is hashed once, into one bin. Empty bins take the value of the next
+    //bin that is not empty, mixed with the distance to it, so small groups still get a full signature.
+    public static int[] calculateSignature(GroupMembership membership)
+    {
+        int[] minimumOfBin = new int[NUMBER_OF_BINS];
+        Arrays.fill(minimumOfBin, -1);
+        for(int i = membership.nextMember(0); i >= 0; i = membership.nextMember(i+1))
+        {
+            long hash  = mix(i + 0x9E3779B97F4A7C15L);
+            int  bin   = (int)(((hash >>> 32)*NUMBER_OF_BINS) >>> 32);
+            int  value = (int)(hash & 0x7FFFFFFF);
+            if((minimumOfBin[bin] < 0)||(value < minimumOfBin[bin]))
+                minimumOfBin[bin] = value;
+        }
+
+        int[] signature = new int[NUMBER_OF_BINS];
+        for(int bin = 0; bin < NUMBER_OF_BINS; bin++)
+        {
+            signature[bin] = minimumOfBin[bin];
+            for(int distance = 1; (signature[bin] < 0)&&(distance < NUMBER_OF_BINS); distance++)
+            {
+                int value = minimumOfBin[(bin+distance)%NUMBER_OF_BINS];
+                if(value >= 0)
+                    signature[bin] = (int)(mix(((long)value << 8) | distance) & 0x7FFFFFFF);
+            }
+        }
+        return signature;
+    }
+
+    //Returns a 39 bit key for the bins of each band
+    public long[] getBandKeys(int[] signature)
+    {
+        long[] bandKeys = new long[numberOfBands];
+        for(int band = 0; band < numberOfBands; band++)
+        {
+            long key = mix(band+1);
+            for(int row = 0; row < rowsPerBand; row++)
+                key = mix(key + signature[band*rowsPerBand+row]);
+            bandKeys[band] = key >>> 25;
+        }
+        return bandKeys;
+    }
+
+    //Puts the indices of the groups that share a band key with the given keys into candidates,
+    //in increasing order, and returns how many there are
+    public int findCandidates(long[] bandKeys, int[] candidates)
+    {
+        if(++stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(candidateStamp, 0);
+            stamp = 1;
+        }
+        int numberOfCandidates = 0;
+        for(int band = 0; band < numberOfBands; band++)
+        {
+            long   key     = bandKeys[band];
+            long[] entries = sortedEntriesOfBand[band];
+            int position = Arrays.binarySearch(entries, key << 24);
+            if(position < 0)
+                position = -position-1;
+            for(; (position < entries.length)&&((entries[position] >>> 24) == key); position++)
+            {
+                int groupIndex = (int)(entries[position] & 0xFFFFFF);
+                if(candidateStamp[groupIndex] != stamp)
+                {
+                    candidateStamp[groupIndex] = stamp;
+                    candidates[numberOfCandidates++] = groupIndex;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, numberOfCandidates);
+        return numberOfCandidates;
+    }
+
+    public long[] getBandKeys(int groupIndex)
+    {return bandKeysOfGroup[groupIndex];}
+
+    public int size()
+    {return bandKeysOfGroup.length;}
+
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 33))*0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33))*0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
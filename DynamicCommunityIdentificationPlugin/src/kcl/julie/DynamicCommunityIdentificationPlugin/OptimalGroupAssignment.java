@@ -0,0 +1,275 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The OptimalGroupAssignment gives the groups of one timestep the colors of earlier groups
+ * so that the total similarity of the matched groups is as high as possible, with at most
+ * one group of each color. The groups and the colors are the two sides of a bipartite graph,
+ * and an edge joins a group to the color of an earlier group it is similar enough to.
+ *
+ * The matching is found as an assignment of minimum cost, where an edge costs minus its
+ * similarity, and each group also has a column of its own that costs 0 and stands for
+ * leaving the group unmatched. The groups are assigned one at a time, each along the
+ * shortest augmenting path from the group, found with Dijkstra's algorithm over costs
+ * reduced by a potential on each column, as in the method of Jonker and Volgenant.
+ * Since the column of the group itself is always free, the search stops once the paths
+ * would cost more than leaving the group unmatched, so it usually stays among the few
+ * groups and colors next to the group, and the graph is never made dense.
+ */
+
+public class OptimalGroupAssignment
+{
+    int      numberOfGroups;
+    int      numberOfColors;
+    int      numberOfEdges;
+    int[]    groupOfEdge;
+    int[]    colorOfEdge;
+    double[] similarityOfEdge;
+    double   totalSimilarity;
+    int      numberOfMatchedGroups;
+    int[]    firstEdgeOfGroup;
+    int[]    edgesOfGroup;
+
+    //the columns are the colors, then one column for each group to stay unmatched
+    int[]    columnOfGroup;
+    int[]    matchedEdgeOfGroup;
+    int[]    groupOfColumn;
+    double[] potentialOfColumn;
+
+    //used by the search for a path
+    double[]  distance;
+    int[]     previousGroupOfColumn;
+    int[]     previousEdgeOfColumn;
+    boolean[] isFinished;
+    int[]     reachedColumns;
+    int       numberOfReachedColumns;
+    double[]  heapDistance;
+    int[]     heapColumn;
+    int       heapSize;
+
+    public OptimalGroupAssignment(int numberOfGroups)
+    {
+        this.numberOfGroups = numberOfGroups;
+        groupOfEdge         = new int[Math.max(16, 2*numberOfGroups)];
+        colorOfEdge         = new int[groupOfEdge.length];
+        similarityOfEdge    = new double[groupOfEdge.length];
+    }
+
+    //Colors are numbered from 0. Edges with a similarity of 0 or less would never be worth matching, so they are left out
+    public void addEdge(int groupIndex, int colorIndex, double similarity)
+    {
+        if(similarity <= 0)
+            return;
+        if(numberOfEdges == groupOfEdge.length)
+        {
+            groupOfEdge      = Arrays.copyOf(groupOfEdge, 2*numberOfEdges);
+            colorOfEdge      = Arrays.copyOf(colorOfEdge, 2*numberOfEdges);
+            similarityOfEdge = Arrays.copyOf(similarityOfEdge, 2*numberOfEdges);
+        }
+        groupOfEdge[numberOfEdges]      = groupIndex;
+        colorOfEdge[numberOfEdges]      = colorIndex;
+        similarityOfEdge[numberOfEdges] = similarity;
+        numberOfEdges++;
+        numberOfColors = Math.max(numberOfColors, colorIndex+1);
+    }
+
+    //Finds the matching and returns its total similarity
+    public double solve()
+    {
+        this.sortEdgesByGroup();
+        int numberOfColumns   = numberOfColors+numberOfGroups;
+        columnOfGroup         = new int[numberOfGroups];
+        matchedEdgeOfGroup    = new int[numberOfGroups];
+        groupOfColumn         = new int[numberOfColumns];
+        potentialOfColumn     = new double[numberOfColumns];
+        distance              = new double[numberOfColumns];
+        previousGroupOfColumn = new int[numberOfColumns];
+        previousEdgeOfColumn  = new int[numberOfColumns];
+        isFinished            = new boolean[numberOfColumns];
+        reachedColumns        = new int[numberOfColumns];
+        heapDistance          = new double[16];
+        heapColumn            = new int[16];
+        Arrays.fill(columnOfGroup, -1);
+        Arrays.fill(matchedEdgeOfGroup, -1);
+        Arrays.fill(groupOfColumn, -1);
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+
+        for(int groupIndex = 0; groupIndex < numberOfGroups; groupIndex++)
+        {
+            //a group without edges can only be left unmatched
+            if(firstEdgeOfGroup[groupIndex+1] == firstEdgeOfGroup[groupIndex])
+            {
+                columnOfGroup[groupIndex]                = numberOfColors+groupIndex;
+                groupOfColumn[numberOfColors+groupIndex] = groupIndex;
+            }
+            else
+                this.assignGroup(groupIndex);
+        }
+
+        totalSimilarity       = 0;
+        numberOfMatchedGroups = 0;
+        for(int groupIndex = 0; groupIndex < numberOfGroups; groupIndex++)
+        {
+            if(matchedEdgeOfGroup[groupIndex] >= 0)
+            {
+                totalSimilarity += similarityOfEdge[matchedEdgeOfGroup[groupIndex]];
+                numberOfMatchedGroups++;
+            }
+        }
+        return totalSimilarity;
+    }
+
+    void sortEdgesByGroup()
+    {
+        firstEdgeOfGroup = new int[numberOfGroups+1];
+        edgesOfGroup     = new int[numberOfEdges];
+        for(int edge = 0; edge < numberOfEdges; edge++)
+            firstEdgeOfGroup[groupOfEdge[edge]+1]++;
+        for(int groupIndex = 0; groupIndex < numberOfGroups; groupIndex++)
+            firstEdgeOfGroup[groupIndex+1] += firstEdgeOfGroup[groupIndex];
+        int[] nextEdgeOfGroup = Arrays.copyOf(firstEdgeOfGroup, numberOfGroups);
+        for(int edge = 0; edge < numberOfEdges; edge++)
+            edgesOfGroup[nextEdgeOfGroup[groupOfEdge[edge]]++] = edge;
+    }
+
+    //Finds the shortest path from the group to a free column, through columns that are already assigned and the groups
+    //they are assigned to, and moves every group on the path to the next column
+    void assignGroup(int startGroup)
+    {
+        numberOfReachedColumns = 0;
+        heapSize               = 0;
+        this.scanGroup(startGroup, 0);
+
+        int    endColumn;
+        double distanceOfEnd;
+        while(true)
+        {
+            double columnDistance = heapDistance[0];
+            int    column         = this.pop();
+            if(isFinished[column]||(columnDistance > distance[column]))
+                continue;
+            isFinished[column] = true;
+            if(groupOfColumn[column] < 0)
+            {
+                endColumn     = column;
+                distanceOfEnd = columnDistance;
+                break;
+            }
+            this.scanGroup(groupOfColumn[column], columnDistance);
+        }
+
+        //the finished columns move by their distance less that of the end, which keeps the column of each group
+        //the cheapest for it under the reduced costs
+        for(int i = 0; i < numberOfReachedColumns; i++)
+        {
+            int column = reachedColumns[i];
+            if(isFinished[column])
+                potentialOfColumn[column] += distance[column]-distanceOfEnd;
+            distance[column]   = Double.POSITIVE_INFINITY;
+            isFinished[column] = false;
+        }
+
+        int column = endColumn;
+        while(true)
+        {
+            int groupIndex     = previousGroupOfColumn[column];
+            int previousColumn = columnOfGroup[groupIndex];
+            columnOfGroup[groupIndex]      = column;
+            matchedEdgeOfGroup[groupIndex] = previousEdgeOfColumn[column];
+            groupOfColumn[column]          = groupIndex;
+            if(groupIndex == startGroup)
+                return;
+            column = previousColumn;
+        }
+    }
+
+    //Relaxes the columns of a group reached at the given distance. The reduced cost of a column is its cost less its
+    //potential, less that of the column the group is assigned to, so that the assigned column is free to reach
+    void scanGroup(int groupIndex, double groupDistance)
+    {
+        double costOfAssignedColumn = 0;
+        int    assignedColumn       = columnOfGroup[groupIndex];
+        if(assignedColumn >= 0)
+        {
+            int assignedEdge = matchedEdgeOfGroup[groupIndex];
+            costOfAssignedColumn = (assignedEdge < 0 ? 0 : -similarityOfEdge[assignedEdge])-potentialOfColumn[assignedColumn];
+        }
+        for(int i = firstEdgeOfGroup[groupIndex]; i < firstEdgeOfGroup[groupIndex+1]; i++)
+        {
+            int edge = edgesOfGroup[i];
+            this.relax(colorOfEdge[edge], edge, groupIndex, groupDistance-similarityOfEdge[edge]-costOfAssignedColumn);
+        }
+        this.relax(numberOfColors+groupIndex, -1, groupIndex, groupDistance-costOfAssignedColumn);
+    }
+
+    void relax(int column, int edge, int groupIndex, double reducedDistance)
+    {
+        double newDistance = reducedDistance-potentialOfColumn[column];
+        if(isFinished[column]||(newDistance >= distance[column]))
+            return;
+        if(distance[column] == Double.POSITIVE_INFINITY)
+            reachedColumns[numberOfReachedColumns++] = column;
+        distance[column]              = newDistance;
+        previousGroupOfColumn[column] = groupIndex;
+        previousEdgeOfColumn[column]  = edge;
+        this.push(newDistance, column);
+    }
+
+    void push(double columnDistance, int column)
+    {
+        if(heapSize == heapColumn.length)
+        {
+            heapDistance = Arrays.copyOf(heapDistance, 2*heapSize);
+            heapColumn   = Arrays.copyOf(heapColumn, 2*heapSize);
+        }
+        int k = heapSize++;
+        while(k > 0)
+        {
+            int parent = (k-1) >>> 1;
+            if(heapDistance[parent] <= columnDistance)
+                break;
+            heapDistance[k] = heapDistance[parent];
+            heapColumn[k]   = heapColumn[parent];
+            k = parent;
+        }
+        heapDistance[k] = columnDistance;
+        heapColumn[k]   = column;
+    }
+
+    int pop()
+    {
+        int    first        = heapColumn[0];
+        double lastDistance = heapDistance[--heapSize];
+        int    lastColumn   = heapColumn[heapSize];
+        int k = 0;
+        while(2*k+1 < heapSize)
+        {
+            int child = 2*k+1;
+            if((child+1 < heapSize)&&(heapDistance[child+1] < heapDistance[child]))
+                child++;
+            if(lastDistance <= heapDistance[child])
+                break;
+            heapDistance[k] = heapDistance[child];
+            heapColumn[k]   = heapColumn[child];
+            k = child;
+        }
+        heapDistance[k] = lastDistance;
+        heapColumn[k]   = lastColumn;
+        return first;
+    }
+
+    //Returns the index of the color matched to the group, or -1 if the group is left unmatched
+    public int getColorOfGroup(int groupIndex)
+    {
+        int edge = matchedEdgeOfGroup[groupIndex];
+        return edge < 0 ? -1 : colorOfEdge[edge];
+    }
+
+    public double getTotalSimilarity()
+    {   return totalSimilarity;}
+
+    public int getNumberOfMatchedGroups()
+    {   return numberOfMatchedGroups;}
+}
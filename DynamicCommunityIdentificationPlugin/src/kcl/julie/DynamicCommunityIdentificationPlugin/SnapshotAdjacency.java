@@ -0,0 +1,126 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+
+/*
+ * @author Julie Kauffman
+ * The SnapshotAdjacency is a lightweight copy of the graph at one timestep, kept in
+ * compressed sparse row form. Each node in the snapshot is given a local index, and 
+ * the neighbors of node i and the weights of the edges to them are found in 
+ * edgeTargets and edgeWeights between edgeOffsets[i] and edgeOffsets[i+1]. Edges are
+ * treated as undirected, so every edge between two different nodes is stored twice.
+ * Once it has been extracted from Gephi, the snapshot does not refer to the Gephi 
+ * graph anymore, so communities can be detected on several snapshots at once on 
+ * different threads.
+ */
+
+public class SnapshotAdjacency 
+{
+    Node[]   nodes;
+    int[]    edgeOffsets;
+    int[]    edgeTargets;
+    double[] edgeWeights;
+    int      timeStep;
+    
+    public SnapshotAdjacency(Graph snapshot, int timeStep)
+    {
+        this.timeStep = timeStep;
+        int numberOfNodes = snapshot.getNodeCount();
+        nodes = new Node[numberOfNodes];
+        int index = 0;
+        int minNodeId = Integer.MAX_VALUE;
+        int maxNodeId = Integer.MIN_VALUE;
+        for(Node n : snapshot.getNodes())
+        {
+            nodes[index++] = n;
+            minNodeId = Math.min(minNodeId, n.getId());
+            maxNodeId = Math.max(maxNodeId, n.getId());
+        }
+        
+        //Gephi node ids are usually close together, so the local index is looked up in an array when possible
+        int[] localIndexOfNodeId = null;
+        Map<Integer, Integer> localIndexOfNode = null;
+        if((numberOfNodes > 0)&&((long)maxNodeId-minNodeId < 4L*numberOfNodes+1024))
+        {
+            localIndexOfNodeId = new int[maxNodeId-minNodeId+1];
+            for(int i = 0; i < numberOfNodes; i++)
+                localIndexOfNodeId[nodes[i].getId()-minNodeId] = i;
+        }
+        else
+        {
+            localIndexOfNode = new HashMap<Integer, Integer>();
+            for(int i = 0; i < numberOfNodes; i++)
+                localIndexOfNode.put(nodes[i].getId(), i);
+        }
+        
+        Edge[] edges = snapshot.getEdges().toArray();
+        int[]    sources = new int[edges.length];
+        int[]    targets = new int[edges.length];
+        double[] weights = new double[edges.length];
+        for(int e = 0; e < edges.length; e++)
+        {
+            int sourceId = edges[e].getSource().getId();
+            int targetId = edges[e].getTarget().getId();
+            if(localIndexOfNodeId != null)
+            {
+                sources[e] = localIndexOfNodeId[sourceId-minNodeId];
+                targets[e] = localIndexOfNodeId[targetId-minNodeId];
+            }
+            else
+            {
+                sources[e] = localIndexOfNode.get(sourceId);
+                targets[e] = localIndexOfNode.get(targetId);
+            }
+            weights[e] = edges[e].getWeight();
+        }
+        this.buildCompressedRows(sources, targets, weights, edges.length);
+    }
+    
+    //Builds the snapshot from a list of edges, given by the local indices of their nodes, without a Gephi graph.
+    //This is used by GexfSpellReader.
+    public SnapshotAdjacency(Node[] nodes, int[] sources, int[] targets, double[] weights, int numberOfEdges, int timeStep)
+    {
+        this.timeStep = timeStep;
+        this.nodes    = nodes;
+        this.buildCompressedRows(sources, targets, weights, numberOfEdges);
+    }
+    
+    void buildCompressedRows(int[] sources, int[] targets, double[] weights, int numberOfEdges)
+    {
+        int numberOfNodes = nodes.length;
+        edgeOffsets = new int[numberOfNodes+1];
+        for(int e = 0; e < numberOfEdges; e++)
+        {
+            edgeOffsets[sources[e]+1]++;
+            if(sources[e]!=targets[e])
+                edgeOffsets[targets[e]+1]++;
+        }
+        
+        for(int i = 0; i < numberOfNodes; i++)
+            edgeOffsets[i+1] += edgeOffsets[i];
+        edgeTargets = new int[edgeOffsets[numberOfNodes]];
+        edgeWeights = new double[edgeOffsets[numberOfNodes]];
+        int[] position = new int[numberOfNodes];
+        System.arraycopy(edgeOffsets, 0, position, 0, numberOfNodes);
+        for(int e = 0; e < numberOfEdges; e++)
+        {
+            int source = sources[e];
+            int target = targets[e];
+            double weight = weights[e];
+            edgeTargets[position[source]]   = target;
+            edgeWeights[position[source]++] = weight;
+            if(source!=target)
+            {
+                edgeTargets[position[target]]   = source;
+                edgeWeights[position[target]++] = weight;
+            }
+        }
+    }
+    
+    public int size()
+    {   return nodes.length;}
+}
@@ -0,0 +1,200 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * @author Julie Kauffman
+ * The StageMetrics measures the stages of FindDynamicCommunities one after the other. For each stage
+ * it keeps the wall time, the CPU time of the thread running execute, the CPU time of the whole
+ * process, which also counts the threads of parallel group detection and the garbage collector,
+ * and the bytes allocated by the thread running execute. The CPU times and the allocated bytes
+ * come from the management beans of the JVM, and are -1 when the JVM does not support them.
+ */
+
+public class StageMetrics
+{
+    public static final String NAME_OF_METRICS_FILE = "Metrics.csv";
+
+    ThreadMXBean          threadBean;
+    OperatingSystemMXBean operatingSystemBean;
+    long                  threadId;
+    List<Stage>           stages = new ArrayList<Stage>();
+    long startOfStageWallNanoseconds;
+    long startOfStageCpuNanoseconds;
+    long startOfStageProcessCpuNanoseconds;
+    long startOfStageAllocatedBytes;
+
+    //Starts the first stage now, on the current thread
+    public StageMetrics()
+    {
+        threadBean          = ManagementFactory.getThreadMXBean();
+        operatingSystemBean = ManagementFactory.getOperatingSystemMXBean();
+        threadId            = Thread.currentThread().getId();
+        if(threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled())
+            threadBean.setThreadCpuTimeEnabled(true);
+        if((threadBean instanceof com.sun.management.ThreadMXBean)
+         &&((com.sun.management.ThreadMXBean)threadBean).isThreadAllocatedMemorySupported()
+         &&!((com.sun.management.ThreadMXBean)threadBean).isThreadAllocatedMemoryEnabled())
+            ((com.sun.management.ThreadMXBean)threadBean).setThreadAllocatedMemoryEnabled(true);
+        this.startStage();
+    }
+
+    //Starts the next stage now, without recording the time since the last one
+    public void startStage()
+    {
+        startOfStageWallNanoseconds       = System.nanoTime();
+        startOfStageCpuNanoseconds        = this.getCpuNanoseconds();
+        startOfStageProcessCpuNanoseconds = this.getProcessCpuNanoseconds();
+        startOfStageAllocatedBytes        = this.getAllocatedBytes();
+    }
+
+    //Records everything since the end of the last stage as the given stage, and starts the next one
+    public Stage recordStage(String nameOfStage)
+    {
+        long wallNanoseconds       = System.nanoTime();
+        long cpuNanoseconds        = this.getCpuNanoseconds();
+        long processCpuNanoseconds = this.getProcessCpuNanoseconds();
+        long allocatedBytes        = this.getAllocatedBytes();
+        Stage stage = new Stage(nameOfStage, wallNanoseconds-startOfStageWallNanoseconds,
+                                difference(cpuNanoseconds, startOfStageCpuNanoseconds),
+                                difference(processCpuNanoseconds, startOfStageProcessCpuNanoseconds),
+                                difference(allocatedBytes, startOfStageAllocatedBytes));
+        stages.add(stage);
+        startOfStageWallNanoseconds       = wallNanoseconds;
+        startOfStageCpuNanoseconds        = cpuNanoseconds;
+        startOfStageProcessCpuNanoseconds = processCpuNanoseconds;
+        startOfStageAllocatedBytes        = allocatedBytes;
+        return stage;
+    }
+
+    static long difference(long end, long start)
+    {   return ((end < 0)||(start < 0)) ? -1 : end-start;}
+
+    long getCpuNanoseconds()
+    {
+        if(!threadBean.isThreadCpuTimeSupported())
+            return -1;
+        return threadBean.getThreadCpuTime(threadId);
+    }
+
+    long getProcessCpuNanoseconds()
+    {
+        if(!(operatingSystemBean instanceof com.sun.management.OperatingSystemMXBean))
+            return -1;
+        return ((com.sun.management.OperatingSystemMXBean)operatingSystemBean).getProcessCpuTime();
+    }
+
+    long getAllocatedBytes()
+    {
+        if(!(threadBean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+        if(!allocationBean.isThreadAllocatedMemorySupported())
+            return -1;
+        return allocationBean.getThreadAllocatedBytes(threadId);
+    }
+
+    //Returns the recorded stages in the order they ran
+    public List<Stage> getStages()
+    {   return stages;}
+
+    //Writes a table with one row for each stage and a row with the total of all stages
+    public void writeHtmlTable(Writer out) throws IOException
+    {
+        out.write("<h2>Time and memory of each stage</h2>");
+        out.write("<table border = '1'cellpadding='5'><tr><th>Stage</th><th>Wall time (ms)</th><th>CPU time (ms)</th>"
+                + "<th>CPU time of all threads (ms)</th><th>Allocated (MB)</th></tr>");
+        Stage total = new Stage("total", 0, 0, 0, 0);
+        for(Stage stage:stages)
+        {
+            this.writeHtmlRow(out, stage);
+            total.add(stage);
+        }
+        this.writeHtmlRow(out, total);
+        out.write("</table>");
+        out.write("<p>CPU time and allocated memory are those of the thread running the plug-in, except in the"
+                + " column for all threads, which also counts parallel group detection and garbage collection."
+                + " n/a means that the Java VM does not measure this.</p>");
+    }
+
+    void writeHtmlRow(Writer out, Stage stage) throws IOException
+    {
+        out.write("<tr><td>" + stage.name + "</td><td>" + format(stage.wallNanoseconds, 1000000)
+                + "</td><td>" + format(stage.cpuNanoseconds, 1000000) + "</td><td>" + format(stage.processCpuNanoseconds, 1000000)
+                + "</td><td>" + format(stage.allocatedBytes, 1024*1024) + "</td></tr>");
+    }
+
+    static String format(long value, long unit)
+    {   return value < 0 ? "n/a" : String.format("%.1f", (double)value/unit);}
+
+    //Writes the stages to a CSV file, with the times in nanoseconds, for tools that collect the metrics of many runs
+    public void writeMetricsFile(File file) throws IOException
+    {
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            writer.write("stage,wall ns,cpu ns,process cpu ns,allocated bytes\n");
+            for(Stage stage:stages)
+                writer.write(stage.name + "," + stage.wallNanoseconds + "," + stage.cpuNanoseconds + ","
+                           + stage.processCpuNanoseconds + "," + stage.allocatedBytes + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    public static class Stage
+    {
+        String name;
+        long   wallNanoseconds;
+        long   cpuNanoseconds;
+        long   processCpuNanoseconds;
+        long   allocatedBytes;
+
+        Stage(String name, long wallNanoseconds, long cpuNanoseconds, long processCpuNanoseconds, long allocatedBytes)
+        {
+            this.name                  = name;
+            this.wallNanoseconds       = wallNanoseconds;
+            this.cpuNanoseconds        = cpuNanoseconds;
+            this.processCpuNanoseconds = processCpuNanoseconds;
+            this.allocatedBytes        = allocatedBytes;
+        }
+
+        //A total is n/a as soon as one of its stages is
+        void add(Stage stage)
+        {
+            wallNanoseconds       = sum(wallNanoseconds, stage.wallNanoseconds);
+            cpuNanoseconds        = sum(cpuNanoseconds, stage.cpuNanoseconds);
+            processCpuNanoseconds = sum(processCpuNanoseconds, stage.processCpuNanoseconds);
+            allocatedBytes        = sum(allocatedBytes, stage.allocatedBytes);
+        }
+
+        static long sum(long a, long b)
+        {   return ((a < 0)||(b < 0)) ? -1 : a+b;}
+
+        public String getName()
+        {   return name;}
+
+        public long getWallNanoseconds()
+        {   return wallNanoseconds;}
+
+        public long getCpuNanoseconds()
+        {   return cpuNanoseconds;}
+
+        public long getProcessCpuNanoseconds()
+        {   return processCpuNanoseconds;}
+
+        public long getAllocatedBytes()
+        {   return allocatedBytes;}
+    }
+}
@@ -0,0 +1,308 @@
+package kcl.julie.DynamicCommunityIdentificationPlugin;
+
+import java.util.Arrays;
+
+/*
+ * @author Julie Kauffman
+ * The TrajectoryStore holds one color for each node at each timestep, like the group colors
+ * and the community colors of all nodes. Rows are node indices, from 1 to numberOfNodes as in
+ * the rest of the plug-in, and only the timesteps from timeBegin to timeEnd-1 are stored, so
+ * a timeline that starts late does not waste a column for every earlier timestep. Colors are
+ * kept in bytes, shorts or ints, whichever is the narrowest that holds the highest color, and
+ * the store is widened when a higher color is set. Reading a timestep outside the timeline
+ * gives 0, the color of no community.
+ *
+ * Once all colors are set, compress() can replace the dense cells by runs of equal colors in
+ * each row, when that takes less memory, which it does for long timelines where most nodes
+ * keep their community. A compressed store can only be read.
+ *
+ * Different rows can be set from different threads as long as the colors fit the current width.
+ */
+
+public class TrajectoryStore
+{
+    public static final int BYTE_WIDTH  = 1;
+    public static final int SHORT_WIDTH = 2;
+    public static final int INT_WIDTH   = 4;
+
+    int     numberOfRows;
+    int     timeBegin;
+    int     timeEnd;
+    int     numberOfTimeSteps;
+    int     width;
+    byte[]  byteCells;
+    short[] shortCells;
+    int[]   intCells;
+
+    //When compressed, the runs of row i are firstRunOfRow[i] to firstRunOfRow[i+1]-1. Each run starts at the
+    //column startOfRun[run] and its color is the cell at index run, and it lasts until the next run of the row.
+    boolean compressed;
+    int[]   firstRunOfRow;
+    int[]   startOfRun;
+
+    //Rows 0 to numberOfNodes are created, row 0 being unused like in the arrays indexed by node index
+    public TrajectoryStore(int numberOfNodes, int timeBegin, int timeEnd, int highestColor)
+    {
+        this.numberOfRows      = numberOfNodes+1;
+        this.timeBegin         = timeBegin;
+        this.timeEnd           = Math.max(timeBegin, timeEnd);
+        this.numberOfTimeSteps = this.timeEnd-timeBegin;
+        this.width             = getWidthOfColor(highestColor);
+        this.allocateCells((long)numberOfRows*numberOfTimeSteps);
+    }
+
+    TrajectoryStore()
+    {}
+
+    public static int getWidthOfColor(int color)
+    {
+        if(color <= Byte.MAX_VALUE)
+            return BYTE_WIDTH;
+        if(color <= Short.MAX_VALUE)
+            return SHORT_WIDTH;
+        return INT_WIDTH;
+    }
+
+    void allocateCells(long numberOfCells)
+    {
+        if(numberOfCells > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(numberOfRows + " nodes and " + numberOfTimeSteps + " timesteps are too many colors to store");
+        byteCells  = null;
+        shortCells = null;
+        intCells   = null;
+        if(width == BYTE_WIDTH)
+            byteCells = new byte[(int)numberOfCells];
+        else if(width == SHORT_WIDTH)
+            shortCells = new short[(int)numberOfCells];
+        else
+            intCells = new int[(int)numberOfCells];
+    }
+
+    //Cells are numbered with longs so that a store kept outside of the heap can hold more than 2^31 of them
+    int getCell(long cell)
+    {
+        if(width == BYTE_WIDTH)
+            return byteCells[(int)cell];
+        if(width == SHORT_WIDTH)
+            return shortCells[(int)cell];
+        return intCells[(int)cell];
+    }
+
+    void setCell(long cell, int color)
+    {
+        if(width == BYTE_WIDTH)
+            byteCells[(int)cell] = (byte)color;
+        else if(width == SHORT_WIDTH)
+            shortCells[(int)cell] = (short)color;
+        else
+            intCells[(int)cell] = color;
+    }
+
+    long getNumberOfCells()
+    {
+        if(width == BYTE_WIDTH)
+            return byteCells.length;
+        if(width == SHORT_WIDTH)
+            return shortCells.length;
+        return intCells.length;
+    }
+
+    public int get(int row, int timeStep)
+    {
+        if((timeStep < timeBegin)||(timeStep >= timeEnd))
+            return 0;
+        int column = timeStep-timeBegin;
+        if(!compressed)
+            return this.getCell((long)row*numberOfTimeSteps+column);
+
+        //the last run of the row that starts at or before the column
+        int low  = firstRunOfRow[row];
+        int high = firstRunOfRow[row+1]-1;
+        while(low < high)
+        {
+            int middle = (low+high+1) >>> 1;
+            if(startOfRun[middle] <= column)
+                low = middle;
+            else
+                high = middle-1;
+        }
+        return this.getCell(low);
+    }
+
+    public void set(int row, int timeStep, int color)
+    {
+        if(compressed)
+            throw new IllegalStateException("A compressed trajectory store cannot be changed");
+        if((timeStep < timeBegin)||(timeStep >= timeEnd))
+            throw new IndexOutOfBoundsException("Timestep " + timeStep + " is outside of " + timeBegin + " to " + timeEnd);
+        if(getWidthOfColor(color) > width)
+            this.widen(getWidthOfColor(color));
+        this.setCell((long)row*numberOfTimeSteps+timeStep-timeBegin, color);
+    }
+
+    //Sets every timestep of the row from an array indexed by timestep, like the colorings of RecursionElement
+    public void setRow(int row, int[] colorAtTimeStep)
+    {
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+            this.set(row, timeStep, colorAtTimeStep[timeStep]);
+    }
+
+    //Returns the row as an array of timeEnd colors indexed by timestep, with 0 before timeBegin. The colors of a node
+    //are taken from every entry of the array, so it has no entry past the timeline that would add a color 0
+    public int[] getRow(int row)
+    {
+        int[] colorAtTimeStep = new int[timeEnd];
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+            colorAtTimeStep[timeStep] = this.get(row, timeStep);
+        return colorAtTimeStep;
+    }
+
+    //Copies the cells to wider ones
+    void widen(int newWidth)
+    {
+        int numberOfCells = (int)this.getNumberOfCells();
+        int[] colors = new int[numberOfCells];
+        for(int cell = 0; cell < numberOfCells; cell++)
+            colors[cell] = this.getCell(cell);
+        width = newWidth;
+        if(width == INT_WIDTH)
+        {
+            byteCells  = null;
+            shortCells = null;
+            intCells   = colors;
+            return;
+        }
+        this.allocateCells(numberOfCells);
+        for(int cell = 0; cell < numberOfCells; cell++)
+            this.setCell(cell, colors[cell]);
+    }
+
+    //Returns true if the two rows have the same color at every timestep
+    public boolean rowsAreEqual(int firstRow, int secondRow)
+    {
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+            if(this.get(firstRow, timeStep) != this.get(secondRow, timeStep))
+                return false;
+        return true;
+    }
+
+    //Returns a hash of the colors of the row, so that equal rows have the same hash
+    public int hashOfRow(int row)
+    {
+        int hash = 1;
+        for(int timeStep = timeBegin; timeStep < timeEnd; timeStep++)
+            hash = 31*hash + this.get(row, timeStep);
+        return hash;
+    }
+
+    //Returns true if the row has the same color at every timestep
+    public boolean rowIsConstant(int row)
+    {
+        if(compressed)
+            return firstRunOfRow[row+1]-firstRunOfRow[row] <= 1;
+        for(int timeStep = timeBegin+1; timeStep < timeEnd; timeStep++)
+            if(this.get(row, timeStep) != this.get(row, timeBegin))
+                return false;
+        return true;
+    }
+
+    //Returns the highest color in the store
+    public int getHighestColor()
+    {
+        int highestColor = 0;
+        long numberOfCells = this.getNumberOfCells();
+        for(long cell = 0; cell < numberOfCells; cell++)
+            highestColor = Math.max(highestColor, this.getCell(cell));
+        return highestColor;
+    }
+
+    //Returns a store with the same colors, which can be changed without changing this one
+    public TrajectoryStore copy()
+    {
+        TrajectoryStore copy = new TrajectoryStore();
+        copy.numberOfRows      = numberOfRows;
+        copy.timeBegin         = timeBegin;
+        copy.timeEnd           = timeEnd;
+        copy.numberOfTimeSteps = numberOfTimeSteps;
+        copy.width             = width;
+        copy.byteCells  = byteCells  == null ? null : byteCells.clone();
+        copy.shortCells = shortCells == null ? null : shortCells.clone();
+        copy.intCells   = intCells   == null ? null : intCells.clone();
+        copy.compressed = compressed;
+        copy.firstRunOfRow = firstRunOfRow == null ? null : firstRunOfRow.clone();
+        copy.startOfRun    = startOfRun    == null ? null : startOfRun.clone();
+        return copy;
+    }
+
+    //Replaces the cells by the runs of equal colors in each row, if the runs take fewer bytes, and returns
+    //true if the store is compressed
+    public boolean compress()
+    {
+        if(compressed)
+            return true;
+        int numberOfRuns = 0;
+        for(int row = 0; row < numberOfRows; row++)
+        {
+            int firstCell = row*numberOfTimeSteps;
+            for(int column = 0; column < numberOfTimeSteps; column++)
+                if((column == 0)||(this.getCell(firstCell+column) != this.getCell(firstCell+column-1)))
+                    numberOfRuns++;
+        }
+        long bytesOfCells = (long)numberOfRows*numberOfTimeSteps*width;
+        long bytesOfRuns  = (long)numberOfRuns*(width+4) + (long)(numberOfRows+1)*4;
+        if(bytesOfRuns >= bytesOfCells)
+            return false;
+
+        //the first cells become the colors of the runs, which never come after the cell they are read from
+        firstRunOfRow = new int[numberOfRows+1];
+        startOfRun    = new int[numberOfRuns];
+        int run = 0;
+        for(int row = 0; row < numberOfRows; row++)
+        {
+            firstRunOfRow[row] = run;
+            int firstCell = row*numberOfTimeSteps;
+            for(int column = 0; column < numberOfTimeSteps; column++)
+            {
+                int color = this.getCell(firstCell+column);
+                if((column == 0)||(color != this.getCell(run-1)))
+                {
+                    startOfRun[run] = column;
+                    this.setCell(run++, color);
+                }
+            }
+        }
+        firstRunOfRow[numberOfRows] = run;
+        if(byteCells != null)
+            byteCells = Arrays.copyOf(byteCells, numberOfRuns);
+        if(shortCells != null)
+            shortCells = Arrays.copyOf(shortCells, numberOfRuns);
+        if(intCells != null)
+            intCells = Arrays.copyOf(intCells, numberOfRuns);
+        compressed = true;
+        return true;
+    }
+
+    public boolean isCompressed()
+    {   return compressed;}
+
+    public int getNumberOfRows()
+    {   return numberOfRows;}
+
+    public int getTimeBegin()
+    {   return timeBegin;}
+
+    public int getTimeEnd()
+    {   return timeEnd;}
+
+    public int getWidth()
+    {   return width;}
+
+    //Returns the bytes taken by the colors, for the report
+    public long getSizeInBytes()
+    {
+        long size = this.getNumberOfCells()*width;
+        if(compressed)
+            size += 4L*(firstRunOfRow.length+startOfRun.length);
+        return size;
+    }
+}